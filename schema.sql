@@ -1,5 +1,8 @@
+-- Range-partitioned by day on timestamp; daily partitions are created ahead of time and
+-- dropped after archiving by PartitionMaintenanceJob. Existing heap tables must be migrated
+-- (rename, create this table, INSERT ... SELECT) before enabling session.events.partitioning.
 CREATE TABLE IF NOT EXISTS session_events (
-                                              id SERIAL PRIMARY KEY,
+                                              id BIGSERIAL,
                                               session_id VARCHAR(255) NOT NULL,
     event_type VARCHAR(255) NOT NULL,
     timestamp TIMESTAMP NOT NULL,
@@ -10,8 +13,88 @@ CREATE TABLE IF NOT EXISTS session_events (
     error_count INTEGER,
     device_type VARCHAR(255),
     region VARCHAR(255),
-    content_id VARCHAR(255)
-    );
+    content_id VARCHAR(255),
+    kafka_partition INTEGER,
+    kafka_offset BIGINT,
+    PRIMARY KEY (id, timestamp)
+    ) PARTITION BY RANGE (timestamp);
+
+-- Idempotency key: the Kafka record an event was consumed from. Writers insert with
+-- ON CONFLICT DO NOTHING, so a redelivered poll does not duplicate rows. The partition key
+-- has to be part of a unique index on a partitioned table; a record's timestamp never changes.
+ALTER TABLE session_events ADD COLUMN IF NOT EXISTS kafka_partition INTEGER;
+ALTER TABLE session_events ADD COLUMN IF NOT EXISTS kafka_offset BIGINT;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_session_events_kafka_record
+    ON session_events(kafka_partition, kafka_offset, timestamp);
+
+-- Catches rows outside the pre-created range; should stay empty
+CREATE TABLE IF NOT EXISTS session_events_default PARTITION OF session_events DEFAULT;
 
 CREATE INDEX IF NOT EXISTS idx_session_events_session_id ON session_events(session_id);
-CREATE INDEX IF NOT EXISTS idx_session_events_timestamp ON session_events(timestamp);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_session_events_timestamp ON session_events(timestamp);
+-- Serves the per-session event query with an event_type filter in timestamp order
+CREATE INDEX IF NOT EXISTS idx_session_events_session_type_ts ON session_events(session_id, event_type, timestamp);
+
+-- Progress of the retention tiering job (keyset position of the last archived row)
+CREATE TABLE IF NOT EXISTS archive_checkpoints (
+    job VARCHAR(64) PRIMARY KEY,
+    last_timestamp TIMESTAMP NOT NULL,
+    last_id BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+    );
+
+-- Running per-session totals and quantile sketches maintained by the ingest path
+-- (SessionRollupService); dimensions are taken from the first event that carries them
+CREATE TABLE IF NOT EXISTS session_rollups (
+    session_id VARCHAR(255) PRIMARY KEY,
+    event_count BIGINT NOT NULL DEFAULT 0,
+    startup_time_sum BIGINT NOT NULL DEFAULT 0,
+    startup_time_count BIGINT NOT NULL DEFAULT 0,
+    buffering_total BIGINT NOT NULL DEFAULT 0,
+    bitrate_sum BIGINT NOT NULL DEFAULT 0,
+    bitrate_count BIGINT NOT NULL DEFAULT 0,
+    error_total BIGINT NOT NULL DEFAULT 0,
+    startup_sketch BYTEA,
+    buffering_sketch BYTEA,
+    bitrate_sketch BYTEA,
+    region VARCHAR(255),
+    device_type VARCHAR(255),
+    content_id VARCHAR(255),
+    updated_at TIMESTAMP NOT NULL
+    );
+
+-- Earliest event folded in; a rollup can only be rebuilt from raw rows while this is within retention
+ALTER TABLE session_rollups ADD COLUMN IF NOT EXISTS first_event_time TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_session_rollups_region ON session_rollups(region);
+CREATE INDEX IF NOT EXISTS idx_session_rollups_content_id ON session_rollups(content_id);
+CREATE INDEX IF NOT EXISTS idx_session_rollups_device_type ON session_rollups(device_type);
+
+-- Last Kafka offset folded into each session's rollup, per partition
+CREATE TABLE IF NOT EXISTS session_rollup_offsets (
+    session_id VARCHAR(255) NOT NULL,
+    kafka_partition INTEGER NOT NULL,
+    last_offset BIGINT NOT NULL,
+    PRIMARY KEY (session_id, kafka_partition)
+    );
+
+-- One row per closed session, written by sessionization (SessionTracker)
+CREATE TABLE IF NOT EXISTS session_summaries (
+    session_id VARCHAR(255) PRIMARY KEY,
+    state VARCHAR(32) NOT NULL,
+    start_time TIMESTAMP NOT NULL,
+    last_event_time TIMESTAMP NOT NULL,
+    end_time TIMESTAMP NOT NULL,
+    close_reason VARCHAR(32) NOT NULL,
+    device_type VARCHAR(255),
+    region VARCHAR(255),
+    content_id VARCHAR(255),
+    event_count BIGINT NOT NULL,
+    error_count BIGINT NOT NULL,
+    buffering_ms BIGINT NOT NULL,
+    startup_time_ms BIGINT,
+    average_bitrate DOUBLE PRECISION NOT NULL
+    );
+
+-- Last Kafka offset merged into each summary, per partition ({"3": 1234}); a replayed segment is skipped
+ALTER TABLE session_summaries ADD COLUMN IF NOT EXISTS kafka_offsets JSONB;
@@ -0,0 +1,105 @@
+package com.example.miniproject.benchmark;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.service.AnalyticsAccumulator;
+import com.example.miniproject.service.AnalyticsEngine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former four-stream {@code calculateAnalytics} with the single-pass accumulator,
+ * sequentially and through {@link AnalyticsEngine}'s fork-join path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private List<SessionEvent> events;
+    private AnalyticsEngine engine;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            QualityMetrics metrics = new QualityMetrics();
+            // Sparse like real traffic; errorCount always set since the old code NPEs without it
+            metrics.setStartupTimeMs(random.nextInt(10) == 0 ? (long) random.nextInt(5000) : null);
+            metrics.setBufferingDurationMs(random.nextInt(4) == 0 ? (long) random.nextInt(2000) : null);
+            metrics.setBitrate(random.nextBoolean() ? 500 + random.nextInt(8000) : null);
+            metrics.setErrorCount(random.nextInt(50) == 0 ? 1 : 0);
+            SessionEvent event = new SessionEvent();
+            event.setSessionId("session-" + (i % 100));
+            event.setEventType("heartbeat");
+            event.setTimestamp(start.plusMillis(i * 1000L));
+            event.setMetrics(metrics);
+            events.add(event);
+        }
+
+        engine = new AnalyticsEngine();
+        ReflectionTestUtils.setField(engine, "parallelThreshold", 65536);
+        ReflectionTestUtils.setField(engine, "leafSize", 16384);
+    }
+
+    @Benchmark
+    public SessionAnalytics fourStreams() {
+        return legacyCalculateAnalytics(events);
+    }
+
+    @Benchmark
+    public SessionAnalytics singlePass() {
+        return new AnalyticsAccumulator().addAll(events, 0, events.size()).toAnalytics();
+    }
+
+    @Benchmark
+    public SessionAnalytics engine() {
+        return engine.analyze(events);
+    }
+
+    /** Verbatim copy of the controller code the accumulator replaced. */
+    static SessionAnalytics legacyCalculateAnalytics(List<SessionEvent> events) {
+        SessionAnalytics analytics = new SessionAnalytics();
+
+        OptionalDouble avgStartupTime = events.stream()
+                .filter(e -> e.getMetrics().getStartupTimeMs() != null)
+                .mapToLong(e -> e.getMetrics().getStartupTimeMs())
+                .average();
+        analytics.setAverageStartupTimeMs(avgStartupTime.orElse(0.0));
+
+        long totalBuffering = events.stream()
+                .filter(e -> e.getMetrics().getBufferingDurationMs() != null)
+                .mapToLong(e -> e.getMetrics().getBufferingDurationMs())
+                .sum();
+        analytics.setTotalBufferingMs(totalBuffering);
+
+        OptionalDouble avgBitrate = events.stream()
+                .filter(e -> e.getMetrics().getBitrate() != null)
+                .mapToInt(e -> e.getMetrics().getBitrate())
+                .average();
+        analytics.setAverageBitrateKbps(avgBitrate.orElse(0.0));
+
+        long errorCount = events.stream()
+                .mapToInt(e -> e.getMetrics().getErrorCount())
+                .sum();
+        analytics.setTotalErrors(errorCount);
+
+        return analytics;
+    }
+}
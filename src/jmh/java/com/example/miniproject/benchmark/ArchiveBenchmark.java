@@ -0,0 +1,51 @@
+package com.example.miniproject.benchmark;
+
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.service.ArchiveWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archive segment keys and segment encoding (per-session gzip members of NDJSON plus the index).
+ * The writer is never started, so no S3 client is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    // Default session.tiering.chunk-size is 5000
+    @Param({"5000", "50000"})
+    public int size;
+
+    private List<SessionEvent> events;
+    private ArchiveWriter writer;
+    private Instant hour;
+
+    @Setup
+    public void setUp() {
+        events = BenchmarkEvents.generate(size, Math.max(1, size / 25), 42);
+        writer = new ArchiveWriter(null, Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry());
+        hour = events.get(0).getTimestamp().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String segmentKey() {
+        return ArchiveWriter.segmentKey("eu-west-1", hour, "0b9f6c1e-7d2a-4e3b-9c8d-5a6f7e8d9c0b");
+    }
+
+    @Benchmark
+    public byte[] encodeSegment() {
+        return writer.encodeSegment(events, new StringBuilder());
+    }
+}
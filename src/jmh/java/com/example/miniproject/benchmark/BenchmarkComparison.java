@@ -0,0 +1,129 @@
+package com.example.miniproject.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with a baseline from an earlier run and exits non-zero when a
+ * benchmark got slower, or allocates more per operation, by more than the threshold.
+ * <p>
+ * Usage: {@code BenchmarkComparison <result.json> <threshold> <alloc-threshold> [baseline.json]},
+ * thresholds as fractions (0.1 = 10%). Without a baseline the results are only listed.
+ * Benchmarks are matched by name and parameters. Baseline entries missing from the current run
+ * are listed as a warning, since a renamed or dropped benchmark would otherwise stop being
+ * checked unnoticed; new ones are listed without a comparison.
+ */
+public final class BenchmarkComparison {
+
+    // Differences below this many bytes per operation are noise, e.g. escape analysis flipping
+    private static final double MIN_ALLOC_DELTA_BYTES = 16;
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BenchmarkComparison <result.json> <threshold> <alloc-threshold> [baseline.json]");
+            System.exit(2);
+        }
+        File resultFile = new File(args[0]);
+        if (!resultFile.isFile()) {
+            System.out.println("No benchmark results at " + resultFile + ", nothing to compare");
+            return;
+        }
+        double threshold = Double.parseDouble(args[1]);
+        double allocThreshold = Double.parseDouble(args[2]);
+        Map<String, Result> current = read(resultFile);
+        if (args.length < 4 || args[3].isBlank()) {
+            current.forEach((name, result) -> System.out.printf("%-90s %14.3f %-8s %12.1f B/op%n",
+                    name, result.score, result.unit, result.allocBytes));
+            System.out.println("No baseline given (-Djmh.baseline=...), skipping the regression check");
+            return;
+        }
+        Map<String, Result> baseline = read(new File(args[3]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("%-90s %14s    %14.3f %-8s  (new, no baseline)%n",
+                        entry.getKey(), "", entry.getValue().score, entry.getValue().unit);
+                continue;
+            }
+            Result now = entry.getValue();
+            // Throughput modes: higher is better; time modes: lower is better
+            double change = now.higherIsBetter
+                    ? (base.score - now.score) / base.score
+                    : (now.score - base.score) / base.score;
+            double allocChange = base.allocBytes > 0 ? (now.allocBytes - base.allocBytes) / base.allocBytes : 0;
+            boolean slower = change > threshold;
+            boolean allocates = allocChange > allocThreshold
+                    && now.allocBytes - base.allocBytes >= MIN_ALLOC_DELTA_BYTES;
+            System.out.printf("%-90s %14.3f -> %14.3f %-8s %+7.1f%%  %10.1f -> %10.1f B/op %+7.1f%%%s%n",
+                    entry.getKey(), base.score, now.score, now.unit, change * 100,
+                    base.allocBytes, now.allocBytes, allocChange * 100,
+                    slower || allocates ? "  REGRESSION" : "");
+            if (slower || allocates) {
+                regressions++;
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            System.out.printf("WARNING: %d baseline benchmark(s) missing from this run, not checked:%n", missing.size());
+            missing.forEach(name -> System.out.println("  " + name));
+        }
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed beyond %.0f%% time / %.0f%% allocation%n",
+                    regressions, threshold * 100, allocThreshold * 100);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + args[3]);
+    }
+
+    private static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder name = new StringBuilder(run.path("benchmark").asText());
+            // Sorted so the key does not depend on parameter order in the file
+            Map<String, String> params = new TreeMap<>();
+            run.path("params").fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+            params.forEach((key, value) -> name.append(' ').append(key).append('=').append(value));
+
+            JsonNode primary = run.path("primaryMetric");
+            Result result = new Result();
+            result.score = primary.path("score").asDouble();
+            result.unit = primary.path("scoreUnit").asText();
+            result.higherIsBetter = run.path("mode").asText().equals("thrpt");
+            // Named "gc.alloc.rate.norm" by recent JMH versions, "·gc.alloc.rate.norm" before
+            for (Iterator<Map.Entry<String, JsonNode>> it = run.path("secondaryMetrics").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> metric = it.next();
+                if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+                    result.allocBytes = metric.getValue().path("score").asDouble();
+                }
+            }
+            results.put(name.toString(), result);
+        }
+        return results;
+    }
+
+    private static final class Result {
+        private double score;
+        private String unit;
+        private boolean higherIsBetter;
+        private double allocBytes;
+    }
+}
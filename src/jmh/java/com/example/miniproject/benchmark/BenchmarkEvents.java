@@ -0,0 +1,51 @@
+package com.example.miniproject.benchmark;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded, production-shaped events shared by the benchmarks: mostly heartbeats, sparse metrics,
+ * dimension values from the codec dictionaries plus a share of unknown ones.
+ */
+public final class BenchmarkEvents {
+
+    private static final String[] EVENT_TYPES = {"heartbeat", "heartbeat", "heartbeat", "heartbeat", "heartbeat",
+            "heartbeat", "buffering", "bitrate_change", "start", "end", "pause", "resume", "seek", "error"};
+    private static final String[] DEVICE_TYPES = {"android", "ios", "web", "smart_tv", "roku", "tizen"};
+    private static final String[] REGIONS = {"us-east-1", "us-west-2", "eu-west-1", "ap-southeast-1", "me-south-1"};
+
+    private BenchmarkEvents() {
+    }
+
+    public static List<SessionEvent> generate(int count, int sessions, long seed) {
+        Random random = new Random(seed);
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        List<SessionEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int session = random.nextInt(sessions);
+            SessionEvent event = new SessionEvent();
+            event.setId((long) i + 1);
+            event.setSessionId("5f0c6d9e-" + Integer.toHexString(0x10000 + session) + "-4b1d-9a7e-3c2f8e1d0b4a");
+            event.setEventType(EVENT_TYPES[random.nextInt(EVENT_TYPES.length)]);
+            event.setTimestamp(start.plusMillis(i * 250L + random.nextInt(250)));
+            event.setDeviceType(DEVICE_TYPES[session % DEVICE_TYPES.length]);
+            event.setRegion(REGIONS[session % REGIONS.length]);
+            event.setContentId("content-" + (session % 500));
+
+            QualityMetrics metrics = new QualityMetrics();
+            metrics.setStartupTimeMs(random.nextInt(10) == 0 ? (long) random.nextInt(5000) : null);
+            metrics.setBufferingDurationMs(random.nextInt(4) == 0 ? (long) random.nextInt(2000) : null);
+            metrics.setBitrate(random.nextBoolean() ? 500 + random.nextInt(8000) : null);
+            metrics.setBufferingRatio(random.nextInt(4) == 0 ? random.nextDouble() * 0.1 : null);
+            metrics.setErrorCount(random.nextInt(50) == 0 ? 1 : 0);
+            event.setMetrics(metrics);
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.miniproject.benchmark;
+
+import com.example.miniproject.kafka.SessionEventDeserializer;
+import com.example.miniproject.kafka.SessionEventSerializer;
+import com.example.miniproject.model.SessionEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka (de)serialization of one {@link SessionEvent}: the binary codec against the JSON
+ * serializers it replaced, which remain selectable as {@code session.events.wire-format=json}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final String TOPIC = "session-events";
+    private static final int EVENTS = 1024;
+
+    private final SessionEventSerializer binarySerializer = new SessionEventSerializer();
+    private final SessionEventDeserializer binaryDeserializer = new SessionEventDeserializer();
+    private final JsonSerializer<SessionEvent> jsonSerializer = new JsonSerializer<>();
+    private final JsonDeserializer<SessionEvent> jsonDeserializer = new JsonDeserializer<>(SessionEvent.class);
+
+    private List<SessionEvent> events;
+    private byte[][] binary;
+    private byte[][] json;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        events = BenchmarkEvents.generate(EVENTS, 100, 42);
+        binary = new byte[EVENTS][];
+        json = new byte[EVENTS][];
+        for (int i = 0; i < EVENTS; i++) {
+            binary[i] = binarySerializer.serialize(TOPIC, events.get(i));
+            json[i] = jsonSerializer.serialize(TOPIC, events.get(i));
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (EVENTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return binarySerializer.serialize(TOPIC, events.get(nextIndex()));
+    }
+
+    @Benchmark
+    public SessionEvent deserializeBinary() {
+        return binaryDeserializer.deserialize(TOPIC, binary[nextIndex()]);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return jsonSerializer.serialize(TOPIC, events.get(nextIndex()));
+    }
+
+    @Benchmark
+    public SessionEvent deserializeJson() {
+        return jsonDeserializer.deserialize(TOPIC, json[nextIndex()]);
+    }
+}
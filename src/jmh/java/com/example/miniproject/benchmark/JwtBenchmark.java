@@ -0,0 +1,71 @@
+package com.example.miniproject.benchmark;
+
+import com.example.miniproject.service.JwtService;
+import com.example.miniproject.service.TokenRevocationRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.security.KeyPair;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and validation with the production ES256 key: validation of a token already in
+ * the verified-token cache, and of one that has to be verified (cache disabled). The revocation
+ * registry is never started, so checks run against its empty local state without Redis, and
+ * issuing uses epoch 0 instead of reading it from Redis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final List<String> ROLES = List.of("ROLE_USER");
+
+    private JwtService cached;
+    private JwtService uncached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        cached = jwtService(keyPair, 100000);
+        uncached = jwtService(keyPair, 0);
+        token = cached.generateToken("benchmark-user", ROLES).block();
+    }
+
+    private static JwtService jwtService(KeyPair keyPair, int cacheMaxEntries) {
+        TokenRevocationRegistry revocations = new TokenRevocationRegistry(null, 86400000L) {
+            @Override
+            public Mono<Long> loadEpoch(String username) {
+                return Mono.just(0L);
+            }
+        };
+        JwtService service = new JwtService(keyPair, 86400000L, revocations);
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", cacheMaxEntries);
+        service.init();
+        return service;
+    }
+
+    @Benchmark
+    public String generate() {
+        return cached.generateToken("benchmark-user", ROLES).block();
+    }
+
+    @Benchmark
+    public Claims validateCached() {
+        return cached.validateToken(token).block();
+    }
+
+    @Benchmark
+    public Claims validateUncached() {
+        return uncached.validateToken(token).block();
+    }
+}
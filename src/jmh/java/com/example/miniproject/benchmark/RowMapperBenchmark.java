@@ -0,0 +1,85 @@
+package com.example.miniproject.benchmark;
+
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.service.SessionEventRowMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SessionEventRowMapper} over a page of {@code session_events} rows, as read by
+ * {@code getRecentEvents} and the event page cursor. Rows come from an in-memory
+ * {@link ResultSet} proxy, so driver decoding is excluded; the proxy's dispatch cost is the same
+ * in every run and cancels out against a baseline. Scores are per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final String[] COLUMNS = {"id", "session_id", "event_type", "timestamp", "startup_time_ms",
+            "buffering_duration_ms", "bitrate", "buffering_ratio", "error_count", "device_type", "region", "content_id"};
+
+    private Object[][] rows;
+    private int row;
+    private ResultSet resultSet;
+    private SessionEventRowMapper sessionMapper;
+
+    @Setup
+    public void setUp() {
+        Map<String, Integer> columnIndex = new HashMap<>();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columnIndex.put(COLUMNS[i], i);
+        }
+        List<SessionEvent> events = BenchmarkEvents.generate(ROWS, 1, 42);
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            SessionEvent e = events.get(i);
+            rows[i] = new Object[]{e.getId(), e.getSessionId(), e.getEventType(), Timestamp.from(e.getTimestamp()),
+                    e.getMetrics().getStartupTimeMs(), e.getMetrics().getBufferingDurationMs(),
+                    e.getMetrics().getBitrate(), e.getMetrics().getBufferingRatio(), e.getMetrics().getErrorCount(),
+                    e.getDeviceType(), e.getRegion(), e.getContentId()};
+        }
+        resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    Object value = rows[row][columnIndex.get((String) args[0])];
+                    if (method.getName().equals("getLong")) {
+                        return value != null ? ((Number) value).longValue() : 0L;
+                    }
+                    // getString, getTimestamp and getObject(column, type) return the stored value
+                    return value;
+                });
+        sessionMapper = SessionEventRowMapper.forSession(events.get(0).getSessionId());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<SessionEvent> mapRows() throws Exception {
+        return mapAll(SessionEventRowMapper.INSTANCE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<SessionEvent> mapSessionRows() throws Exception {
+        return mapAll(sessionMapper);
+    }
+
+    private List<SessionEvent> mapAll(SessionEventRowMapper mapper) throws Exception {
+        List<SessionEvent> events = new ArrayList<>(ROWS);
+        for (row = 0; row < ROWS; row++) {
+            events.add(mapper.mapRow(resultSet, row));
+        }
+        return events;
+    }
+}
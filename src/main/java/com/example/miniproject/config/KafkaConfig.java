@@ -1,17 +1,27 @@
 package com.example.miniproject.config;
 
+import com.example.miniproject.kafka.HotKeySpreadingPartitioner;
+import com.example.miniproject.kafka.SessionEventDeserializer;
+import com.example.miniproject.kafka.SessionEventSerializer;
 import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.service.EventProcessingService;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -19,23 +29,67 @@ import java.util.Map;
 @Configuration
 public class KafkaConfig {
 
-    @Value("${spring.kafka.boostrap-servers}")
+    @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${spring.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    // binary (SessionEventCodec) or json, kept for debugging with console consumers
+    @Value("${session.events.wire-format:binary}")
+    private String wireFormat;
+
+    @Value("${session.events.publish.max-block-ms:50}")
+    private int maxBlockMs;
+
+    @Value("${session.events.partitioner.hot-keys:}")
+    private String hotKeys;
+
+    @Value("${session.events.partitioner.spread:4}")
+    private int hotKeySpread;
+
+    /**
+     * Producer for the ingest endpoint. {@code send()} is called from the WebFlux event loop, so it
+     * may block at most {@code max-block-ms}; topic metadata is fetched ahead of time by
+     * {@link EventProcessingService#refreshPublishMetadata()}.
+     */
     @Bean
+    @Primary
     public ProducerFactory<String, SessionEvent> producerFactory() {
+        Map<String, Object> config = producerConfig();
+        // Fail fast instead of waiting for buffer space or metadata
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        if (!hotKeys.isBlank()) {
+            config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, HotKeySpreadingPartitioner.class);
+            config.put(HotKeySpreadingPartitioner.HOT_KEYS_CONFIG, hotKeys);
+            config.put(HotKeySpreadingPartitioner.SPREAD_CONFIG, hotKeySpread);
+        }
+        return new DefaultKafkaProducerFactory<>(config);
+    }
+
+    /**
+     * Producer for dead letters, sent from consumer threads: keeps the default
+     * {@code max.block.ms} so the first send to the DLQ topic can wait for its metadata.
+     */
+    @Bean
+    public ProducerFactory<String, SessionEvent> deadLetterProducerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerConfig());
+    }
+
+    private Map<String, Object> producerConfig() {
         Map<String, Object> config = new HashMap<>();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, isJsonWireFormat()
+                ? JsonSerializer.class : SessionEventSerializer.class);
         config.put(ProducerConfig.ACKS_CONFIG, "all");// Wait for all replicas to acknowledge
         config.put(ProducerConfig.RETRIES_CONFIG, 3); // Number of retries
         config.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000); // Backoff time between retries
         config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
-        return new DefaultKafkaProducerFactory<>(config);
+        return config;
     }
 
     @Bean
@@ -44,25 +98,52 @@ public class KafkaConfig {
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        // Offsets are committed by the container once a whole poll has been written
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
 
+        // The binary deserializer also reads JSON records, so mixed topics stay readable
         return new DefaultKafkaConsumerFactory<>(
                 config,
                 new StringDeserializer(),
-                new JsonDeserializer<>(SessionEvent.class)
+                isJsonWireFormat() ? new JsonDeserializer<>(SessionEvent.class) : new SessionEventDeserializer()
         );
     }
 
+    private boolean isJsonWireFormat() {
+        return "json".equalsIgnoreCase(wireFormat);
+    }
+
     @Bean
     ConcurrentKafkaListenerContainerFactory<String, SessionEvent> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, SessionEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setCommonErrorHandler(kafkaErrorHandler());
         return factory;
     }
 
+    /**
+     * Retries a failed poll from the failing record onwards and, once retries are
+     * exhausted, publishes just that record to the DLQ so the rest of the batch can proceed.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler() {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(deadLetterKafkaTemplate(),
+                (record, e) -> new TopicPartition(EventProcessingService.DLQ_TOPIC, -1));
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(1000L, 3));
+    }
+
     @Bean
+    @Primary
     public KafkaTemplate<String, SessionEvent> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
+
+    @Bean
+    public KafkaTemplate<String, SessionEvent> deadLetterKafkaTemplate() {
+        return new KafkaTemplate<>(deadLetterProducerFactory());
+    }
 }
@@ -4,6 +4,7 @@ import com.example.miniproject.model.AuthRequest;
 import com.example.miniproject.model.AuthResponse;
 import com.example.miniproject.service.JwtService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
@@ -21,12 +22,10 @@ public class AuthController {
     public Mono<ResponseEntity<AuthResponse>> login(@RequestBody AuthRequest request) {
         // In a real application, you would validate credentials here
         // For demo purposes, we're just generating a token
-        String token = jwtService.generateToken(
+        return jwtService.generateToken(
                 request.getUsername(),
                 Arrays.asList("ROLE_USER")
-        );
-
-        return Mono.just(ResponseEntity.ok(new AuthResponse(token)));
+        ).map(token -> ResponseEntity.ok(new AuthResponse(token)));
     }
 
     @PostMapping("/logout")
@@ -37,4 +36,20 @@ public class AuthController {
         }
         return Mono.just(ResponseEntity.ok().build());
     }
+
+    /**
+     * Revokes every token of the caller, on all devices.
+     */
+    @PostMapping("/logout-all")
+    public Mono<ResponseEntity<Void>> logoutAll(@RequestHeader("Authorization") String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        return jwtService.validateToken(authHeader.substring(7))
+                .map(claims -> claims.getSubject())
+                .onErrorResume(e -> Mono.empty())
+                .flatMap(username -> jwtService.revokeAllTokens(username)
+                        .thenReturn(ResponseEntity.ok().<Void>build()))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
 }
@@ -1,19 +1,52 @@
 package com.example.miniproject.controller;
 
+import com.example.miniproject.model.AnalyticsCubeRow;
+import com.example.miniproject.model.CohortQuery;
+import com.example.miniproject.model.CohortResult;
+import com.example.miniproject.model.CubeQuery;
+import com.example.miniproject.model.EventQuery;
+import com.example.miniproject.model.HeavyHitter;
+import com.example.miniproject.model.PublishResult;
+import com.example.miniproject.model.QoeWindow;
 import com.example.miniproject.model.SessionEvent;
 import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionMetadata;
+import com.example.miniproject.model.UniqueSessionCount;
+import com.example.miniproject.repository.SessionRepository;
+import com.example.miniproject.service.AnalyticsCubeService;
+import com.example.miniproject.service.AnalyticsEngine;
+import com.example.miniproject.service.CohortIndex;
 import com.example.miniproject.service.EventProcessingService;
+import com.example.miniproject.service.HeavyHitterTracker;
+import com.example.miniproject.service.JdbcScheduler;
+import com.example.miniproject.service.PublishRejectedException;
+import com.example.miniproject.service.QoeWindowAggregator;
+import com.example.miniproject.service.SessionResponseCache;
+import com.example.miniproject.service.SessionRollupService;
+import com.example.miniproject.service.SessionTracker;
 import com.example.miniproject.service.StorageService;
+import com.example.miniproject.service.UniqueSessionCounter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.OptionalDouble;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequestMapping("/api/sessions")
@@ -22,29 +55,81 @@ public class SessionAnalysisController {
 
     private final EventProcessingService eventProcessingService;
     private final StorageService storageService;
+    private final SessionRollupService rollupService;
+    private final AnalyticsEngine analyticsEngine;
+    private final AnalyticsCubeService analyticsCubeService;
+    private final QoeWindowAggregator qoeWindowAggregator;
+    private final SessionTracker sessionTracker;
+    private final SessionRepository sessionRepository;
+    private final HeavyHitterTracker heavyHitterTracker;
+    private final UniqueSessionCounter uniqueSessionCounter;
+    private final ObjectProvider<CohortIndex> cohortIndex;
+    private final JdbcScheduler jdbcScheduler;
+    private final SessionResponseCache responseCache;
+
+    @Value("${session.events.publish.chunk-size:500}")
+    private int publishChunkSize;
+
+    @Value("${session.archive.query.max-days:31}")
+    private int maxHistoryDays;
 
     @PostMapping("/events")
     @PreAuthorize("hasRole('USER')")
     public Mono<ResponseEntity<Void>> publishEvent(@RequestBody SessionEvent event) {
-        return Mono.fromRunnable(() -> eventProcessingService.publishEvent(event))
-                .thenReturn(ResponseEntity.ok().build());
+        // Completes when Kafka acknowledges the event, without holding the event loop
+        return Mono.defer(() -> Mono.fromFuture(eventProcessingService.publishEvent(event)))
+                .thenReturn(ResponseEntity.ok().<Void>build())
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(publishFailureStatus(e)).<Void>build()));
     }
 
-    @GetMapping("/{sessionId}/events")
+    /**
+     * Accepts a stream of events as NDJSON or a JSON array and publishes them in chunks.
+     * On failure the response still reports how many leading events were acknowledged,
+     * so clients can resume from there.
+     */
+    @PostMapping(value = "/events/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
     @PreAuthorize("hasRole('USER')")
-    public Mono<ResponseEntity<List<SessionEvent>>> getSessionEvents(
-            @PathVariable String sessionId,
-            @RequestParam(required = false) String eventType) {
-
-        return Mono.fromCallable(() -> {
-            List<SessionEvent> events = storageService.getRecentEvents(sessionId);
-            if (eventType != null) {
-                events = events.stream()
-                        .filter(e -> e.getEventType().equals(eventType))
-                        .collect(Collectors.toList());
+    public Mono<ResponseEntity<PublishResult>> publishEvents(@RequestBody Flux<SessionEvent> events) {
+        AtomicLong accepted = new AtomicLong();
+        return events.buffer(publishChunkSize)
+                .concatMap(chunk -> Mono.defer(() -> Mono.fromFuture(eventProcessingService.publishEvents(chunk)))
+                        .doOnSuccess(ignored -> accepted.addAndGet(chunk.size())))
+                .then(Mono.fromCallable(() -> ResponseEntity.ok(new PublishResult(accepted.get()))))
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(publishFailureStatus(e))
+                        .body(new PublishResult(accepted.get()))));
+    }
+
+    private static HttpStatus publishFailureStatus(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PublishRejectedException) {
+                return HttpStatus.TOO_MANY_REQUESTS;
             }
-            return ResponseEntity.ok(events);
-        });
+            if (cause instanceof ServerWebInputException || cause instanceof DecodingException) {
+                return HttpStatus.BAD_REQUEST;
+            }
+        }
+        // Producer buffer exhausted, metadata timeout or broker failure
+        return HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Streams a page of events (JSON array, or NDJSON when requested). Without {@code from} only
+     * events within retention are returned; older parts of a range come from the S3 archive.
+     */
+    @GetMapping(value = "/{sessionId}/events",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('USER')")
+    public Flux<SessionEvent> getSessionEvents(@PathVariable String sessionId, EventQuery query) {
+        Instant end = query.getTo() != null ? query.getTo() : Instant.now();
+        if (query.getFrom() != null && (!query.getFrom().isBefore(end)
+                || query.getFrom().isBefore(end.minus(maxHistoryDays, ChronoUnit.DAYS)))) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid time range"));
+        }
+
+        return responseCache.events(sessionId, query,
+                        () -> jdbcScheduler.page(storageService.streamEvents(sessionId, query)))
+                .onErrorMap(RejectedExecutionException.class, SessionAnalysisController::overloaded);
     }
 
     @GetMapping("/{sessionId}/analytics")
@@ -52,50 +137,129 @@ public class SessionAnalysisController {
     public Mono<ResponseEntity<SessionAnalytics>> getSessionAnalytics(
             @PathVariable String sessionId) {
 
-        return Mono.fromCallable(() -> {
-            List<SessionEvent> events = storageService.getRecentEvents(sessionId);
-            SessionAnalytics analytics = calculateAnalytics(events);
-            return ResponseEntity.ok(analytics);
-        });
+        // Sessions ingested before rollups existed fall back to recomputing from raw events
+        return responseCache.analytics(sessionId, () -> onJdbc(() -> rollupService.getAnalytics(sessionId)
+                        .orElseGet(() -> analyticsEngine.analyzeWithPercentiles(storageService.getRecentEvents(sessionId)))))
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Session lifecycle and running QoE: live sessions from memory, closed ones from their summary row.
+     */
+    @GetMapping("/{sessionId}/summary")
+    @PreAuthorize("hasRole('USER')")
+    public Mono<ResponseEntity<SessionMetadata>> getSessionSummary(@PathVariable String sessionId) {
+        return Mono.justOrEmpty(sessionTracker.getLive(sessionId))
+                .switchIfEmpty(onJdbc(() -> sessionRepository.findById(sessionId)).flatMap(Mono::justOrEmpty))
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Merges session rollups matching the given dimensions, e.g. per-region percentiles. At least
+     * one dimension is required.
+     */
+    @GetMapping("/admin/analytics/merged")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<SessionAnalytics>> getMergedAnalytics(
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) String deviceType,
+            @RequestParam(required = false) String contentId) {
+        return onJdbc(() -> ResponseEntity.ok(rollupService.mergeAnalytics(region, deviceType, contentId)))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @PostMapping("/admin/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<Integer>> rebuildRollups(@RequestParam(required = false) String sessionId) {
+        return onJdbc(() -> ResponseEntity.ok(rollupService.rebuild(sessionId)));
+    }
+
+    /**
+     * Streams the fleet-wide analytics cube (JSON array, or NDJSON when requested); bucketed
+     * results are queried a chunk of buckets at a time as the client reads.
+     */
+    @GetMapping(value = "/admin/all-analytics",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public Flux<AnalyticsCubeRow> getAllSessionsAnalytics(CubeQuery query) {
+        return analyticsCubeService.query(query)
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(RejectedExecutionException.class, SessionAnalysisController::overloaded);
+    }
+
+    /**
+     * Live QoE window updates as Server-Sent Events, optionally for one region and/or content.
+     */
+    @GetMapping(value = "/admin/qoe/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public Flux<QoeWindow> streamQoe(@RequestParam(required = false) String region,
+                                     @RequestParam(required = false) String contentId) {
+        return qoeWindowAggregator.stream()
+                .filter(w -> (region == null || region.equals(w.getRegion()))
+                        && (contentId == null || contentId.equals(w.getContentId())));
+    }
+
+    /**
+     * Worst content, regions or device types of the last few minutes by errors, buffering or
+     * failed-start rate, merged across consumer instances unless {@code local} is set.
+     */
+    @GetMapping("/admin/heavy-hitters")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<List<HeavyHitter>> getHeavyHitters(@RequestParam(defaultValue = "contentId") String dimension,
+                                                   @RequestParam(defaultValue = "errors") String metric,
+                                                   @RequestParam(defaultValue = "10") int k,
+                                                   @RequestParam(defaultValue = "false") boolean local) {
+        return heavyHitterTracker.top(dimension, metric, k, !local)
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    /**
+     * Approximate distinct sessions for a dimension value (or all sessions) over whole buckets
+     * of the range, by default the last 24 hours.
+     */
+    @GetMapping("/admin/unique-sessions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<UniqueSessionCount> getUniqueSessions(
+            @RequestParam(defaultValue = "all") String dimension,
+            @RequestParam(required = false) String value,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(24, ChronoUnit.HOURS);
+        return uniqueSessionCounter.count(dimension, value, start, end)
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
     }
 
-    @GetMapping("/admin/all-analytics")
+    /**
+     * Size and sessions of a cohort, e.g. {@code ?deviceType=android&region=eu-west&contentId=X&hadError=true};
+     * 404 unless the cohort index is enabled.
+     */
+    @GetMapping("/admin/cohort")
     @PreAuthorize("hasRole('ADMIN')")
-    public Mono<ResponseEntity<List<SessionAnalytics>>> getAllSessionsAnalytics() {
-        // 实现管理员级别的分析功能
-        return Mono.just(ResponseEntity.ok(new ArrayList<>())); // 使用兼容性更好的空ArrayList
+    public Mono<CohortResult> getCohort(CohortQuery query) {
+        CohortIndex index = cohortIndex.getIfAvailable();
+        if (index == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Cohort index is disabled"));
+        }
+        return onJdbc(() -> index.query(query))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    /**
+     * Runs a blocking query on the JDBC pool, answering 503 when its queue is full.
+     */
+    private <T> Mono<T> onJdbc(Callable<T> query) {
+        return jdbcScheduler.call(query)
+                .onErrorMap(RejectedExecutionException.class, SessionAnalysisController::overloaded);
     }
 
-    private SessionAnalytics calculateAnalytics(List<SessionEvent> events) {
-        SessionAnalytics analytics = new SessionAnalytics();
-
-        // Calculate average startup time
-        OptionalDouble avgStartupTime = events.stream()
-                .filter(e -> e.getMetrics().getStartupTimeMs() != null)
-                .mapToLong(e -> e.getMetrics().getStartupTimeMs())
-                .average();
-        analytics.setAverageStartupTimeMs(avgStartupTime.orElse(0.0));
-
-        // Calculate total buffering time
-        long totalBuffering = events.stream()
-                .filter(e -> e.getMetrics().getBufferingDurationMs() != null)
-                .mapToLong(e -> e.getMetrics().getBufferingDurationMs())
-                .sum();
-        analytics.setTotalBufferingMs(totalBuffering);
-
-        // Calculate average bitrate
-        OptionalDouble avgBitrate = events.stream()
-                .filter(e -> e.getMetrics().getBitrate() != null)
-                .mapToInt(e -> e.getMetrics().getBitrate())
-                .average();
-        analytics.setAverageBitrateKbps(avgBitrate.orElse(0.0));
-
-        // Count errors
-        long errorCount = events.stream()
-                .mapToInt(e -> e.getMetrics().getErrorCount())
-                .sum();
-        analytics.setTotalErrors(errorCount);
-
-        return analytics;
+    private static Throwable overloaded(RejectedExecutionException e) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending queries");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.example.miniproject.kafka;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Hashes keys exactly like the default partitioner (murmur2), except for a configured set of
+ * hot keys, which are rotated over {@code spread} neighbouring partitions. Events for a hot key
+ * therefore lose their per-key ordering, so only list keys where that is acceptable
+ * (load-test or synthetic sessions, for instance).
+ */
+public class HotKeySpreadingPartitioner implements Partitioner {
+
+    public static final String HOT_KEYS_CONFIG = "session.partitioner.hot-keys";
+    public static final String SPREAD_CONFIG = "session.partitioner.spread";
+
+    private Set<String> hotKeys = Set.of();
+    private int spread = 1;
+    private final ConcurrentMap<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object keys = configs.get(HOT_KEYS_CONFIG);
+        if (keys != null) {
+            hotKeys = Arrays.stream(keys.toString().split(","))
+                    .map(String::trim)
+                    .filter(k -> !k.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+        Object configuredSpread = configs.get(SPREAD_CONFIG);
+        if (configuredSpread != null) {
+            spread = Math.max(1, Integer.parseInt(configuredSpread.toString()));
+        }
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int numPartitions = cluster.partitionsForTopic(topic).size();
+        if (keyBytes == null) {
+            return Utils.toPositive(counters.computeIfAbsent("", k -> new AtomicInteger()).getAndIncrement())
+                    % numPartitions;
+        }
+        int home = Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+        String hotKey = String.valueOf(key);
+        if (!hotKeys.contains(hotKey)) {
+            return home;
+        }
+        int offset = Math.floorMod(counters.computeIfAbsent(hotKey, k -> new AtomicInteger()).getAndIncrement(),
+                Math.min(spread, numPartitions));
+        return (home + offset) % numPartitions;
+    }
+
+    @Override
+    public void close() {
+        counters.clear();
+    }
+}
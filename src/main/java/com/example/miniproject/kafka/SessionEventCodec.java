@@ -0,0 +1,287 @@
+package com.example.miniproject.kafka;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link SessionEvent} and its {@link QualityMetrics}.
+ * <p>
+ * Layout (version 1):
+ * <pre>
+ *   magic 'S' | version | presence bits (varint) | fields in declaration order
+ * </pre>
+ * Integers are zig-zag varints, the timestamp is varint milliseconds since
+ * {@link #EPOCH_MS} plus optional nanos-of-millisecond, and {@code eventType},
+ * {@code deviceType} and {@code region} are written as a dictionary code, falling back to a
+ * length-prefixed UTF-8 literal (code 0) for values missing from the dictionary. Absent fields
+ * cost one bit. Dictionaries are frozen per version: add entries only with a version bump, and
+ * deploy readers before writers.
+ */
+public final class SessionEventCodec {
+
+    public static final byte MAGIC = 'S';
+    public static final byte VERSION = 1;
+
+    /** 2020-01-01T00:00:00Z; keeps current timestamps at six varint bytes. */
+    static final long EPOCH_MS = 1577836800000L;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_TIMESTAMP_NANOS = 1 << 1;
+    private static final int HAS_DEVICE_TYPE = 1 << 2;
+    private static final int HAS_REGION = 1 << 3;
+    private static final int HAS_CONTENT_ID = 1 << 4;
+    private static final int HAS_METRICS = 1 << 5;
+    private static final int HAS_STARTUP_TIME = 1 << 6;
+    private static final int HAS_BUFFERING_DURATION = 1 << 7;
+    private static final int HAS_END_TIME = 1 << 8;
+    private static final int HAS_BITRATE = 1 << 9;
+    private static final int HAS_BUFFERING_RATIO = 1 << 10;
+    private static final int HAS_ERROR_COUNT = 1 << 11;
+    private static final int HAS_SESSION_ID = 1 << 12;
+    private static final int HAS_EVENT_TYPE = 1 << 13;
+    private static final int HAS_TIMESTAMP = 1 << 14;
+
+    private static final Dictionary EVENT_TYPES = new Dictionary(List.of(
+            "start", "heartbeat", "buffering", "error", "pause", "resume", "seek", "bitrate_change", "end"));
+    private static final Dictionary DEVICE_TYPES = new Dictionary(List.of(
+            "android", "ios", "web", "desktop", "smart_tv", "roku", "fire_tv", "apple_tv", "chromecast", "console"));
+    private static final Dictionary REGIONS = new Dictionary(List.of(
+            "us-east-1", "us-east-2", "us-west-1", "us-west-2", "ca-central-1", "sa-east-1",
+            "eu-west-1", "eu-west-2", "eu-central-1", "eu-north-1",
+            "ap-south-1", "ap-southeast-1", "ap-southeast-2", "ap-northeast-1", "ap-northeast-2"));
+
+    private SessionEventCodec() {
+    }
+
+    public static byte[] encode(SessionEvent event) {
+        Writer out = new Writer(64);
+        QualityMetrics metrics = event.getMetrics();
+        Instant timestamp = event.getTimestamp();
+
+        int presence = 0;
+        presence |= event.getId() != null ? HAS_ID : 0;
+        presence |= event.getSessionId() != null ? HAS_SESSION_ID : 0;
+        presence |= event.getEventType() != null ? HAS_EVENT_TYPE : 0;
+        presence |= timestamp != null ? HAS_TIMESTAMP : 0;
+        presence |= timestamp != null && timestamp.getNano() % 1_000_000 != 0 ? HAS_TIMESTAMP_NANOS : 0;
+        presence |= event.getDeviceType() != null ? HAS_DEVICE_TYPE : 0;
+        presence |= event.getRegion() != null ? HAS_REGION : 0;
+        presence |= event.getContentId() != null ? HAS_CONTENT_ID : 0;
+        if (metrics != null) {
+            presence |= HAS_METRICS;
+            presence |= metrics.getStartupTimeMs() != null ? HAS_STARTUP_TIME : 0;
+            presence |= metrics.getBufferingDurationMs() != null ? HAS_BUFFERING_DURATION : 0;
+            presence |= metrics.getEndTimeMs() != null ? HAS_END_TIME : 0;
+            presence |= metrics.getBitrate() != null ? HAS_BITRATE : 0;
+            presence |= metrics.getBufferingRatio() != null ? HAS_BUFFERING_RATIO : 0;
+            presence |= metrics.getErrorCount() != null ? HAS_ERROR_COUNT : 0;
+        }
+
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(presence);
+        if ((presence & HAS_ID) != 0) out.writeZigZag(event.getId());
+        if ((presence & HAS_SESSION_ID) != 0) out.writeString(event.getSessionId());
+        if ((presence & HAS_EVENT_TYPE) != 0) out.writeCoded(EVENT_TYPES, event.getEventType());
+        if ((presence & HAS_TIMESTAMP) != 0) {
+            out.writeZigZag(timestamp.toEpochMilli() - EPOCH_MS);
+            if ((presence & HAS_TIMESTAMP_NANOS) != 0) out.writeVarLong(timestamp.getNano() % 1_000_000);
+        }
+        if ((presence & HAS_DEVICE_TYPE) != 0) out.writeCoded(DEVICE_TYPES, event.getDeviceType());
+        if ((presence & HAS_REGION) != 0) out.writeCoded(REGIONS, event.getRegion());
+        if ((presence & HAS_CONTENT_ID) != 0) out.writeString(event.getContentId());
+        if ((presence & HAS_STARTUP_TIME) != 0) out.writeZigZag(metrics.getStartupTimeMs());
+        if ((presence & HAS_BUFFERING_DURATION) != 0) out.writeZigZag(metrics.getBufferingDurationMs());
+        if ((presence & HAS_END_TIME) != 0) out.writeZigZag(metrics.getEndTimeMs());
+        if ((presence & HAS_BITRATE) != 0) out.writeZigZag(metrics.getBitrate());
+        if ((presence & HAS_BUFFERING_RATIO) != 0) out.writeDouble(metrics.getBufferingRatio());
+        if ((presence & HAS_ERROR_COUNT) != 0) out.writeZigZag(metrics.getErrorCount());
+        return out.toByteArray();
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 1 && data[0] == MAGIC;
+    }
+
+    public static SessionEvent decode(byte[] data) {
+        Reader in = new Reader(data);
+        if (in.readByte() != MAGIC) {
+            throw new SerializationException("Not a binary SessionEvent record");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new SerializationException("Unsupported SessionEvent schema version " + version);
+        }
+
+        int presence = (int) in.readVarLong();
+        SessionEvent event = new SessionEvent();
+        if ((presence & HAS_ID) != 0) event.setId(in.readZigZag());
+        if ((presence & HAS_SESSION_ID) != 0) event.setSessionId(in.readString());
+        if ((presence & HAS_EVENT_TYPE) != 0) event.setEventType(in.readCoded(EVENT_TYPES));
+        if ((presence & HAS_TIMESTAMP) != 0) {
+            long epochMs = in.readZigZag() + EPOCH_MS;
+            long nanos = (presence & HAS_TIMESTAMP_NANOS) != 0 ? in.readVarLong() : 0;
+            event.setTimestamp(Instant.ofEpochMilli(epochMs).plusNanos(nanos));
+        }
+        if ((presence & HAS_DEVICE_TYPE) != 0) event.setDeviceType(in.readCoded(DEVICE_TYPES));
+        if ((presence & HAS_REGION) != 0) event.setRegion(in.readCoded(REGIONS));
+        if ((presence & HAS_CONTENT_ID) != 0) event.setContentId(in.readString());
+        if ((presence & HAS_METRICS) != 0) {
+            QualityMetrics metrics = new QualityMetrics();
+            if ((presence & HAS_STARTUP_TIME) != 0) metrics.setStartupTimeMs(in.readZigZag());
+            if ((presence & HAS_BUFFERING_DURATION) != 0) metrics.setBufferingDurationMs(in.readZigZag());
+            if ((presence & HAS_END_TIME) != 0) metrics.setEndTimeMs(in.readZigZag());
+            if ((presence & HAS_BITRATE) != 0) metrics.setBitrate((int) in.readZigZag());
+            if ((presence & HAS_BUFFERING_RATIO) != 0) metrics.setBufferingRatio(in.readDouble());
+            if ((presence & HAS_ERROR_COUNT) != 0) metrics.setErrorCount((int) in.readZigZag());
+            event.setMetrics(metrics);
+        }
+        return event;
+    }
+
+    private static final class Dictionary {
+        private final String[] values;
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private Dictionary(List<String> values) {
+            this.values = values.toArray(new String[0]);
+            for (int i = 0; i < this.values.length; i++) {
+                codes.put(this.values[i], i + 1);
+            }
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        private Writer(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buffer[position++] = (byte) (bits >>> (i * 8));
+            }
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeCoded(Dictionary dictionary, String value) {
+            Integer code = dictionary.codes.get(value);
+            if (code != null) {
+                writeVarLong(code);
+            } else {
+                writeVarLong(0);
+                writeString(value);
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private byte readByte() {
+            if (position >= data.length) {
+                throw new SerializationException("Truncated SessionEvent record");
+            }
+            return data[position++];
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new SerializationException("Malformed varint in SessionEvent record");
+        }
+
+        private long readZigZag() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        private double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (long) (readByte() & 0xFF) << (i * 8);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String readString() {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > data.length) {
+                throw new SerializationException("Truncated SessionEvent record");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private String readCoded(Dictionary dictionary) {
+            int code = (int) readVarLong();
+            if (code == 0) {
+                return readString();
+            }
+            if (code > dictionary.values.length) {
+                throw new SerializationException("Unknown dictionary code " + code);
+            }
+            // Shared constant instances, so decoding a coded value allocates nothing
+            return dictionary.values[code - 1];
+        }
+    }
+}
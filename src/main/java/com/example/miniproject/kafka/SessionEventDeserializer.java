@@ -0,0 +1,30 @@
+package com.example.miniproject.kafka;
+
+import com.example.miniproject.model.SessionEvent;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * Reads {@link SessionEventCodec} binary records, and still accepts JSON records so consumers
+ * can be upgraded before producers switch formats.
+ */
+public class SessionEventDeserializer implements Deserializer<SessionEvent> {
+
+    private final JsonDeserializer<SessionEvent> json = new JsonDeserializer<>(SessionEvent.class);
+
+    @Override
+    public SessionEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (SessionEventCodec.isBinary(data)) {
+            return SessionEventCodec.decode(data);
+        }
+        return json.deserialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
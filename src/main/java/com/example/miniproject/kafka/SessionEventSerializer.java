@@ -0,0 +1,15 @@
+package com.example.miniproject.kafka;
+
+import com.example.miniproject.model.SessionEvent;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Writes {@link SessionEvent} records in the {@link SessionEventCodec} binary format.
+ */
+public class SessionEventSerializer implements Serializer<SessionEvent> {
+
+    @Override
+    public byte[] serialize(String topic, SessionEvent event) {
+        return event == null ? null : SessionEventCodec.encode(event);
+    }
+}
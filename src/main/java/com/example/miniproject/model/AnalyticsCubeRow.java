@@ -0,0 +1,23 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * One cell of the admin analytics cube; dimensions that were not grouped by are null.
+ */
+@Data
+public class AnalyticsCubeRow {
+    private String region;
+    private String deviceType;
+    private String contentId;
+    private Instant bucketStart;
+
+    private long sessions;
+    private long events;
+    private double averageStartupTimeMs;
+    private long totalBufferingMs;
+    private double averageBitrateKbps;
+    private long totalErrors;
+}
@@ -0,0 +1,37 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Query parameters of {@code GET /api/sessions/admin/cohort}. Each dimension takes one or more
+ * values (any of them matches); dimensions and flags are combined with AND. A session matches
+ * the time range if it has an event in one of the hourly buckets overlapping
+ * {@code from}/{@code to}; {@code eventType}, {@code hadError} and {@code rebuffered} refer to
+ * its events in those buckets, while region, device type and content are session attributes.
+ */
+@Data
+public class CohortQuery {
+    private List<String> region;
+
+    private List<String> deviceType;
+
+    private List<String> contentId;
+
+    private List<String> eventType;
+
+    private Boolean hadError;
+
+    private Boolean rebuffered;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant to;
+
+    private Integer limit;
+}
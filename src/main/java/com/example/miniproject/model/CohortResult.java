@@ -0,0 +1,17 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Size of a session cohort and up to {@code limit} of its session IDs.
+ */
+@Data
+public class CohortResult {
+    private Instant from;
+    private Instant to;
+    private long sessions;
+    private List<String> sessionIds;
+}
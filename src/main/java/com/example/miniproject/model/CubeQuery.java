@@ -0,0 +1,36 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Query parameters of {@code GET /api/sessions/admin/all-analytics}. {@code groupBy} takes any of
+ * {@code region}, {@code deviceType} and {@code contentId}; {@code bucket} ({@code minute},
+ * {@code hour} or {@code day}) adds a time dimension, with {@code from}/{@code to} widened to
+ * whole buckets. {@code limit} keeps the top rows by {@code orderBy}, per bucket when bucketed.
+ */
+@Data
+public class CubeQuery {
+    private List<String> groupBy;
+
+    private String bucket;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant to;
+
+    private String region;
+
+    private String deviceType;
+
+    private String contentId;
+
+    private String orderBy;
+
+    private Integer limit;
+}
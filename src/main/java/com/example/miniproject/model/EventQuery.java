@@ -0,0 +1,29 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.Instant;
+
+/**
+ * Query parameters of {@code GET /api/sessions/{sessionId}/events}. Results are ordered by
+ * {@code (timestamp, id)} descending; to fetch the next page pass the last event's timestamp and
+ * id as {@code beforeTimestamp}/{@code beforeId}.
+ */
+@Data
+public class EventQuery {
+    private String eventType;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant to;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant beforeTimestamp;
+
+    private Long beforeId;
+
+    private Integer limit;
+}
@@ -0,0 +1,19 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+
+/**
+ * One entry of a heavy-hitter ranking. {@code value} is the approximate total (errors, buffering
+ * milliseconds) or, for {@code failedStartRate}, the failed share of starts; {@code maxError} bounds
+ * how far the summary may have overcounted it.
+ */
+@Data
+public class HeavyHitter {
+    private String dimension;
+    private String item;
+    private String metric;
+    private double value;
+    private double maxError;
+    // Estimated starts behind a failed-start rate
+    private Long starts;
+}
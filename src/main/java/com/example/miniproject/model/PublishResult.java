@@ -0,0 +1,13 @@
+package com.example.miniproject.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PublishResult {
+    // Number of leading events in the request that Kafka acknowledged
+    private long accepted;
+}
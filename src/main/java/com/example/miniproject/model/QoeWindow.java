@@ -0,0 +1,28 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * QoE aggregate of one region and content over an event-time window, as pushed to the live feed.
+ * Sliding windows are re-sent every pane while they fill; a tumbling window is sent once, with
+ * {@code closed} set, when the watermark passes its end.
+ */
+@Data
+public class QoeWindow {
+    private String type;
+    private long sizeMs;
+    private Instant start;
+    private Instant end;
+    private boolean closed;
+
+    private String region;
+    private String contentId;
+
+    private long events;
+    private long activeSessions;
+    private double averageBufferingRatio;
+    private double errorRate;
+    private double averageStartupTimeMs;
+}
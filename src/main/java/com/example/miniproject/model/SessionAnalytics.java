@@ -8,4 +8,15 @@ public class SessionAnalytics {
     private long totalBufferingMs;
     private double averageBitrateKbps;
     private long totalErrors;
+
+    // Percentiles from the session's quantile sketches (within 1% relative error)
+    private double startupTimeP50Ms;
+    private double startupTimeP90Ms;
+    private double startupTimeP99Ms;
+    private double bufferingP50Ms;
+    private double bufferingP90Ms;
+    private double bufferingP99Ms;
+    private double bitrateP50Kbps;
+    private double bitrateP90Kbps;
+    private double bitrateP99Kbps;
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.example.miniproject.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import javax.persistence.*;
 import java.io.Serializable;
 import java.time.Instant;
@@ -29,4 +31,15 @@ public class SessionEvent implements Serializable {
     private String region;
     private String contentId;
 
+    // Kafka record the event was consumed from; stored as its idempotency key, never serialized
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Integer kafkaPartition;
+
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long kafkaOffset;
+
 }
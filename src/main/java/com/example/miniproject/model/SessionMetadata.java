@@ -1,4 +1,37 @@
 package com.example.miniproject.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Session-level view built by sessionization: lifecycle plus running QoE totals. Live sessions
+ * are served from memory; closed ones from {@code session_summaries}.
+ */
+@Data
 public class SessionMetadata {
+    private String sessionId;
+    private String state;
+    private Instant startTime;
+    private Instant lastEventTime;
+    private Instant endTime;
+    private String closeReason;
+
+    private String deviceType;
+    private String region;
+    private String contentId;
+
+    private long eventCount;
+    private long errorCount;
+    private long totalBufferingMs;
+    private Long startupTimeMs;
+    private double averageBitrateKbps;
+
+    // Kafka offsets of the first and last event folded in, per partition; only set on closing
+    @JsonIgnore
+    private Map<Integer, Long> firstOffsets;
+    @JsonIgnore
+    private Map<Integer, Long> lastOffsets;
 }
@@ -0,0 +1,24 @@
+package com.example.miniproject.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Approximate number of distinct sessions for one dimension value over whole time buckets.
+ * {@code standardError} is relative; the true count lies within
+ * {@code lowerBound}..{@code upperBound} (three standard errors) with over 99% probability.
+ */
+@Data
+public class UniqueSessionCount {
+    private String dimension;
+    private String value;
+    private Instant from;
+    private Instant to;
+    private int buckets;
+
+    private long estimate;
+    private double standardError;
+    private long lowerBound;
+    private long upperBound;
+}
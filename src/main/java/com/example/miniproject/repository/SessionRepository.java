@@ -1,4 +1,108 @@
 package com.example.miniproject.repository;
 
+import com.example.miniproject.model.SessionMetadata;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+/**
+ * Closed-session summaries in {@code session_summaries}. A session that is closed more than once
+ * (idle eviction, then new events) is merged into its existing row.
+ * <p>
+ * The row keeps the last Kafka offset merged in per partition. A segment is only merged when it
+ * starts past those offsets, so one rebuilt from redelivered records is skipped instead of added
+ * again; a segment that straddles them (replayed after a restart, then continued) is skipped
+ * too, which undercounts it rather than double counting.
+ */
+@Repository
+@RequiredArgsConstructor
 public class SessionRepository {
+
+    private static final String COLUMNS = "session_id, state, start_time, last_event_time, end_time, close_reason, " +
+            "device_type, region, content_id, event_count, error_count, buffering_ms, startup_time_ms, average_bitrate";
+
+    private static final String UPSERT_SQL = "INSERT INTO session_summaries (" + COLUMNS + ", kafka_offsets) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb)) ON CONFLICT (session_id) DO UPDATE SET " +
+            "state = EXCLUDED.state, close_reason = EXCLUDED.close_reason, " +
+            "start_time = LEAST(session_summaries.start_time, EXCLUDED.start_time), " +
+            "last_event_time = GREATEST(session_summaries.last_event_time, EXCLUDED.last_event_time), " +
+            "end_time = GREATEST(session_summaries.end_time, EXCLUDED.end_time), " +
+            "device_type = COALESCE(session_summaries.device_type, EXCLUDED.device_type), " +
+            "region = COALESCE(session_summaries.region, EXCLUDED.region), " +
+            "content_id = COALESCE(session_summaries.content_id, EXCLUDED.content_id), " +
+            "average_bitrate = (session_summaries.average_bitrate * session_summaries.event_count " +
+            "+ EXCLUDED.average_bitrate * EXCLUDED.event_count) " +
+            "/ GREATEST(session_summaries.event_count + EXCLUDED.event_count, 1), " +
+            "event_count = session_summaries.event_count + EXCLUDED.event_count, " +
+            "error_count = session_summaries.error_count + EXCLUDED.error_count, " +
+            "buffering_ms = session_summaries.buffering_ms + EXCLUDED.buffering_ms, " +
+            "startup_time_ms = COALESCE(session_summaries.startup_time_ms, EXCLUDED.startup_time_ms), " +
+            // Merging only segments past the stored offsets, so the new last offsets are the larger ones
+            "kafka_offsets = COALESCE(session_summaries.kafka_offsets, '{}'::jsonb) " +
+            "|| COALESCE(EXCLUDED.kafka_offsets, '{}'::jsonb) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM jsonb_each_text(CAST(? AS jsonb)) AS segment(kafka_partition, first_offset) " +
+            "WHERE (session_summaries.kafka_offsets ->> segment.kafka_partition)::bigint >= segment.first_offset::bigint)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void saveSummaries(List<SessionMetadata> sessions) {
+        List<Object[]> rows = new ArrayList<>(sessions.size());
+        for (SessionMetadata session : sessions) {
+            rows.add(new Object[]{session.getSessionId(), session.getState(), timestamp(session.getStartTime()),
+                    timestamp(session.getLastEventTime()), timestamp(session.getEndTime()), session.getCloseReason(),
+                    session.getDeviceType(), session.getRegion(), session.getContentId(), session.getEventCount(),
+                    session.getErrorCount(), session.getTotalBufferingMs(), session.getStartupTimeMs(),
+                    session.getAverageBitrateKbps(), offsets(session.getLastOffsets()),
+                    offsets(session.getFirstOffsets())});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+
+    public Optional<SessionMetadata> findById(String sessionId) {
+        List<SessionMetadata> rows = jdbcTemplate.query("SELECT " + COLUMNS + " FROM session_summaries WHERE session_id = ?",
+                (rs, rowNum) -> {
+                    SessionMetadata session = new SessionMetadata();
+                    session.setSessionId(rs.getString("session_id"));
+                    session.setState(rs.getString("state"));
+                    session.setStartTime(instant(rs.getTimestamp("start_time")));
+                    session.setLastEventTime(instant(rs.getTimestamp("last_event_time")));
+                    session.setEndTime(instant(rs.getTimestamp("end_time")));
+                    session.setCloseReason(rs.getString("close_reason"));
+                    session.setDeviceType(rs.getString("device_type"));
+                    session.setRegion(rs.getString("region"));
+                    session.setContentId(rs.getString("content_id"));
+                    session.setEventCount(rs.getLong("event_count"));
+                    session.setErrorCount(rs.getLong("error_count"));
+                    session.setTotalBufferingMs(rs.getLong("buffering_ms"));
+                    session.setStartupTimeMs(rs.getObject("startup_time_ms", Long.class));
+                    session.setAverageBitrateKbps(rs.getDouble("average_bitrate"));
+                    return session;
+                }, sessionId);
+        return rows.stream().findFirst();
+    }
+
+    private static String offsets(Map<Integer, Long> offsets) {
+        if (offsets == null || offsets.isEmpty()) {
+            return "{}";
+        }
+        StringJoiner json = new StringJoiner(",", "{", "}");
+        offsets.forEach((partition, offset) -> json.add("\"" + partition + "\":" + offset));
+        return json.toString();
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant != null ? Timestamp.from(instant) : null;
+    }
+
+    private static Instant instant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
 }
@@ -0,0 +1,106 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * Single-pass fold of event metrics into primitive totals. Every metric treats null the same
+ * way: the value is skipped and, for averages, not counted. Accumulators for disjoint slices of
+ * events can be {@link #combine combined} in any order, so large inputs can be split across
+ * threads. Not thread-safe; give each thread its own instance.
+ */
+@Getter
+public final class AnalyticsAccumulator {
+
+    private long eventCount;
+    private long startupTimeSum;
+    private long startupTimeCount;
+    private long bufferingTotal;
+    private long bitrateSum;
+    private long bitrateCount;
+    private long errorTotal;
+
+    public AnalyticsAccumulator() {
+    }
+
+    /** Restores persisted totals, e.g. a session rollup row. */
+    AnalyticsAccumulator(long eventCount, long startupTimeSum, long startupTimeCount, long bufferingTotal,
+                         long bitrateSum, long bitrateCount, long errorTotal) {
+        this.eventCount = eventCount;
+        this.startupTimeSum = startupTimeSum;
+        this.startupTimeCount = startupTimeCount;
+        this.bufferingTotal = bufferingTotal;
+        this.bitrateSum = bitrateSum;
+        this.bitrateCount = bitrateCount;
+        this.errorTotal = errorTotal;
+    }
+
+    public void add(SessionEvent event) {
+        eventCount++;
+        QualityMetrics metrics = event.getMetrics();
+        if (metrics == null) {
+            return;
+        }
+        Long startupTime = metrics.getStartupTimeMs();
+        if (startupTime != null) {
+            startupTimeSum += startupTime;
+            startupTimeCount++;
+        }
+        Long buffering = metrics.getBufferingDurationMs();
+        if (buffering != null) {
+            bufferingTotal += buffering;
+        }
+        Integer bitrate = metrics.getBitrate();
+        if (bitrate != null) {
+            bitrateSum += bitrate;
+            bitrateCount++;
+        }
+        Integer errors = metrics.getErrorCount();
+        if (errors != null) {
+            errorTotal += errors;
+        }
+    }
+
+    /**
+     * Folds {@code events[from, to)}; an indexed loop, so no iterator is allocated.
+     */
+    public AnalyticsAccumulator addAll(List<SessionEvent> events, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(events.get(i));
+        }
+        return this;
+    }
+
+    public AnalyticsAccumulator combine(AnalyticsAccumulator other) {
+        eventCount += other.eventCount;
+        startupTimeSum += other.startupTimeSum;
+        startupTimeCount += other.startupTimeCount;
+        bufferingTotal += other.bufferingTotal;
+        bitrateSum += other.bitrateSum;
+        bitrateCount += other.bitrateCount;
+        errorTotal += other.errorTotal;
+        return this;
+    }
+
+    public SessionAnalytics toAnalytics() {
+        SessionAnalytics analytics = new SessionAnalytics();
+        analytics.setAverageStartupTimeMs(startupTimeCount > 0 ? (double) startupTimeSum / startupTimeCount : 0.0);
+        analytics.setTotalBufferingMs(bufferingTotal);
+        analytics.setAverageBitrateKbps(bitrateCount > 0 ? (double) bitrateSum / bitrateCount : 0.0);
+        analytics.setTotalErrors(errorTotal);
+        return analytics;
+    }
+
+    /**
+     * Collector for (parallel) streams of events.
+     */
+    public static Collector<SessionEvent, AnalyticsAccumulator, SessionAnalytics> collector() {
+        return Collector.of(AnalyticsAccumulator::new, AnalyticsAccumulator::add,
+                AnalyticsAccumulator::combine, AnalyticsAccumulator::toAnalytics, Collector.Characteristics.UNORDERED);
+    }
+}
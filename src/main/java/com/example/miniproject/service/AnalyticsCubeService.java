@@ -0,0 +1,364 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.AnalyticsCubeRow;
+import com.example.miniproject.model.CubeQuery;
+import com.example.miniproject.model.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fleet-wide analytics cube over {@code session_events}: one GROUP BY query per request, grouped
+ * by any of region, device type and content plus an optional time bucket, with top-N applied in
+ * SQL.
+ * <p>
+ * Bucketed results are cached per bucket once the bucket is closed, i.e. ended more than
+ * {@code closed-after-ms} ago. Late events still land in closed buckets, so as an ingest observer
+ * the service evicts the cached buckets containing them; entries also expire after
+ * {@code cache-ttl-ms}, which bounds staleness from late events stored by other instances. A
+ * refresh only queries the buckets that are still open or not cached yet. Buckets follow the
+ * wall-clock time rows are stored in (the JVM default zone), like the table partitions.
+ * <p>
+ * Bucketed results are produced {@code stream-buckets} buckets at a time on the
+ * {@link JdbcScheduler}, each chunk queried when the previous one has been consumed, so a long
+ * range is neither materialized nor holds a connection while the client reads.
+ * <p>
+ * When the {@link HotEventStore} is enabled and holds the whole range, the query is answered from
+ * memory instead, without the bucket cache.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalyticsCubeService implements IngestObserver {
+
+    private static final Map<String, String> DIMENSIONS = Map.of(
+            "region", "region", "deviceType", "device_type", "contentId", "content_id");
+    private static final Map<String, ChronoUnit> BUCKETS = Map.of(
+            "minute", ChronoUnit.MINUTES, "hour", ChronoUnit.HOURS, "day", ChronoUnit.DAYS);
+    private static final Set<String> ORDER_BY = Set.of("events", "sessions", "errors", "buffering");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<HotEventStore> hotEventStore;
+    private final JdbcScheduler jdbcScheduler;
+
+    @Value("${session.analytics.cube.default-range-hours:24}")
+    private int defaultRangeHours;
+
+    @Value("${session.analytics.cube.max-buckets:1000}")
+    private int maxBuckets;
+
+    @Value("${session.analytics.cube.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${session.analytics.cube.closed-after-ms:300000}")
+    private long closedAfterMs;
+
+    @Value("${session.analytics.cube.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${session.analytics.cube.cache-ttl-ms:3600000}")
+    private long cacheTtlMs;
+
+    @Value("${session.analytics.cube.stream-buckets:24}")
+    private int streamBuckets;
+
+    // Both guarded by bucketCache; keysByBucket maps "unit|bucket" to the cache keys for it
+    private final LinkedHashMap<String, CachedBucket> bucketCache = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Set<String>> keysByBucket = new HashMap<>();
+    // Bumped on every eviction by a late event; a query only caches what it read if unchanged
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Runs the query on the {@link JdbcScheduler}; fails with {@link IllegalArgumentException} for
+     * unknown dimensions, buckets or orderings, an empty range or too many buckets.
+     */
+    public Flux<AnalyticsCubeRow> query(CubeQuery query) {
+        return Flux.defer(() -> {
+            List<String> dimensions = new ArrayList<>(dimensions(query.getGroupBy()));
+            String orderBy = query.getOrderBy() != null ? query.getOrderBy() : "events";
+            if (!ORDER_BY.contains(orderBy)) {
+                throw new IllegalArgumentException("Unknown orderBy " + orderBy);
+            }
+            int limit = query.getLimit() != null ? Math.max(1, Math.min(query.getLimit(), maxLimit)) : maxLimit;
+            Instant to = query.getTo() != null ? query.getTo() : Instant.now();
+            Instant from = query.getFrom() != null ? query.getFrom() : to.minus(defaultRangeHours, ChronoUnit.HOURS);
+            if (!from.isBefore(to)) {
+                throw new IllegalArgumentException("Invalid time range");
+            }
+
+            HotEventStore hotStore = hotEventStore.getIfAvailable();
+            if (query.getBucket() == null) {
+                if (hotStore != null && hotStore.covers(from)) {
+                    return rows(() -> hotStore.cube(dimensions, null, from, to, query, orderBy, limit));
+                }
+                return rows(() -> aggregate(dimensions, null, Timestamp.from(from), Timestamp.from(to), query,
+                        orderBy, limit));
+            }
+            ChronoUnit unit = BUCKETS.get(query.getBucket());
+            if (unit == null) {
+                throw new IllegalArgumentException("Unknown bucket " + query.getBucket());
+            }
+            LocalDateTime start = toLocal(from).truncatedTo(unit);
+            LocalDateTime rangeEnd = toLocal(to).truncatedTo(unit);
+            LocalDateTime end = rangeEnd.isBefore(toLocal(to)) ? rangeEnd.plus(1, unit) : rangeEnd;
+            if (unit.between(start, end) > maxBuckets) {
+                throw new IllegalArgumentException("Range spans more than " + maxBuckets + " buckets");
+            }
+            Instant startInstant = start.atZone(ZoneId.systemDefault()).toInstant();
+            if (hotStore != null && hotStore.covers(startInstant)) {
+                return rows(() -> hotStore.cube(dimensions, unit, startInstant,
+                        end.atZone(ZoneId.systemDefault()).toInstant(), query, orderBy, limit));
+            }
+            List<LocalDateTime> chunkStarts = new ArrayList<>();
+            for (LocalDateTime chunk = start; chunk.isBefore(end); chunk = chunk.plus(streamBuckets, unit)) {
+                chunkStarts.add(chunk);
+            }
+            return Flux.fromIterable(chunkStarts).concatMap(chunk -> {
+                LocalDateTime next = chunk.plus(streamBuckets, unit);
+                LocalDateTime chunkEnd = next.isBefore(end) ? next : end;
+                return rows(() -> bucketed(dimensions, unit, chunk, chunkEnd, query, orderBy, limit));
+            });
+        });
+    }
+
+    private Flux<AnalyticsCubeRow> rows(Callable<List<AnalyticsCubeRow>> rows) {
+        return jdbcScheduler.call(rows).flatMapIterable(list -> list);
+    }
+
+    /**
+     * Evicts cached buckets that a late event has landed in. Events newer than
+     * {@code closed-after-ms} cannot be in a closed bucket, so live traffic costs one comparison.
+     */
+    @Override
+    public void onEventsStored(List<SessionEvent> events) {
+        long closedBefore = System.currentTimeMillis() - closedAfterMs;
+        Set<String> touched = new HashSet<>();
+        for (SessionEvent event : events) {
+            if (event.getTimestamp().toEpochMilli() >= closedBefore) {
+                continue;
+            }
+            LocalDateTime local = toLocal(event.getTimestamp());
+            BUCKETS.forEach((name, unit) -> touched.add(bucketId(name, local.truncatedTo(unit))));
+        }
+        if (touched.isEmpty()) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        int evicted = 0;
+        synchronized (bucketCache) {
+            for (String bucket : touched) {
+                Set<String> keys = keysByBucket.remove(bucket);
+                if (keys != null) {
+                    keys.forEach(bucketCache::remove);
+                    evicted += keys.size();
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} cached cube buckets after late events", evicted);
+        }
+    }
+
+    private List<AnalyticsCubeRow> bucketed(List<String> dimensions, ChronoUnit unit, LocalDateTime start,
+                                            LocalDateTime end, CubeQuery query, String orderBy, int limit) {
+        long generation = invalidations.get();
+        LocalDateTime closedBefore = toLocal(Instant.now().minusMillis(closedAfterMs));
+        String keyPrefix = String.join("|", String.valueOf(dimensions), query.getBucket(),
+                query.getRegion(), query.getDeviceType(), query.getContentId(), orderBy, String.valueOf(limit));
+
+        Map<LocalDateTime, List<AnalyticsCubeRow>> cached = new HashMap<>();
+        LocalDateTime firstMiss = null;
+        LocalDateTime lastMiss = null;
+        long expiredBefore = System.currentTimeMillis() - cacheTtlMs;
+        for (LocalDateTime bucket = start; bucket.isBefore(end); bucket = bucket.plus(1, unit)) {
+            List<AnalyticsCubeRow> rows = null;
+            if (!bucket.plus(1, unit).isAfter(closedBefore)) {
+                synchronized (bucketCache) {
+                    CachedBucket entry = bucketCache.get(keyPrefix + '|' + bucket);
+                    rows = entry != null && entry.cachedAt >= expiredBefore ? entry.rows : null;
+                }
+            }
+            if (rows != null) {
+                cached.put(bucket, rows);
+            } else {
+                firstMiss = firstMiss != null ? firstMiss : bucket;
+                lastMiss = bucket;
+            }
+        }
+
+        Map<LocalDateTime, List<AnalyticsCubeRow>> computed = new HashMap<>();
+        if (firstMiss != null) {
+            // One query over the span of missing buckets; usually just the most recent ones
+            for (AnalyticsCubeRow row : aggregate(dimensions, unit, Timestamp.valueOf(firstMiss),
+                    Timestamp.valueOf(lastMiss.plus(1, unit)), query, orderBy, limit)) {
+                computed.computeIfAbsent(toLocal(row.getBucketStart()), b -> new ArrayList<>()).add(row);
+            }
+        }
+
+        // A late event evicted while the query ran may be missing from what it read
+        boolean cacheable = invalidations.get() == generation;
+        List<AnalyticsCubeRow> result = new ArrayList<>();
+        for (LocalDateTime bucket = start; bucket.isBefore(end); bucket = bucket.plus(1, unit)) {
+            List<AnalyticsCubeRow> rows = cached.get(bucket);
+            if (rows == null) {
+                rows = computed.getOrDefault(bucket, Collections.emptyList());
+                if (cacheable && !bucket.plus(1, unit).isAfter(closedBefore)) {
+                    cache(keyPrefix + '|' + bucket, bucketId(query.getBucket(), bucket), rows);
+                }
+            }
+            result.addAll(rows);
+        }
+        log.debug("Cube query over {} buckets, {} from cache", unit.between(start, end), cached.size());
+        return result;
+    }
+
+    private List<AnalyticsCubeRow> aggregate(List<String> dimensions, ChronoUnit unit, Timestamp from, Timestamp to,
+                                             CubeQuery query, String orderBy, int limit) {
+        List<String> groupColumns = new ArrayList<>();
+        for (String dimension : dimensions) {
+            groupColumns.add(DIMENSIONS.get(dimension));
+        }
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (String column : groupColumns) {
+            select.append(column).append(", ");
+        }
+        if (unit != null) {
+            select.append("date_trunc('").append(bucketName(unit)).append("', timestamp) AS bucket_start, ");
+            groupColumns.add("bucket_start");
+        }
+        select.append("count(DISTINCT session_id) AS sessions, count(*) AS events, ")
+                .append("avg(startup_time_ms) AS avg_startup, coalesce(sum(buffering_duration_ms), 0) AS buffering, ")
+                .append("avg(bitrate) AS avg_bitrate, coalesce(sum(error_count), 0) AS errors ")
+                .append("FROM session_events WHERE timestamp >= ? AND timestamp < ?");
+
+        List<Object> args = new ArrayList<>();
+        args.add(from);
+        args.add(to);
+        appendFilter(select, args, "region", query.getRegion());
+        appendFilter(select, args, "device_type", query.getDeviceType());
+        appendFilter(select, args, "content_id", query.getContentId());
+        if (!groupColumns.isEmpty()) {
+            select.append(" GROUP BY ").append(String.join(", ", groupColumns));
+        }
+
+        String sql;
+        if (unit != null) {
+            sql = "SELECT * FROM (SELECT g.*, row_number() OVER (PARTITION BY bucket_start ORDER BY " + orderBy +
+                    " DESC) AS rn FROM (" + select + ") g) r WHERE rn <= ? ORDER BY bucket_start, rn";
+        } else {
+            sql = select + " ORDER BY " + orderBy + " DESC LIMIT ?";
+        }
+        args.add(limit);
+
+        Set<String> grouped = new LinkedHashSet<>(dimensions);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRow(rs, grouped, unit != null), args.toArray());
+    }
+
+    private static void appendFilter(StringBuilder sql, List<Object> args, String column, String value) {
+        if (value != null) {
+            sql.append(" AND ").append(column).append(" = ?");
+            args.add(value);
+        }
+    }
+
+    private static AnalyticsCubeRow mapRow(ResultSet rs, Set<String> grouped, boolean bucketed) throws SQLException {
+        AnalyticsCubeRow row = new AnalyticsCubeRow();
+        if (grouped.contains("region")) {
+            row.setRegion(rs.getString("region"));
+        }
+        if (grouped.contains("deviceType")) {
+            row.setDeviceType(rs.getString("device_type"));
+        }
+        if (grouped.contains("contentId")) {
+            row.setContentId(rs.getString("content_id"));
+        }
+        if (bucketed) {
+            row.setBucketStart(rs.getTimestamp("bucket_start").toLocalDateTime()
+                    .atZone(ZoneId.systemDefault()).toInstant());
+        }
+        row.setSessions(rs.getLong("sessions"));
+        row.setEvents(rs.getLong("events"));
+        row.setAverageStartupTimeMs(rs.getDouble("avg_startup"));
+        row.setTotalBufferingMs(rs.getLong("buffering"));
+        row.setAverageBitrateKbps(rs.getDouble("avg_bitrate"));
+        row.setTotalErrors(rs.getLong("errors"));
+        return row;
+    }
+
+    private static Set<String> dimensions(List<String> groupBy) {
+        Set<String> dimensions = new LinkedHashSet<>();
+        if (groupBy != null) {
+            for (String dimension : groupBy) {
+                if (!DIMENSIONS.containsKey(dimension)) {
+                    throw new IllegalArgumentException("Unknown dimension " + dimension);
+                }
+                dimensions.add(dimension);
+            }
+        }
+        return dimensions;
+    }
+
+    private static String bucketName(ChronoUnit unit) {
+        return unit == ChronoUnit.MINUTES ? "minute" : unit == ChronoUnit.HOURS ? "hour" : "day";
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private static String bucketId(String unit, LocalDateTime bucket) {
+        return unit + '|' + bucket;
+    }
+
+    private void cache(String key, String bucket, List<AnalyticsCubeRow> rows) {
+        synchronized (bucketCache) {
+            CachedBucket previous = bucketCache.put(key, new CachedBucket(bucket, rows, System.currentTimeMillis()));
+            if (previous == null) {
+                keysByBucket.computeIfAbsent(bucket, b -> new HashSet<>()).add(key);
+            }
+            while (bucketCache.size() > cacheMaxEntries) {
+                Map.Entry<String, CachedBucket> eldest = bucketCache.entrySet().iterator().next();
+                bucketCache.remove(eldest.getKey());
+                Set<String> keys = keysByBucket.get(eldest.getValue().bucket);
+                if (keys != null && keys.remove(eldest.getKey()) && keys.isEmpty()) {
+                    keysByBucket.remove(eldest.getValue().bucket);
+                }
+            }
+        }
+    }
+
+    private static final class CachedBucket {
+        private final String bucket;
+        private final List<AnalyticsCubeRow> rows;
+        private final long cachedAt;
+
+        private CachedBucket(String bucket, List<AnalyticsCubeRow> rows, long cachedAt) {
+            this.bucket = bucket;
+            this.rows = rows;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes {@link SessionAnalytics} over event lists with {@link AnalyticsAccumulator}. Lists of
+ * at least {@code parallel-threshold} events are split into fork-join tasks of
+ * {@code leaf-size} events whose accumulators are combined on the way back up.
+ */
+@Service
+public class AnalyticsEngine {
+
+    @Value("${session.analytics.parallel-threshold:65536}")
+    private int parallelThreshold;
+
+    @Value("${session.analytics.leaf-size:16384}")
+    private int leafSize;
+
+    public SessionAnalytics analyze(List<SessionEvent> events) {
+        return accumulate(events).toAnalytics();
+    }
+
+    /**
+     * {@link #analyze} plus the percentiles a session rollup reports, for sessions that have no
+     * rollup row. The sketches are filled in a second, sequential pass.
+     */
+    public SessionAnalytics analyzeWithPercentiles(List<SessionEvent> events) {
+        SessionAnalytics analytics = analyze(events);
+        QuantileSketch startup = new QuantileSketch();
+        QuantileSketch buffering = new QuantileSketch();
+        QuantileSketch bitrate = new QuantileSketch();
+        for (SessionEvent event : events) {
+            addToSketches(event, startup, buffering, bitrate);
+        }
+        setPercentiles(analytics, startup, buffering, bitrate);
+        return analytics;
+    }
+
+    public AnalyticsAccumulator accumulate(List<SessionEvent> events) {
+        List<SessionEvent> indexed = events instanceof RandomAccess ? events : new ArrayList<>(events);
+        if (indexed.size() < parallelThreshold) {
+            return new AnalyticsAccumulator().addAll(indexed, 0, indexed.size());
+        }
+        return ForkJoinPool.commonPool().invoke(new AccumulateTask(indexed, 0, indexed.size(), leafSize));
+    }
+
+    static void addToSketches(SessionEvent event, QuantileSketch startup, QuantileSketch buffering,
+                              QuantileSketch bitrate) {
+        QualityMetrics metrics = event.getMetrics();
+        if (metrics != null) {
+            if (metrics.getStartupTimeMs() != null) {
+                startup.add(metrics.getStartupTimeMs());
+            }
+            if (metrics.getBufferingDurationMs() != null) {
+                buffering.add(metrics.getBufferingDurationMs());
+            }
+            if (metrics.getBitrate() != null) {
+                bitrate.add(metrics.getBitrate());
+            }
+        }
+    }
+
+    static void setPercentiles(SessionAnalytics analytics, QuantileSketch startup, QuantileSketch buffering,
+                               QuantileSketch bitrate) {
+        analytics.setStartupTimeP50Ms(startup.quantile(0.5));
+        analytics.setStartupTimeP90Ms(startup.quantile(0.9));
+        analytics.setStartupTimeP99Ms(startup.quantile(0.99));
+        analytics.setBufferingP50Ms(buffering.quantile(0.5));
+        analytics.setBufferingP90Ms(buffering.quantile(0.9));
+        analytics.setBufferingP99Ms(buffering.quantile(0.99));
+        analytics.setBitrateP50Kbps(bitrate.quantile(0.5));
+        analytics.setBitrateP90Kbps(bitrate.quantile(0.9));
+        analytics.setBitrateP99Kbps(bitrate.quantile(0.99));
+    }
+
+    private static final class AccumulateTask extends RecursiveTask<AnalyticsAccumulator> {
+        private final List<SessionEvent> events;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        private AccumulateTask(List<SessionEvent> events, int from, int to, int leafSize) {
+            this.events = events;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected AnalyticsAccumulator compute() {
+            if (to - from <= leafSize) {
+                return new AnalyticsAccumulator().addAll(events, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            AccumulateTask left = new AccumulateTask(events, from, mid, leafSize);
+            left.fork();
+            AnalyticsAccumulator right = new AccumulateTask(events, mid, to, leafSize).compute();
+            return left.join().combine(right);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.miniproject.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Bounded LRU cache on local disk for archive objects and byte ranges read from S3.
+ * Entry bookkeeping lives in memory, so leftover entries are deleted on startup. Only files named
+ * like entries (an MD5 hex digest, plus a suffix while being written) are touched, since the
+ * directory is configurable and may be shared.
+ */
+@Slf4j
+@Component
+public class ArchiveCache {
+
+    // Entry files, and the temporary files they are written to before the rename
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{32}(\\d*\\.tmp)?");
+
+    @Value("${session.archive.cache-dir:${java.io.tmpdir}/session-archive-cache}")
+    private String cacheDir;
+
+    @Value("${session.archive.cache-max-bytes:536870912}")
+    private long maxBytes;
+
+    private Path root;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(cacheDir);
+        Files.createDirectories(root);
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (ENTRY_NAME.matcher(file.getFileName().toString()).matches() && Files.isRegularFile(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cached bytes for {@code key}, loading and caching them on a miss. Concurrent
+     * misses for the same key share one load, and files are written under a temporary name and
+     * renamed into place, so a reader never sees a partly written entry.
+     */
+    public byte[] get(String key, Supplier<byte[]> loader) {
+        String fileName = DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+        Path file = root.resolve(fileName);
+        boolean cached;
+        synchronized (entries) {
+            cached = entries.get(fileName) != null;
+        }
+        if (cached) {
+            try {
+                return Files.readAllBytes(file);
+            } catch (IOException e) {
+                log.warn("Error reading cached archive entry {}: {}", key, e.getMessage());
+            }
+        }
+
+        CompletableFuture<byte[]> load = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = loading.putIfAbsent(fileName, load);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            byte[] data = loader.get();
+            if (data.length <= maxBytes) {
+                store(fileName, file, data);
+            }
+            load.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(fileName, load);
+        }
+    }
+
+    private void store(String fileName, Path file, byte[] data) {
+        try {
+            Path temp = Files.createTempFile(root, fileName, ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (entries) {
+            Long previous = entries.put(fileName, (long) data.length);
+            totalBytes += data.length - (previous != null ? previous : 0);
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(root.resolve(entry.getKey()));
+            } catch (IOException e) {
+                log.warn("Error evicting cached archive entry: {}", e.getMessage());
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+}
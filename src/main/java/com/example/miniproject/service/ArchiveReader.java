@@ -0,0 +1,132 @@
+package com.example.miniproject.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.example.miniproject.model.SessionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads one session's archived events back from the S3 segments written by {@link ArchiveWriter}.
+ * <p>
+ * Segments for the requested hours are found by listing one {@code dt=} prefix per day. For each,
+ * the small {@code .idx} sidecar is fetched and, if the session appears in it with an overlapping
+ * time span, only that session's gzip member is fetched with a ranged GET. Index files and ranges
+ * go through {@link ArchiveCache}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ArchiveReader {
+
+    private final AmazonS3 amazonS3;
+    private final ObjectMapper objectMapper;
+    private final ArchiveCache archiveCache;
+
+    @Value("${aws.s3.bucket}")
+    private String bucketName;
+
+    public List<SessionEvent> readSession(String sessionId, Instant from, Instant to) {
+        List<SessionEvent> events = new ArrayList<>();
+        for (String indexKey : listIndexes(from, to)) {
+            String segmentKey = indexKey.substring(0, indexKey.length() - ArchiveWriter.INDEX_SUFFIX.length());
+            byte[] index = archiveCache.get(indexKey, () -> fetch(indexKey, -1, -1));
+            for (String line : new String(index, StandardCharsets.UTF_8).split("\n")) {
+                String[] fields = line.split("\t");
+                if (fields.length != 5 || !fields[0].equals(sessionId)) {
+                    continue;
+                }
+                long minTs = Long.parseLong(fields[3]);
+                long maxTs = Long.parseLong(fields[4]);
+                if (maxTs < from.toEpochMilli() || minTs >= to.toEpochMilli()) {
+                    break;
+                }
+                long offset = Long.parseLong(fields[1]);
+                long length = Long.parseLong(fields[2]);
+                byte[] member = archiveCache.get(segmentKey + '#' + offset + '+' + length,
+                        () -> fetch(segmentKey, offset, offset + length - 1));
+                decode(member, from, to, events);
+                break;
+            }
+        }
+        return events;
+    }
+
+    private List<String> listIndexes(Instant from, Instant to) {
+        Instant firstHour = from.truncatedTo(ChronoUnit.HOURS);
+        List<String> keys = new ArrayList<>();
+        LocalDate last = LocalDate.ofInstant(to, ZoneOffset.UTC);
+        for (LocalDate day = LocalDate.ofInstant(from, ZoneOffset.UTC); !day.isAfter(last); day = day.plusDays(1)) {
+            ListObjectsV2Request request = new ListObjectsV2Request()
+                    .withBucketName(bucketName)
+                    .withPrefix("archive/dt=" + day + "/");
+            ListObjectsV2Result result;
+            do {
+                result = amazonS3.listObjectsV2(request);
+                for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                    String key = summary.getKey();
+                    if (key.endsWith(ArchiveWriter.INDEX_SUFFIX) && hourInRange(key, firstHour, to)) {
+                        keys.add(key);
+                    }
+                }
+                request.setContinuationToken(result.getNextContinuationToken());
+            } while (result.isTruncated());
+        }
+        return keys;
+    }
+
+    // Keys look like archive/dt=2024-03-01/hour=10/region=.../name.ndjson.gz.idx
+    private static boolean hourInRange(String key, Instant firstHour, Instant to) {
+        String[] parts = key.split("/");
+        Instant hour = LocalDate.parse(parts[1].substring("dt=".length()))
+                .atStartOfDay(ZoneOffset.UTC).toInstant()
+                .plus(Integer.parseInt(parts[2].substring("hour=".length())), ChronoUnit.HOURS);
+        return !hour.isBefore(firstHour) && hour.isBefore(to);
+    }
+
+    private byte[] fetch(String key, long start, long end) {
+        GetObjectRequest request = new GetObjectRequest(bucketName, key);
+        if (start >= 0) {
+            request.setRange(start, end);
+        }
+        try (S3Object object = amazonS3.getObject(request)) {
+            return object.getObjectContent().readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void decode(byte[] member, Instant from, Instant to, List<SessionEvent> events) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(member)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                SessionEvent event = objectMapper.readValue(line, SessionEvent.class);
+                if (!event.getTimestamp().isBefore(from) && event.getTimestamp().isBefore(to)) {
+                    events.add(event);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.miniproject.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.example.miniproject.model.SessionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes archived events as gzip-compressed NDJSON segment objects, one per (hour, region) batch,
+ * instead of one S3 object per event. Callers hand over whole batches: the tiering job a chunk of
+ * expired rows, ingest the events of one poll that arrived past retention.
+ * <p>
+ * Events are sorted by session and timestamp and each session is written as its own gzip member;
+ * concatenated members are still a valid gzip stream, and a reader can skip straight to one
+ * session. Each segment gets a sidecar {@code .idx} object mapping session IDs to the byte
+ * range of their member, which {@link ArchiveReader} uses for ranged GETs. Uploads run on a
+ * dedicated bounded executor; when its queue is full the calling thread uploads itself, which
+ * throttles whoever is writing.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ArchiveWriter {
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    static final DateTimeFormatter PARTITION_FORMAT =
+            DateTimeFormatter.ofPattern("'dt='yyyy-MM-dd'/hour='HH").withZone(ZoneOffset.UTC);
+
+    private static final Comparator<SessionEvent> SEGMENT_ORDER = Comparator
+            .comparing(SessionEvent::getSessionId)
+            .thenComparing(SessionEvent::getTimestamp);
+
+    private final AmazonS3 amazonS3;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aws.s3.bucket}")
+    private String bucketName;
+
+    @Value("${aws.s3.create-bucket:false}")
+    private boolean createBucket;
+
+    @Value("${session.archive.upload-threads:2}")
+    private int uploadThreads;
+
+    @Value("${session.archive.upload-queue:16}")
+    private int uploadQueue;
+
+    private ThreadPoolExecutor uploadExecutor;
+    private Counter segmentsUploaded;
+    private Counter eventsArchived;
+    private Counter uploadFailures;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        uploadExecutor = new ThreadPoolExecutor(uploadThreads, uploadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(uploadQueue),
+                r -> new Thread(r, "archive-upload-" + threadIndex.getAndIncrement()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        Gauge.builder("session.archive.upload.queue", uploadExecutor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("session.archive.upload.active", uploadExecutor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        segmentsUploaded = Counter.builder("session.archive.segments").register(meterRegistry);
+        eventsArchived = Counter.builder("session.archive.events").register(meterRegistry);
+        uploadFailures = Counter.builder("session.archive.upload.failures").register(meterRegistry);
+
+        if (createBucket && !amazonS3.doesBucketExistV2(bucketName)) {
+            // LocalStack starts without buckets
+            amazonS3.createBucket(bucketName);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        uploadExecutor.shutdown();
+        uploadExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Encodes the events as one segment for the given hour and region and uploads it on the
+     * upload executor. The future completes with the object key once S3 has accepted it.
+     */
+    public CompletableFuture<String> writeSegment(String region, Instant hour, List<SessionEvent> events) {
+        return writeSegment(segmentKey(region, hour, UUID.randomUUID().toString()), events);
+    }
+
+    /**
+     * Same as above with a caller-chosen key, so a retried write replaces the earlier object.
+     */
+    public CompletableFuture<String> writeSegment(String key, List<SessionEvent> events) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                StringBuilder index = new StringBuilder();
+                byte[] body = encodeSegment(events, index);
+                put(key, body, "application/gzip");
+                // Written last: a segment is only visible to ArchiveReader once its index exists
+                put(key + INDEX_SUFFIX, index.toString().getBytes(StandardCharsets.UTF_8), "text/tab-separated-values");
+                segmentsUploaded.increment();
+                eventsArchived.increment(events.size());
+                log.info("Archived {} events to S3: {}", events.size(), key);
+                return key;
+            } catch (RuntimeException e) {
+                uploadFailures.increment();
+                log.error("Error archiving segment {} to S3: {}", key, e.getMessage());
+                throw e;
+            }
+        }, uploadExecutor);
+    }
+
+    private void put(String key, byte[] body, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(body.length);
+        metadata.setContentType(contentType);
+        amazonS3.putObject(bucketName, key, new ByteArrayInputStream(body), metadata);
+    }
+
+    /**
+     * Writes the segment body and appends one index line per session to {@code index}:
+     * {@code sessionId, byte offset, byte length, min and max epoch millis}, tab separated. Does
+     * not touch S3, so it can be measured on its own.
+     */
+    public byte[] encodeSegment(List<SessionEvent> events, StringBuilder index) {
+        List<SessionEvent> sorted = new ArrayList<>(events);
+        sorted.sort(SEGMENT_ORDER);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sorted.size() * 64);
+        try {
+            int start = 0;
+            while (start < sorted.size()) {
+                String sessionId = sorted.get(start).getSessionId();
+                int offset = out.size();
+                int end = start;
+                try (GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(out), 8192)) {
+                    while (end < sorted.size() && Objects.equals(sorted.get(end).getSessionId(), sessionId)) {
+                        gzip.write(objectMapper.writeValueAsBytes(sorted.get(end)));
+                        gzip.write('\n');
+                        end++;
+                    }
+                }
+                index.append(sessionId).append('\t')
+                        .append(offset).append('\t')
+                        .append(out.size() - offset).append('\t')
+                        .append(sorted.get(start).getTimestamp().toEpochMilli()).append('\t')
+                        .append(sorted.get(end - 1).getTimestamp().toEpochMilli()).append('\n');
+                start = end;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static String segmentKey(String region, Instant hour, String name) {
+        return String.format("archive/%s/region=%s/%s.ndjson.gz",
+                PARTITION_FORMAT.format(hour), region, name);
+    }
+
+    /**
+     * Segments waiting for or currently being uploaded.
+     */
+    public int uploadBacklog() {
+        return uploadExecutor.getQueue().size() + uploadExecutor.getActiveCount();
+    }
+
+    public static String regionOf(SessionEvent event) {
+        return event.getRegion() != null ? event.getRegion() : "unknown";
+    }
+
+    /** Lets each gzip member finish without closing the shared segment buffer. */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        private NonClosingOutputStream(ByteArrayOutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
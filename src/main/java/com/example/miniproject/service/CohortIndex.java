@@ -0,0 +1,447 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.CohortQuery;
+import com.example.miniproject.model.CohortResult;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Secondary cohort index over recent sessions: every session gets a dense integer ID, and
+ * compressed bitmaps of those IDs are kept per {@code region}, {@code deviceType} and
+ * {@code contentId} value, and per hourly bucket for the sessions with an event in it, per
+ * {@code eventType} value and for the derived flags "had an error" and "rebuffered". Cohort
+ * counts and session lists are bitmap ORs within a dimension and ANDs across dimensions; event
+ * types and flags are ORed over the buckets of the queried range only, so they describe what
+ * happened in that range.
+ * <p>
+ * Buckets older than {@code retention-hours} are dropped and the IDs compacted. The index is
+ * snapshotted to {@code snapshot-dir}; on startup the snapshot is loaded and events from
+ * {@code catch-up-ms} before it onward are replayed from Postgres (adding is idempotent), or the
+ * whole retention window when there is no snapshot, which delays startup, so the index is only
+ * created when {@code session.cohorts.enabled} is set. Like the other ingest observers it sees
+ * the events stored by this instance.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session.cohorts.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class CohortIndex implements IngestObserver {
+
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final String SNAPSHOT_FILE = "cohorts.bin";
+    private static final String HAD_ERROR = "flag=hadError";
+    private static final String REBUFFERED = "flag=rebuffered";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.cohorts.retention-hours:48}")
+    private int retentionHours;
+
+    @Value("${session.cohorts.bucket-ms:3600000}")
+    private long bucketMs;
+
+    @Value("${session.cohorts.snapshot-dir:${java.io.tmpdir}/session-cohorts}")
+    private String snapshotDir;
+
+    @Value("${session.cohorts.catch-up-ms:600000}")
+    private long catchUpMs;
+
+    @Value("${session.cohorts.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${session.cohorts.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${session.events.query.fetch-size:500}")
+    private int fetchSize;
+
+    // All guarded by this
+    private Map<String, Integer> sessionIds = new HashMap<>();
+    private List<String> sessions = new ArrayList<>();
+    // "dimension=value" -> session IDs
+    private Map<String, RoaringBitmap> bitmaps = new HashMap<>();
+    // Bucket start (epoch millis) -> sessions with an event, event types and flags in it
+    private TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    @PostConstruct
+    public void init() {
+        long replayFrom = loadSnapshot();
+        replay(Math.max(replayFrom, System.currentTimeMillis() - retentionMs()));
+        compact();
+        Gauge.builder("session.cohorts.sessions", this, CohortIndex::indexedSessions).register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void onEventsStored(List<SessionEvent> events) {
+        long cutoff = System.currentTimeMillis() - retentionMs();
+        for (SessionEvent event : events) {
+            long timestamp = event.getTimestamp().toEpochMilli();
+            if (timestamp < cutoff) {
+                continue;
+            }
+            QualityMetrics metrics = event.getMetrics();
+            add(event.getSessionId(), event.getEventType(), timestamp, event.getDeviceType(), event.getRegion(),
+                    event.getContentId(),
+                    metrics != null ? metrics.getBufferingDurationMs() : null,
+                    metrics != null ? metrics.getErrorCount() : null);
+        }
+    }
+
+    private void add(String sessionId, String eventType, long timestamp, String deviceType, String region,
+                     String contentId, Long bufferingMs, Integer errors) {
+        int id = sessionIds.computeIfAbsent(sessionId, s -> {
+            sessions.add(s);
+            return sessions.size() - 1;
+        });
+        Bucket bucket = buckets.computeIfAbsent(Math.floorDiv(timestamp, bucketMs) * bucketMs, b -> new Bucket());
+        bucket.sessions.add(id);
+        mark(bitmaps, "region", region, id);
+        mark(bitmaps, "deviceType", deviceType, id);
+        mark(bitmaps, "contentId", contentId, id);
+        mark(bucket.bitmaps, "eventType", eventType, id);
+        if ((errors != null && errors > 0) || "error".equals(eventType)) {
+            bucket.bitmaps.computeIfAbsent(HAD_ERROR, k -> new RoaringBitmap()).add(id);
+        }
+        if ((bufferingMs != null && bufferingMs > 0) || "buffering".equals(eventType)) {
+            bucket.bitmaps.computeIfAbsent(REBUFFERED, k -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private static void mark(Map<String, RoaringBitmap> bitmaps, String dimension, String value, int id) {
+        if (value != null) {
+            bitmaps.computeIfAbsent(dimension + '=' + value, k -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    /**
+     * Sessions matching the query, by default over the whole retention window. Throws
+     * {@link IllegalArgumentException} for an empty time range.
+     */
+    public CohortResult query(CohortQuery query) {
+        Instant to = query.getTo() != null ? query.getTo() : Instant.now();
+        Instant from = query.getFrom() != null ? query.getFrom() : to.minus(retentionHours, ChronoUnit.HOURS);
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Invalid time range");
+        }
+        int limit = query.getLimit() != null ? Math.max(0, Math.min(query.getLimit(), maxLimit)) : defaultLimit;
+
+        CohortResult result = new CohortResult();
+        result.setFrom(from);
+        result.setTo(to);
+        synchronized (this) {
+            long first = Math.floorDiv(from.toEpochMilli(), bucketMs) * bucketMs;
+            Collection<Bucket> inRange = buckets.subMap(first, true, to.toEpochMilli(), false).values();
+            // or() builds a new bitmap, so the in-place ANDs below leave the index untouched
+            RoaringBitmap cohort = RoaringBitmap.or(inRange.stream().map(b -> b.sessions).iterator());
+            restrict(cohort, "region", query.getRegion());
+            restrict(cohort, "deviceType", query.getDeviceType());
+            restrict(cohort, "contentId", query.getContentId());
+            restrictEventType(cohort, inRange, query.getEventType());
+            restrictFlag(cohort, inRange, HAD_ERROR, query.getHadError());
+            restrictFlag(cohort, inRange, REBUFFERED, query.getRebuffered());
+
+            result.setSessions(cohort.getLongCardinality());
+            List<String> sessionIdList = new ArrayList<>(Math.min(limit, cohort.getCardinality()));
+            IntIterator ids = cohort.getIntIterator();
+            while (ids.hasNext() && sessionIdList.size() < limit) {
+                sessionIdList.add(sessions.get(ids.next()));
+            }
+            result.setSessionIds(sessionIdList);
+        }
+        return result;
+    }
+
+    private void restrict(RoaringBitmap cohort, String dimension, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        List<RoaringBitmap> matching = new ArrayList<>();
+        for (String value : values) {
+            RoaringBitmap bitmap = bitmaps.get(dimension + '=' + value);
+            if (bitmap != null) {
+                matching.add(bitmap);
+            }
+        }
+        cohort.and(RoaringBitmap.or(matching.iterator()));
+    }
+
+    private static void restrictEventType(RoaringBitmap cohort, Collection<Bucket> inRange, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        List<RoaringBitmap> matching = new ArrayList<>();
+        for (Bucket bucket : inRange) {
+            for (String value : values) {
+                RoaringBitmap bitmap = bucket.bitmaps.get("eventType=" + value);
+                if (bitmap != null) {
+                    matching.add(bitmap);
+                }
+            }
+        }
+        cohort.and(RoaringBitmap.or(matching.iterator()));
+    }
+
+    private static void restrictFlag(RoaringBitmap cohort, Collection<Bucket> inRange, String flag, Boolean value) {
+        if (value == null) {
+            return;
+        }
+        List<RoaringBitmap> matching = new ArrayList<>();
+        for (Bucket bucket : inRange) {
+            RoaringBitmap bitmap = bucket.bitmaps.get(flag);
+            if (bitmap != null) {
+                matching.add(bitmap);
+            }
+        }
+        RoaringBitmap flagged = RoaringBitmap.or(matching.iterator());
+        if (value) {
+            cohort.and(flagged);
+        } else {
+            cohort.andNot(flagged);
+        }
+    }
+
+    /**
+     * Drops buckets past retention and renumbers the sessions still in a bucket to
+     * {@code 0..n-1}, keeping their order, so IDs and bitmaps stay dense.
+     */
+    @Scheduled(fixedDelayString = "${session.cohorts.compact-interval-ms:3600000}",
+            initialDelayString = "${session.cohorts.compact-interval-ms:3600000}")
+    public synchronized void compact() {
+        long cutoff = Math.floorDiv(System.currentTimeMillis() - retentionMs(), bucketMs) * bucketMs;
+        buckets.headMap(cutoff).clear();
+        RoaringBitmap live = RoaringBitmap.or(buckets.values().stream().map(b -> b.sessions).iterator());
+        if (live.getLongCardinality() == sessions.size()) {
+            return;
+        }
+        int[] newIds = new int[sessions.size()];
+        Arrays.fill(newIds, -1);
+        List<String> compacted = new ArrayList<>(live.getCardinality());
+        Map<String, Integer> compactedIds = new HashMap<>(live.getCardinality() * 2);
+        IntIterator ids = live.getIntIterator();
+        while (ids.hasNext()) {
+            int id = ids.next();
+            newIds[id] = compacted.size();
+            compactedIds.put(sessions.get(id), compacted.size());
+            compacted.add(sessions.get(id));
+        }
+        for (Bucket bucket : buckets.values()) {
+            bucket.sessions = renumber(bucket.sessions, newIds);
+            bucket.bitmaps.replaceAll((key, bitmap) -> renumber(bitmap, newIds));
+        }
+        bitmaps.replaceAll((key, bitmap) -> renumber(bitmap, newIds));
+        bitmaps.values().removeIf(RoaringBitmap::isEmpty);
+        log.info("Compacted cohort index from {} to {} sessions", sessions.size(), compacted.size());
+        sessions = compacted;
+        sessionIds = compactedIds;
+    }
+
+    private static RoaringBitmap renumber(RoaringBitmap bitmap, int[] newIds) {
+        RoaringBitmap renumbered = new RoaringBitmap();
+        IntIterator ids = bitmap.getIntIterator();
+        while (ids.hasNext()) {
+            int id = newIds[ids.next()];
+            if (id >= 0) {
+                renumbered.add(id);
+            }
+        }
+        renumbered.runOptimize();
+        return renumbered;
+    }
+
+    /**
+     * Writes the index to a temporary file and renames it over the previous snapshot. State is
+     * copied under the lock and serialized outside it.
+     */
+    @Scheduled(fixedDelayString = "${session.cohorts.snapshot-interval-ms:300000}",
+            initialDelayString = "${session.cohorts.snapshot-interval-ms:300000}")
+    @PreDestroy
+    public void snapshot() {
+        long takenAt = System.currentTimeMillis();
+        List<String> sessionCopy;
+        Map<String, RoaringBitmap> bitmapCopy = new HashMap<>();
+        TreeMap<Long, Bucket> bucketCopy = new TreeMap<>();
+        synchronized (this) {
+            sessionCopy = new ArrayList<>(sessions);
+            bitmaps.forEach((key, bitmap) -> bitmapCopy.put(key, bitmap.clone()));
+            buckets.forEach((start, bucket) -> bucketCopy.put(start, bucket.copy()));
+        }
+
+        Path dir = Paths.get(snapshotDir);
+        Path temp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(takenAt);
+                out.writeInt(sessionCopy.size());
+                for (String session : sessionCopy) {
+                    out.writeUTF(session);
+                }
+                writeBitmaps(out, bitmapCopy);
+                out.writeInt(bucketCopy.size());
+                for (Map.Entry<Long, Bucket> entry : bucketCopy.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    entry.getValue().sessions.runOptimize();
+                    entry.getValue().sessions.serialize(out);
+                    writeBitmaps(out, entry.getValue().bitmaps);
+                }
+            }
+            Files.move(temp, dir.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote cohort snapshot of {} sessions", sessionCopy.size());
+        } catch (IOException e) {
+            log.warn("Error writing cohort snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the snapshot, if any; returns the event time from which to replay.
+     */
+    private long loadSnapshot() {
+        Path file = Paths.get(snapshotDir, SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return Long.MIN_VALUE;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring cohort snapshot of an unknown version");
+                return Long.MIN_VALUE;
+            }
+            long takenAt = in.readLong();
+            int sessionCount = in.readInt();
+            List<String> loadedSessions = new ArrayList<>(sessionCount);
+            Map<String, Integer> loadedIds = new HashMap<>(sessionCount * 2);
+            for (int i = 0; i < sessionCount; i++) {
+                String session = in.readUTF();
+                loadedIds.put(session, i);
+                loadedSessions.add(session);
+            }
+            Map<String, RoaringBitmap> loadedBitmaps = readBitmaps(in);
+            TreeMap<Long, Bucket> loadedBuckets = new TreeMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                long start = in.readLong();
+                Bucket bucket = new Bucket();
+                bucket.sessions.deserialize(in);
+                bucket.bitmaps = readBitmaps(in);
+                loadedBuckets.put(start, bucket);
+            }
+            synchronized (this) {
+                sessions = loadedSessions;
+                sessionIds = loadedIds;
+                bitmaps = loadedBitmaps;
+                buckets = loadedBuckets;
+            }
+            log.info("Loaded cohort snapshot of {} sessions taken at {}", sessionCount, Instant.ofEpochMilli(takenAt));
+            return takenAt - catchUpMs;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cohort snapshot: {}", e.getMessage());
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static void writeBitmaps(DataOutputStream out, Map<String, RoaringBitmap> bitmaps) throws IOException {
+        out.writeInt(bitmaps.size());
+        for (Map.Entry<String, RoaringBitmap> entry : bitmaps.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().runOptimize();
+            entry.getValue().serialize(out);
+        }
+    }
+
+    private static Map<String, RoaringBitmap> readBitmaps(DataInputStream in) throws IOException {
+        Map<String, RoaringBitmap> bitmaps = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String key = in.readUTF();
+            RoaringBitmap bitmap = new RoaringBitmap();
+            bitmap.deserialize(in);
+            bitmaps.put(key, bitmap);
+        }
+        return bitmaps;
+    }
+
+    private void replay(long fromMs) {
+        String sql = "SELECT session_id, event_type, timestamp, buffering_duration_ms, error_count, device_type," +
+                " region, content_id FROM session_events WHERE timestamp >= ?";
+        long[] replayed = {0};
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setFetchSize(fetchSize);
+                ps.setTimestamp(1, new Timestamp(fromMs));
+                return ps;
+            }, rs -> {
+                Long bufferingMs = rs.getObject("buffering_duration_ms", Long.class);
+                Integer errors = rs.getObject("error_count", Integer.class);
+                synchronized (this) {
+                    add(rs.getString("session_id"), rs.getString("event_type"), rs.getTimestamp("timestamp").getTime(),
+                            rs.getString("device_type"), rs.getString("region"), rs.getString("content_id"),
+                            bufferingMs, errors);
+                }
+                replayed[0]++;
+            }));
+            log.info("Replayed {} events into the cohort index", replayed[0]);
+        } catch (DataAccessException e) {
+            log.error("Error replaying events into the cohort index after {} events: {}", replayed[0], e.getMessage());
+        }
+    }
+
+    private long retentionMs() {
+        return retentionHours * 3_600_000L;
+    }
+
+    private synchronized double indexedSessions() {
+        return sessions.size();
+    }
+
+    private static final class Bucket {
+        private RoaringBitmap sessions = new RoaringBitmap();
+        // "eventType=value" or a flag -> sessions with such an event in the bucket
+        private Map<String, RoaringBitmap> bitmaps = new HashMap<>();
+
+        private Bucket copy() {
+            Bucket copy = new Bucket();
+            copy.sessions = sessions.clone();
+            bitmaps.forEach((key, bitmap) -> copy.bitmaps.put(key, bitmap.clone()));
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind bulk writer that loads {@code session_events} with {@code COPY ... FROM STDIN}.
+ * <p>
+ * Listener threads append their batch to a bounded buffer and wait until the flush that
+ * contains it has committed, so Kafka offsets are still only committed for durable rows.
+ * A single flusher thread drains the buffer when it reaches {@code flush-size} rows or its
+ * oldest entry is {@code max-age-ms} old, coalescing polls from all listener threads into one
+ * COPY. When the buffer is full, {@link #write} blocks, which stalls the consumer instead of
+ * letting the buffer grow. If a coalesced COPY fails, each poll in it is copied again on its own,
+ * so a bad row only fails the listener thread that wrote it.
+ * <p>
+ * Rows are copied into a temporary staging table and moved into {@code session_events} in the
+ * same transaction with {@code ON CONFLICT DO NOTHING}, so Kafka records that are already stored
+ * are skipped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "session.events.writer", havingValue = "copy")
+public class CopyEventWriter implements EventWriter {
+
+    private static final String COLUMNS = "session_id, event_type, timestamp, startup_time_ms, " +
+            "buffering_duration_ms, bitrate, buffering_ratio, error_count, device_type, region, content_id, " +
+            "kafka_partition, kafka_offset";
+
+    // Per-connection staging table; COPY cannot skip conflicting rows, INSERT ... SELECT can
+    private static final String STAGING_SQL = "CREATE TEMP TABLE IF NOT EXISTS session_events_staging " +
+            "ON COMMIT DELETE ROWS AS SELECT " + COLUMNS + " FROM session_events WITH NO DATA";
+
+    private static final String COPY_SQL = "COPY session_events_staging (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+    private static final String MERGE_SQL = "INSERT INTO session_events (" + COLUMNS + ") SELECT " + COLUMNS +
+            " FROM session_events_staging ON CONFLICT DO NOTHING";
+
+    private static final int CHUNK_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.events.copy.buffer-capacity:50000}")
+    private int bufferCapacity;
+
+    @Value("${session.events.copy.flush-size:5000}")
+    private int flushSize;
+
+    @Value("${session.events.copy.max-age-ms:200}")
+    private long maxAgeMs;
+
+    private final Object lock = new Object();
+    private List<PendingWrite> pending = new ArrayList<>();
+    private int pendingRows;
+    private long oldestPendingNanos;
+    private volatile boolean running;
+
+    private Semaphore capacity;
+    private Thread flusher;
+    private TransactionTemplate transactionTemplate;
+
+    private Timer flushLatency;
+    private DistributionSummary flushRows;
+    private DistributionSummary flushThroughput;
+    private Counter rowsWritten;
+    private Counter flushFailures;
+
+    @PostConstruct
+    public void start() {
+        capacity = new Semaphore(bufferCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flushLatency = Timer.builder("session.events.copy.flush.latency")
+                .description("Time spent in one COPY flush")
+                .register(meterRegistry);
+        flushRows = DistributionSummary.builder("session.events.copy.flush.size")
+                .baseUnit("rows")
+                .register(meterRegistry);
+        flushThroughput = DistributionSummary.builder("session.events.copy.flush.throughput")
+                .baseUnit("rows/s")
+                .register(meterRegistry);
+        rowsWritten = Counter.builder("session.events.copy.rows").register(meterRegistry);
+        flushFailures = Counter.builder("session.events.copy.flush.failures").register(meterRegistry);
+        Gauge.builder("session.events.copy.buffer.rows", this, CopyEventWriter::bufferedRows)
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "session-events-copy-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    @Override
+    public void write(List<SessionEvent> events) {
+        int permits = Math.min(events.size(), bufferCapacity);
+        try {
+            capacity.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted waiting for COPY buffer", e);
+        }
+
+        PendingWrite write = new PendingWrite(events, permits);
+        synchronized (lock) {
+            if (!running) {
+                capacity.release(permits);
+                throw new DataAccessResourceFailureException("COPY writer is shut down");
+            }
+            if (pending.isEmpty()) {
+                oldestPendingNanos = System.nanoTime();
+            }
+            pending.add(write);
+            pendingRows += events.size();
+            if (pendingRows >= flushSize) {
+                lock.notifyAll();
+            }
+        }
+
+        try {
+            write.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * COPYs the events directly, bypassing the buffer and its {@code max-age-ms} wait.
+     */
+    @Override
+    public void writeNow(List<SessionEvent> events) {
+        copyInTransaction(List.of(new PendingWrite(events, 0)));
+        rowsWritten.increment(events.size());
+    }
+
+    private int bufferedRows() {
+        return bufferCapacity - capacity.availablePermits();
+    }
+
+    private void runFlusher() {
+        while (true) {
+            List<PendingWrite> batch;
+            synchronized (lock) {
+                try {
+                    while (running && !flushDue()) {
+                        long waitMs = pending.isEmpty() ? maxAgeMs
+                                : maxAgeMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestPendingNanos);
+                        lock.wait(Math.max(1, waitMs));
+                    }
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+                if (!running && pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                pendingRows = 0;
+            }
+            flush(batch);
+        }
+    }
+
+    private boolean flushDue() {
+        return pendingRows >= flushSize || (!pending.isEmpty()
+                && System.nanoTime() - oldestPendingNanos >= TimeUnit.MILLISECONDS.toNanos(maxAgeMs));
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        int rows = 0;
+        int permits = 0;
+        for (PendingWrite write : batch) {
+            rows += write.events.size();
+            permits += write.permits;
+        }
+
+        long start = System.nanoTime();
+        try {
+            copyInTransaction(batch);
+            long elapsed = System.nanoTime() - start;
+            flushLatency.record(elapsed, TimeUnit.NANOSECONDS);
+            flushRows.record(rows);
+            flushThroughput.record(rows * 1e9 / Math.max(1, elapsed));
+            rowsWritten.increment(rows);
+            batch.forEach(write -> write.future.complete(null));
+        } catch (RuntimeException e) {
+            log.error("COPY flush of {} rows failed: {}", rows, e.getMessage());
+            flushFailures.increment();
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+            } else {
+                // A failed COPY writes nothing, so each poll can be retried on its own
+                batch.forEach(this::flushAlone);
+            }
+        } finally {
+            capacity.release(permits);
+        }
+    }
+
+    private void flushAlone(PendingWrite write) {
+        try {
+            copyInTransaction(List.of(write));
+            rowsWritten.increment(write.events.size());
+            write.future.complete(null);
+        } catch (RuntimeException e) {
+            write.future.completeExceptionally(e);
+        }
+    }
+
+    private void copyInTransaction(List<PendingWrite> batch) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.execute((ConnectionCallback<Integer>) con -> copy(con, batch)));
+    }
+
+    private int copy(Connection con, List<PendingWrite> batch) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.execute(STAGING_SQL);
+        }
+        CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        try {
+            StringBuilder csv = new StringBuilder(CHUNK_CHARS + 1024);
+            for (PendingWrite write : batch) {
+                for (SessionEvent event : write.events) {
+                    appendRow(csv, event);
+                    if (csv.length() >= CHUNK_CHARS) {
+                        writeChunk(copyIn, csv);
+                    }
+                }
+            }
+            writeChunk(copyIn, csv);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+        try (Statement statement = con.createStatement()) {
+            return statement.executeUpdate(MERGE_SQL);
+        }
+    }
+
+    private static void writeChunk(CopyIn copyIn, StringBuilder csv) throws SQLException {
+        if (csv.length() == 0) {
+            return;
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        csv.setLength(0);
+    }
+
+    static void appendRow(StringBuilder csv, SessionEvent event) {
+        QualityMetrics metrics = event.getMetrics() != null ? event.getMetrics() : new QualityMetrics();
+        appendText(csv, event.getSessionId()).append(',');
+        appendText(csv, event.getEventType()).append(',');
+        // Same wall-clock conversion as the JDBC path, which binds Timestamp.from(instant)
+        csv.append(Timestamp.from(event.getTimestamp())).append(',');
+        appendValue(csv, metrics.getStartupTimeMs()).append(',');
+        appendValue(csv, metrics.getBufferingDurationMs()).append(',');
+        appendValue(csv, metrics.getBitrate()).append(',');
+        appendValue(csv, metrics.getBufferingRatio()).append(',');
+        appendValue(csv, metrics.getErrorCount()).append(',');
+        appendText(csv, event.getDeviceType()).append(',');
+        appendText(csv, event.getRegion()).append(',');
+        appendText(csv, event.getContentId()).append(',');
+        appendValue(csv, event.getKafkaPartition()).append(',');
+        appendValue(csv, event.getKafkaOffset()).append('\n');
+    }
+
+    // In CSV format an unquoted empty field is NULL and a quoted one is an empty string
+    private static StringBuilder appendText(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        return csv.append('"');
+    }
+
+    private static StringBuilder appendValue(StringBuilder csv, Object value) {
+        return value == null ? csv : csv.append(value);
+    }
+
+    private static final class PendingWrite {
+        private final List<SessionEvent> events;
+        private final int permits;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingWrite(List<SessionEvent> events, int permits) {
+            this.events = events;
+            this.permits = permits;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.miniproject.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Count-Min sketch: frequency estimates for any item in fixed memory, never below the true
+ * count. Sketches of the same shape merge by adding counters. Not thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    public void add(String item, long count) {
+        int h1 = item.hashCode();
+        int h2 = spread(h1);
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + Math.floorMod(h1 + row * h2, width)] += count;
+        }
+    }
+
+    public long estimate(String item) {
+        int h1 = item.hashCode();
+        int h2 = spread(h1);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + Math.floorMod(h1 + row * h2, width)]);
+        }
+        return min;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Count-Min sketches of different shapes");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+    }
+
+    private static int spread(int h) {
+        // Second, independent-enough hash for double hashing; odd so rows differ
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h | 1;
+    }
+
+    /**
+     * Layout: depth, width, then every counter, all varints; mostly-empty sketches stay small.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(counters.length + 8);
+        writeVarLong(out, depth);
+        writeVarLong(out, width);
+        for (long counter : counters) {
+            writeVarLong(out, counter);
+        }
+        return out.toByteArray();
+    }
+
+    public static CountMinSketch fromBytes(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        CountMinSketch sketch = new CountMinSketch((int) readVarLong(in), (int) readVarLong(in));
+        for (int i = 0; i < sketch.counters.length; i++) {
+            sketch.counters[i] = readVarLong(in);
+        }
+        return sketch;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in sketch");
+    }
+}
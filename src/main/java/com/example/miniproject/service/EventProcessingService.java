@@ -3,48 +3,327 @@ package com.example.miniproject.service;
 import com.example.miniproject.model.SessionEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EventProcessingService {
 
     private final KafkaTemplate<String, SessionEvent> kafkaTemplate;
+    @Qualifier("deadLetterKafkaTemplate")
+    private final KafkaTemplate<String, SessionEvent> deadLetterKafkaTemplate;
     private final StorageService storageService;
-    private static final String TOPIC = "session-events";
-    private static final String DLQ_TOPIC = "session-events-dlq";
+    private final KeyedExecutor keyedExecutor;
+    private final SessionRollupService rollupService;
+    private final List<IngestObserver> ingestObservers;
+    public static final String TOPIC = "session-events";
+    public static final String DLQ_TOPIC = "session-events-dlq";
+
+    @Value("${session.events.publish.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${session.events.publish.metadata-wait-ms:5000}")
+    private long metadataWaitMs;
+
+    @Value("${session.events.publish.threads:2}")
+    private int publishThreads;
+
+    @Value("${session.events.publish.queue-capacity:1000}")
+    private int publishQueueCapacity;
+
+    private Semaphore publishPermits;
+    private ThreadPoolExecutor publishExecutor;
+
+    @PostConstruct
+    public void init() {
+        publishPermits = new Semaphore(maxInFlight);
+        AtomicInteger threadIndex = new AtomicInteger();
+        publishExecutor = new ThreadPoolExecutor(publishThreads, publishThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(publishQueueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "publish-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        publishExecutor.shutdown();
+    }
+
+    /**
+     * Sends the events without waiting for the broker. The returned future completes once Kafka
+     * has acknowledged all of them, or fails fast with {@link PublishRejectedException} when
+     * more than {@code max-in-flight} events are already awaiting acknowledgement or the publish
+     * queue is full.
+     * <p>
+     * {@code send()} blocks up to {@code max-block-ms} while the producer waits for metadata or
+     * buffer space, so it runs on a small bounded pool rather than the caller's (event loop) thread.
+     */
+    public CompletableFuture<Void> publishEvents(List<SessionEvent> events) {
+        if (!publishPermits.tryAcquire(events.size())) {
+            return CompletableFuture.failedFuture(
+                    new PublishRejectedException("Too many events in flight, rejected " + events.size()));
+        }
+        CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+        try {
+            publishExecutor.execute(() -> {
+                CompletableFuture<?>[] sends = new CompletableFuture[events.size()];
+                for (int i = 0; i < sends.length; i++) {
+                    sends[i] = send(events.get(i)).whenComplete((result, e) -> publishPermits.release());
+                }
+                CompletableFuture.allOf(sends).whenComplete((result, e) -> {
+                    if (e != null) {
+                        acknowledged.completeExceptionally(e);
+                    } else {
+                        acknowledged.complete(null);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            publishPermits.release(events.size());
+            return CompletableFuture.failedFuture(
+                    new PublishRejectedException("Too many publishes queued, rejected " + events.size()));
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Loads the topic's metadata into the ingest producer, whose {@code send()} may only block
+     * {@code max-block-ms}, so the first publish does not fail waiting for it. Repeated because
+     * the producer drops metadata of topics idle for {@code metadata.max.idle.ms} (5 minutes).
+     */
+    @Scheduled(fixedDelayString = "${session.events.publish.metadata-refresh-ms:60000}")
+    public void refreshPublishMetadata() {
+        long deadline = System.currentTimeMillis() + metadataWaitMs;
+        while (true) {
+            try {
+                kafkaTemplate.partitionsFor(TOPIC);
+                return;
+            } catch (KafkaException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    log.warn("Could not load metadata of {}: {}", TOPIC, e.getMessage());
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public CompletableFuture<Void> publishEvent(SessionEvent event) {
+        return publishEvents(Collections.singletonList(event));
+    }
 
-    public void publishEvent(SessionEvent event) {
+    private CompletableFuture<SendResult<String, SessionEvent>> send(SessionEvent event) {
+        // Keyed by session so all events of a session stay on one partition, in order
         try{
-            kafkaTemplate.send(TOPIC, event.getContentId(), event);
-            log.info("Published event for session: {}", event.getContentId());
+            return kafkaTemplate.send(TOPIC, event.getSessionId(), event)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("Error publishing event {}", e.getMessage());
+                        } else {
+                            log.debug("Published event for session: {}", event.getSessionId());
+                        }
+                    });
         }
         catch (Exception e){
+            // max.block.ms elapsed waiting for metadata or buffer space
             log.error("Error publishing event {}",e.getMessage());
-            kafkaTemplate.send(DLQ_TOPIC, event.getContentId(), event);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    /**
+     * Splits a poll into session lanes that are written in parallel; each lane keeps its
+     * sessions' events in order. Offsets are committed by the container only after this
+     * method returns, i.e. once every lane (and any DLQ records) is durable.
+     */
     @KafkaListener(topics = TOPIC, groupId = "${spring.kafka.consumer.group-id}")
-    public void processEvent(SessionEvent event){
+    public void processEvents(List<ConsumerRecord<String, SessionEvent>> records){
+        List<CompletableFuture<?>> deadLetters = new ArrayList<>();
+        Map<Integer, List<Integer>> lanes = new HashMap<>();
+
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, SessionEvent> record = records.get(i);
+            try{
+                validateEvent(record.value());
+                // Idempotency key of the stored row, so retrying the poll does not duplicate it
+                record.value().setKafkaPartition(record.partition());
+                record.value().setKafkaOffset(record.offset());
+                lanes.computeIfAbsent(keyedExecutor.laneFor(record.value().getSessionId()), l -> new ArrayList<>())
+                        .add(i);
+            }
+            catch(IllegalArgumentException e){
+                deadLetters.add(sendToDlq(record, e));
+            }
+        }
+
+        List<CompletableFuture<LaneResult>> results = new ArrayList<>(lanes.size());
+        lanes.forEach((lane, indices) ->
+                results.add(keyedExecutor.submit(lane, () -> storeLane(records, indices))));
+
+        LaneResult firstFailure = null;
+        List<Integer> stored = new ArrayList<>(records.size());
+        for (CompletableFuture<LaneResult> future : results) {
+            LaneResult result = future.join();
+            deadLetters.addAll(result.deadLetters);
+            stored.addAll(result.stored);
+            if (result.failedIndex >= 0 && (firstFailure == null || result.failedIndex < firstFailure.failedIndex)) {
+                firstFailure = result;
+            }
+        }
+        awaitDeadLetters(deadLetters);
+        // Records from the failed one on are redelivered, stored or not; observers see them then,
+        // so only the ones being committed are passed on now, in poll order
+        int committed = firstFailure != null ? firstFailure.failedIndex : records.size();
+        Collections.sort(stored);
+        List<SessionEvent> observed = new ArrayList<>(stored.size());
+        for (int index : stored) {
+            if (index < committed) {
+                observed.add(records.get(index).value());
+            }
+        }
+        notifyObservers(observed);
+
+        if (firstFailure != null) {
+            // Transient failure (e.g. database unavailable): commit what precedes it and let the
+            // container's error handler retry from this record. Other lanes' rows after it are
+            // already stored; the retry skips them by their Kafka offset
+            throw new BatchListenerFailedException("Error storing event", firstFailure.failure,
+                    firstFailure.failedIndex);
+        }
+        log.info("Processed {} events ({} rejected)", stored.size(), records.size() - stored.size());
+    }
+
+    private LaneResult storeLane(List<ConsumerRecord<String, SessionEvent>> records, List<Integer> indices){
+        LaneResult result = new LaneResult();
+        List<ConsumerRecord<String, SessionEvent>> stored = new ArrayList<>(indices.size());
+        List<SessionEvent> events = new ArrayList<>(indices.size());
+        for (int index : indices) {
+            events.add(records.get(index).value());
+        }
+
         try{
-            validateEvent(event);
-            storageService.store(event);
-            log.info("Processed event for session: {}", event.getContentId());
+            storageService.storeEvents(events);
+            for (int index : indices) {
+                stored.add(records.get(index));
+                result.stored.add(index);
+            }
+        }
+        catch(DataAccessException e){
+            // One bad row rolls back the whole lane, so fall back to isolating it
+            log.warn("Batch insert of {} events failed, retrying one by one: {}", events.size(), e.getMessage());
+            storeOneByOne(records, indices, stored, result);
+        }
+
+        if (!stored.isEmpty()) {
+            try{
+                rollupService.apply(stored);
+            }
+            catch(DataAccessException e){
+                // Redelivery skips the stored raw rows, and the rollup watermark skips what was applied
+                int firstStored = indices.get(0);
+                if (result.failedIndex < 0 || firstStored < result.failedIndex) {
+                    result.failedIndex = firstStored;
+                    result.failure = e;
+                }
+            }
         }
-        catch(Exception e){
-            log.error("Error processing event {}",e.getMessage());
-            kafkaTemplate.send(DLQ_TOPIC, event.getContentId(), event);
+        return result;
+    }
+
+    private void storeOneByOne(List<ConsumerRecord<String, SessionEvent>> records, List<Integer> indices,
+                               List<ConsumerRecord<String, SessionEvent>> stored, LaneResult result){
+        for (int index : indices) {
+            ConsumerRecord<String, SessionEvent> record = records.get(index);
+            try{
+                storageService.storeEvent(record.value());
+                stored.add(record);
+                result.stored.add(index);
+            }
+            catch(NonTransientDataAccessException e){
+                result.deadLetters.add(sendToDlq(record, e));
+            }
+            catch(DataAccessException e){
+                result.failedIndex = index;
+                result.failure = e;
+                break;
+            }
+        }
+    }
+
+    private void notifyObservers(List<SessionEvent> events){
+        if (events.isEmpty()) {
+            return;
+        }
+        for (IngestObserver observer : ingestObservers) {
+            try{
+                observer.onEventsStored(events);
+            }
+            catch(RuntimeException e){
+                log.warn("Ingest observer {} failed: {}", observer.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private CompletableFuture<?> sendToDlq(ConsumerRecord<String, SessionEvent> record, Exception e){
+        log.error("Error processing event at offset {}: {}", record.offset(), e.getMessage());
+        return deadLetterKafkaTemplate.send(DLQ_TOPIC, record.key(), record.value());
+    }
+
+    private void awaitDeadLetters(List<CompletableFuture<?>> deadLetters){
+        if (!deadLetters.isEmpty()) {
+            CompletableFuture.allOf(deadLetters.toArray(new CompletableFuture[0])).join();
         }
     }
 
     private void validateEvent(SessionEvent event){
-        if (event.getSessionId() == null || event.getEventType() == null){
+        if (event == null || event.getSessionId() == null || event.getEventType() == null
+                || event.getTimestamp() == null){
             throw new IllegalArgumentException("Invalid event data");
         }
     }
 
+    private static final class LaneResult {
+        private final List<CompletableFuture<?>> deadLetters = new ArrayList<>();
+        // Indices into the poll
+        private final List<Integer> stored = new ArrayList<>();
+        private int failedIndex = -1;
+        private DataAccessException failure;
+    }
+
 }
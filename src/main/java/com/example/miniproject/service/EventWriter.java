@@ -0,0 +1,25 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+
+import java.util.List;
+
+/**
+ * Write engine behind {@link StorageService} for the {@code session_events} table.
+ * Selected with {@code session.events.writer} ({@code batch} or {@code copy}).
+ */
+public interface EventWriter {
+
+    /**
+     * Writes the events and returns only once they are durable.
+     */
+    void write(List<SessionEvent> events);
+
+    /**
+     * Writes the events right away on the calling thread, without waiting to be coalesced with
+     * other writes. Used for the row-by-row writes that isolate a failed batch.
+     */
+    default void writeNow(List<SessionEvent> events) {
+        write(events);
+    }
+}
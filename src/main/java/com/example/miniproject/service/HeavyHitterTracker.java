@@ -0,0 +1,274 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.HeavyHitter;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Streaming top-K of content, regions and device types by errors, buffering time and failed-start
+ * rate, in fixed memory.
+ * <p>
+ * Each dimension and metric has a Space-Saving summary per {@code epoch-ms} epoch, and rankings
+ * merge the last {@code epochs} epochs, so they follow an incident rather than all-time totals.
+ * Start attempts are counted in a Count-Min sketch per dimension as the denominator of the
+ * failed-start rate; a failed start is a {@code start} event that reports errors. Every instance
+ * publishes its summaries to Redis with a short TTL, and cluster rankings merge those of all
+ * live instances.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HeavyHitterTracker implements IngestObserver {
+
+    private static final List<String> DIMENSIONS = List.of("contentId", "region", "deviceType");
+    private static final List<String> METRICS = List.of("errors", "buffering", "failedStartRate");
+    private static final String KEY_PREFIX = "heavy-hitters:";
+    private static final int STARTS_DEPTH = 4;
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Value("${session.heavy-hitters.capacity:256}")
+    private int capacity;
+
+    @Value("${session.heavy-hitters.starts-width:2048}")
+    private int startsWidth;
+
+    @Value("${session.heavy-hitters.epoch-ms:60000}")
+    private long epochMs;
+
+    @Value("${session.heavy-hitters.epochs:5}")
+    private int epochCount;
+
+    @Value("${session.heavy-hitters.min-starts:20}")
+    private long minStarts;
+
+    @Value("${session.heavy-hitters.max-k:100}")
+    private int maxK;
+
+    @Value("${session.heavy-hitters.publish-interval-ms:5000}")
+    private long publishIntervalMs;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    // Ring of per-epoch summaries, indexed by epoch number modulo its length
+    private Summary[] epochs;
+
+    @PostConstruct
+    public void init() {
+        epochs = new Summary[epochCount];
+    }
+
+    @Override
+    public synchronized void onEventsStored(List<SessionEvent> events) {
+        Summary epoch = currentEpoch();
+        for (SessionEvent event : events) {
+            QualityMetrics metrics = event.getMetrics();
+            long errors = metrics != null && metrics.getErrorCount() != null ? metrics.getErrorCount() : 0;
+            long buffering = metrics != null && metrics.getBufferingDurationMs() != null
+                    ? metrics.getBufferingDurationMs() : 0;
+            boolean start = "start".equals(event.getEventType());
+            for (String dimension : DIMENSIONS) {
+                String item = dimensionValue(event, dimension);
+                if (item == null) {
+                    continue;
+                }
+                epoch.hitters(dimension, "errors").add(item, errors);
+                epoch.hitters(dimension, "buffering").add(item, buffering);
+                if (start) {
+                    epoch.starts(dimension).add(item, 1);
+                    if (errors > 0) {
+                        epoch.hitters(dimension, "failedStartRate").add(item, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Top {@code k} items of a dimension by metric; with {@code cluster}, merged with the summaries
+     * other instances published. Fails with {@link IllegalArgumentException} for unknown
+     * dimensions or metrics.
+     */
+    public Mono<List<HeavyHitter>> top(String dimension, String metric, int k, boolean cluster) {
+        if (!DIMENSIONS.contains(dimension)) {
+            return Mono.error(new IllegalArgumentException("Unknown dimension " + dimension));
+        }
+        if (!METRICS.contains(metric)) {
+            return Mono.error(new IllegalArgumentException("Unknown metric " + metric));
+        }
+        int limit = Math.max(1, Math.min(k, maxK));
+        Summary merged = localSummary();
+        if (!cluster) {
+            return Mono.just(rank(merged, dimension, metric, limit));
+        }
+        List<String> fields = "failedStartRate".equals(metric)
+                ? List.of(dimension + ':' + metric, dimension + ":starts")
+                : List.of(dimension + ':' + metric);
+        return Flux.fromIterable(fields)
+                .flatMap(field -> redisTemplate.scan(ScanOptions.scanOptions().match(KEY_PREFIX + field + ":*").build())
+                        .filter(key -> !key.endsWith(':' + instanceId))
+                        .flatMap(key -> redisTemplate.opsForValue().get(key))
+                        .map(value -> Map.entry(field, value)))
+                .collectList()
+                .onErrorResume(e -> {
+                    log.warn("Error reading heavy hitters of other instances: {}", e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .map(remote -> {
+                    for (Map.Entry<String, String> entry : remote) {
+                        try {
+                            merged.mergeField(entry.getKey(), entry.getValue());
+                        } catch (RuntimeException e) {
+                            // E.g. an instance configured with a different sketch width
+                            log.warn("Skipping heavy-hitter summary {}: {}", entry.getKey(), e.getMessage());
+                        }
+                    }
+                    return rank(merged, dimension, metric, limit);
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${session.heavy-hitters.publish-interval-ms:5000}")
+    public void publish() {
+        Duration ttl = Duration.ofMillis(publishIntervalMs * 3);
+        Flux.fromIterable(localSummary().toFields().entrySet())
+                .flatMap(field -> redisTemplate.opsForValue()
+                        .set(KEY_PREFIX + field.getKey() + ':' + instanceId, field.getValue(), ttl))
+                .subscribe(null, e -> log.warn("Error publishing heavy hitters: {}", e.getMessage()));
+    }
+
+    private List<HeavyHitter> rank(Summary summary, String dimension, String metric, int k) {
+        SpaceSaving hitters = summary.hitters(dimension, metric);
+        List<HeavyHitter> result = new ArrayList<>();
+        if (!"failedStartRate".equals(metric)) {
+            for (SpaceSaving.Item item : hitters.top(k)) {
+                result.add(hitter(dimension, metric, item.getItem(), item.getCount(), item.getError(), null));
+            }
+            return result;
+        }
+        // Rank every tracked item by rate; items with too few starts would dominate with 1/1
+        CountMinSketch starts = summary.starts(dimension);
+        for (SpaceSaving.Item item : hitters.top(Integer.MAX_VALUE)) {
+            long started = Math.max(starts.estimate(item.getItem()), item.getCount());
+            if (started >= minStarts) {
+                result.add(hitter(dimension, metric, item.getItem(), (double) item.getCount() / started,
+                        (double) item.getError() / started, started));
+            }
+        }
+        result.sort(Comparator.comparingDouble(HeavyHitter::getValue).reversed());
+        return new ArrayList<>(result.subList(0, Math.min(k, result.size())));
+    }
+
+    private static HeavyHitter hitter(String dimension, String metric, String item, double value,
+                                      double maxError, Long starts) {
+        HeavyHitter hitter = new HeavyHitter();
+        hitter.setDimension(dimension);
+        hitter.setItem(item);
+        hitter.setMetric(metric);
+        hitter.setValue(value);
+        hitter.setMaxError(maxError);
+        hitter.setStarts(starts);
+        return hitter;
+    }
+
+    private Summary currentEpoch() {
+        long epoch = Math.floorDiv(System.currentTimeMillis(), epochMs);
+        int slot = (int) Math.floorMod(epoch, (long) epochs.length);
+        if (epochs[slot] == null || epochs[slot].epoch != epoch) {
+            epochs[slot] = new Summary(epoch, capacity, startsWidth);
+        }
+        return epochs[slot];
+    }
+
+    /**
+     * Merge of the epochs still in range, independent of the live summaries.
+     */
+    private synchronized Summary localSummary() {
+        long current = Math.floorDiv(System.currentTimeMillis(), epochMs);
+        Summary merged = new Summary(current, capacity, startsWidth);
+        for (Summary epoch : epochs) {
+            if (epoch != null && epoch.epoch > current - epochs.length) {
+                merged.merge(epoch);
+            }
+        }
+        return merged;
+    }
+
+    private static String dimensionValue(SessionEvent event, String dimension) {
+        switch (dimension) {
+            case "contentId":
+                return event.getContentId();
+            case "region":
+                return event.getRegion();
+            default:
+                return event.getDeviceType();
+        }
+    }
+
+    private static final class Summary {
+        private final long epoch;
+        private final int capacity;
+        private final int startsWidth;
+        // "dimension:metric" -> top items, "dimension:starts" -> start attempts
+        private final Map<String, SpaceSaving> hitters = new HashMap<>();
+        private final Map<String, CountMinSketch> starts = new HashMap<>();
+
+        private Summary(long epoch, int capacity, int startsWidth) {
+            this.epoch = epoch;
+            this.capacity = capacity;
+            this.startsWidth = startsWidth;
+        }
+
+        private SpaceSaving hitters(String dimension, String metric) {
+            return hitters.computeIfAbsent(dimension + ':' + metric, key -> new SpaceSaving(capacity));
+        }
+
+        private CountMinSketch starts(String dimension) {
+            return starts.computeIfAbsent(dimension + ":starts", key -> new CountMinSketch(STARTS_DEPTH, startsWidth));
+        }
+
+        private void merge(Summary other) {
+            // SpaceSaving.merge returns a copy, so nothing here aliases the other summary's state
+            other.hitters.forEach(this::mergeHitters);
+            other.starts.forEach((key, sketch) ->
+                    starts.computeIfAbsent(key, k -> new CountMinSketch(STARTS_DEPTH, startsWidth)).merge(sketch));
+        }
+
+        private void mergeHitters(String key, SpaceSaving summary) {
+            hitters.put(key, hitters.getOrDefault(key, new SpaceSaving(capacity)).merge(summary));
+        }
+
+        private void mergeField(String field, String value) {
+            if (field.endsWith(":starts")) {
+                CountMinSketch sketch = CountMinSketch.fromBytes(Base64.getDecoder().decode(value));
+                starts.computeIfAbsent(field, k -> new CountMinSketch(STARTS_DEPTH, startsWidth)).merge(sketch);
+            } else {
+                mergeHitters(field, SpaceSaving.parse(value));
+            }
+        }
+
+        private Map<String, String> toFields() {
+            Map<String, String> fields = new HashMap<>();
+            hitters.forEach((key, summary) -> fields.put(key, summary.toString()));
+            starts.forEach((key, sketch) -> fields.put(key, Base64.getEncoder().encodeToString(sketch.toBytes())));
+            return fields;
+        }
+    }
+}
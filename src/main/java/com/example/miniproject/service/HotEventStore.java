@@ -0,0 +1,615 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.AnalyticsCubeRow;
+import com.example.miniproject.model.CubeQuery;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Optional in-memory columnar copy of the last {@code retention-hours} of events, so that cube
+ * queries over recent data do not scan {@code session_events}.
+ * <p>
+ * Events are appended to an open chunk of primitive column arrays; the session ID,
+ * {@code eventType}, {@code deviceType}, {@code region} and {@code contentId} are
+ * dictionary-encoded per chunk and null metrics are stored as sentinels. A full chunk is trimmed
+ * and sealed. Sealed chunks are immutable, scanned in parallel without locks, and dropped once
+ * their newest event is past retention or the store holds more than {@code max-rows}.
+ * <p>
+ * The store is loaded from Postgres on startup, before the consumer starts, and then fed by this
+ * instance's ingest path, so it only reflects the whole fleet when this instance consumes all
+ * partitions. Records stored but not committed to Kafka before a restart are loaded and then
+ * redelivered; the Kafka offsets of loaded rows are kept per partition until ingest has passed
+ * them, so those records are not appended twice.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session.hot-store.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class HotEventStore implements IngestObserver {
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    // Dictionary codes are packed 20 bits per dimension into one group key
+    private static final int MAX_CHUNK_ROWS = (1 << 20) - 2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.hot-store.retention-hours:6}")
+    private int retentionHours;
+
+    @Value("${session.hot-store.chunk-rows:65536}")
+    private int chunkRows;
+
+    @Value("${session.hot-store.max-rows:20000000}")
+    private long maxRows;
+
+    @Value("${session.events.query.fetch-size:500}")
+    private int fetchSize;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    // Oldest first; replaced, never modified, so scans need no lock
+    private volatile List<Chunk> sealed = List.of();
+    private volatile long sealedRows;
+    // Guarded by this
+    private Chunk open;
+    // Queries must start at or after both: the load start (or startup, if loading failed) and
+    // the newest event of any chunk dropped for capacity
+    private volatile long coveredFromMs = Long.MAX_VALUE;
+    private volatile long evictedUpToMs = Long.MIN_VALUE;
+    // Offsets of loaded rows by Kafka partition, dropped once ingest is past them; guarded by this
+    private final Map<Integer, Roaring64Bitmap> loadedOffsets = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (chunkRows <= 0 || chunkRows > MAX_CHUNK_ROWS) {
+            throw new IllegalStateException("session.hot-store.chunk-rows must be between 1 and " + MAX_CHUNK_ROWS);
+        }
+        open = new Chunk(chunkRows);
+        Gauge.builder("session.hot-store.rows", this, HotEventStore::rows).register(meterRegistry);
+        load();
+    }
+
+    private void load() {
+        long startMs = System.currentTimeMillis();
+        String sql = "SELECT " + SessionEventRowMapper.COLUMNS + ", kafka_partition, kafka_offset" +
+                " FROM session_events WHERE timestamp >= ? ORDER BY timestamp";
+        long[] loaded = {0};
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                // Streams within the transaction instead of loading hours of rows at once
+                ps.setFetchSize(fetchSize);
+                ps.setTimestamp(1, new Timestamp(startMs - retentionMs()));
+                return ps;
+            }, rs -> {
+                appendRow(rs);
+                loaded[0]++;
+            }));
+            coveredFromMs = Long.MIN_VALUE;
+            log.info("Loaded {} events into the hot store in {} ms", loaded[0], System.currentTimeMillis() - startMs);
+        } catch (DataAccessException e) {
+            // Only what is ingested from now on is complete; older ranges stay on Postgres
+            synchronized (this) {
+                sealed = List.of();
+                sealedRows = 0;
+                open = new Chunk(chunkRows);
+                loadedOffsets.clear();
+            }
+            coveredFromMs = System.currentTimeMillis();
+            log.error("Error loading the hot store after {} events: {}", loaded[0], e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void onEventsStored(List<SessionEvent> events) {
+        long cutoff = System.currentTimeMillis() - retentionMs();
+        for (SessionEvent event : events) {
+            long timestamp = event.getTimestamp().toEpochMilli();
+            if (wasLoaded(event) || timestamp < cutoff) {
+                continue;
+            }
+            QualityMetrics metrics = event.getMetrics() != null ? event.getMetrics() : new QualityMetrics();
+            append(timestamp, event.getSessionId(), event.getEventType(), event.getDeviceType(), event.getRegion(),
+                    event.getContentId(),
+                    metrics.getStartupTimeMs() != null ? metrics.getStartupTimeMs() : NULL_LONG,
+                    metrics.getBufferingDurationMs() != null ? metrics.getBufferingDurationMs() : NULL_LONG,
+                    metrics.getBitrate() != null ? metrics.getBitrate() : NULL_INT,
+                    metrics.getBufferingRatio() != null ? metrics.getBufferingRatio() : Double.NaN,
+                    metrics.getErrorCount() != null ? metrics.getErrorCount() : NULL_INT);
+        }
+    }
+
+    /**
+     * Whether the event is a redelivered record that was already loaded. Records of a partition
+     * arrive in offset order, so its offsets are dropped once ingest is past the last loaded one.
+     * Called with the lock held.
+     */
+    private boolean wasLoaded(SessionEvent event) {
+        if (loadedOffsets.isEmpty() || event.getKafkaPartition() == null || event.getKafkaOffset() == null) {
+            return false;
+        }
+        Roaring64Bitmap offsets = loadedOffsets.get(event.getKafkaPartition());
+        if (offsets == null) {
+            return false;
+        }
+        if (event.getKafkaOffset() > offsets.last()) {
+            loadedOffsets.remove(event.getKafkaPartition());
+            return false;
+        }
+        return offsets.contains(event.getKafkaOffset());
+    }
+
+    private synchronized void appendRow(ResultSet rs) throws SQLException {
+        int partition = rs.getInt("kafka_partition");
+        boolean keyed = !rs.wasNull();
+        long offset = rs.getLong("kafka_offset");
+        if (keyed && !rs.wasNull()) {
+            loadedOffsets.computeIfAbsent(partition, p -> new Roaring64Bitmap()).addLong(offset);
+        }
+        long startupTime = rs.getLong("startup_time_ms");
+        startupTime = rs.wasNull() ? NULL_LONG : startupTime;
+        long buffering = rs.getLong("buffering_duration_ms");
+        buffering = rs.wasNull() ? NULL_LONG : buffering;
+        int bitrate = rs.getInt("bitrate");
+        bitrate = rs.wasNull() ? NULL_INT : bitrate;
+        double bufferingRatio = rs.getDouble("buffering_ratio");
+        bufferingRatio = rs.wasNull() ? Double.NaN : bufferingRatio;
+        int errors = rs.getInt("error_count");
+        errors = rs.wasNull() ? NULL_INT : errors;
+        append(rs.getTimestamp("timestamp").getTime(), rs.getString("session_id"), rs.getString("event_type"),
+                rs.getString("device_type"), rs.getString("region"), rs.getString("content_id"),
+                startupTime, buffering, bitrate, bufferingRatio, errors);
+    }
+
+    private void append(long timestamp, String sessionId, String eventType, String deviceType, String region,
+                        String contentId, long startupTime, long buffering, int bitrate, double bufferingRatio,
+                        int errors) {
+        open.append(timestamp, sessionId, eventType, deviceType, region, contentId,
+                startupTime, buffering, bitrate, bufferingRatio, errors);
+        if (open.size == chunkRows) {
+            List<Chunk> chunks = new ArrayList<>(sealed);
+            chunks.add(open.seal());
+            open = new Chunk(chunkRows);
+            retain(chunks);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${session.hot-store.expire-interval-ms:60000}")
+    public synchronized void expire() {
+        retain(new ArrayList<>(sealed));
+    }
+
+    /**
+     * Publishes {@code chunks} minus those past retention and, newest first, those beyond
+     * {@code max-rows}. Called with the lock held.
+     */
+    private void retain(List<Chunk> chunks) {
+        long cutoff = System.currentTimeMillis() - retentionMs();
+        chunks.removeIf(chunk -> chunk.maxTimestamp < cutoff);
+        long rows = open.size;
+        int first = chunks.size();
+        while (first > 0 && rows + chunks.get(first - 1).size <= maxRows) {
+            rows += chunks.get(--first).size;
+        }
+        for (Chunk evicted : chunks.subList(0, first)) {
+            evictedUpToMs = Math.max(evictedUpToMs, evicted.maxTimestamp);
+        }
+        sealed = List.copyOf(chunks.subList(first, chunks.size()));
+        sealedRows = rows - open.size;
+    }
+
+    /**
+     * Whether every stored event at or after {@code from} is in the store.
+     */
+    public boolean covers(Instant from) {
+        long fromMs = from.toEpochMilli();
+        return fromMs >= coveredFromMs && fromMs > evictedUpToMs
+                && fromMs >= System.currentTimeMillis() - retentionMs();
+    }
+
+    /**
+     * Same result as the SQL cube query in {@link AnalyticsCubeService}: groups by
+     * {@code dimensions} and, when {@code unit} is set, by time bucket in the JVM default zone,
+     * with the top {@code limit} rows by {@code orderBy} (per bucket when bucketed).
+     */
+    public List<AnalyticsCubeRow> cube(List<String> dimensions, ChronoUnit unit, Instant from, Instant to,
+                                       CubeQuery query, String orderBy, int limit) {
+        Scan scan = new Scan(dimensions, unit, from.toEpochMilli(), to.toEpochMilli(), query);
+        // Sealed chunks and the open one are read under the same lock, so a chunk sealed
+        // meanwhile is counted exactly once
+        List<Chunk> chunks;
+        Map<String, Group> recent;
+        synchronized (this) {
+            chunks = sealed;
+            recent = scan.apply(open);
+        }
+        Map<String, Group> groups = chunks.parallelStream()
+                .filter(chunk -> chunk.maxTimestamp >= scan.fromMs && chunk.minTimestamp < scan.toMs)
+                .map(scan::apply)
+                .reduce(HotEventStore::merge)
+                .orElseGet(HashMap::new);
+        return rank(merge(groups, recent).values(), unit != null, orderBy, limit);
+    }
+
+    private static Map<String, Group> merge(Map<String, Group> into, Map<String, Group> from) {
+        from.forEach((key, group) -> into.merge(key, group, Group::merge));
+        return into;
+    }
+
+    private static List<AnalyticsCubeRow> rank(Collection<Group> groups, boolean bucketed, String orderBy, int limit) {
+        ToLongFunction<AnalyticsCubeRow> metric = orderBy.equals("sessions") ? AnalyticsCubeRow::getSessions
+                : orderBy.equals("errors") ? AnalyticsCubeRow::getTotalErrors
+                : orderBy.equals("buffering") ? AnalyticsCubeRow::getTotalBufferingMs
+                : AnalyticsCubeRow::getEvents;
+        Comparator<AnalyticsCubeRow> descending = Comparator.comparingLong(metric).reversed();
+
+        TreeMap<Long, List<AnalyticsCubeRow>> buckets = new TreeMap<>();
+        for (Group group : groups) {
+            buckets.computeIfAbsent(bucketed ? group.bucket : 0L, b -> new ArrayList<>()).add(group.toRow(bucketed));
+        }
+        List<AnalyticsCubeRow> result = new ArrayList<>();
+        for (List<AnalyticsCubeRow> rows : buckets.values()) {
+            rows.sort(descending);
+            result.addAll(rows.subList(0, Math.min(limit, rows.size())));
+        }
+        return result;
+    }
+
+    private long retentionMs() {
+        return retentionHours * 3_600_000L;
+    }
+
+    private double rows() {
+        long openRows;
+        synchronized (this) {
+            openRows = open.size;
+        }
+        return sealedRows + openRows;
+    }
+
+    /**
+     * One cube query over single chunks; each chunk yields its own groups, keyed by the decoded
+     * dimension values and bucket so results of different chunks can be merged.
+     */
+    private final class Scan {
+        private final boolean byRegion;
+        private final boolean byDeviceType;
+        private final boolean byContentId;
+        private final ChronoUnit unit;
+        private final long fromMs;
+        private final long toMs;
+        private final CubeQuery query;
+
+        private Scan(List<String> dimensions, ChronoUnit unit, long fromMs, long toMs, CubeQuery query) {
+            this.byRegion = dimensions.contains("region");
+            this.byDeviceType = dimensions.contains("deviceType");
+            this.byContentId = dimensions.contains("contentId");
+            this.unit = unit;
+            this.fromMs = fromMs;
+            this.toMs = toMs;
+            this.query = query;
+        }
+
+        private Map<String, Group> apply(Chunk chunk) {
+            Map<String, Group> result = new HashMap<>();
+            // -1 means no filter; a filter value missing from the chunk matches none of its rows
+            int region = filterCode(chunk.regionDictionary, query.getRegion());
+            int deviceType = filterCode(chunk.deviceTypeDictionary, query.getDeviceType());
+            int contentId = filterCode(chunk.contentDictionary, query.getContentId());
+            if (region == Dictionary.ABSENT || deviceType == Dictionary.ABSENT || contentId == Dictionary.ABSENT
+                    || chunk.size == 0) {
+                return result;
+            }
+            // Local-time buckets are computed once per change of the local unit number, which
+            // is exact as long as the zone offset does not change within the chunk
+            long offsetMs = offsetMs(chunk.minTimestamp);
+            boolean fixedOffset = offsetMs == offsetMs(chunk.maxTimestamp);
+            long unitMs = unit != null ? unit.getDuration().toMillis() : 1;
+            long lastLocal = Long.MIN_VALUE;
+            long bucket = 0;
+
+            Map<Long, Map<Long, Group>> byBucket = new HashMap<>();
+            Map<Long, Group> current = null;
+            long currentBucket = Long.MIN_VALUE;
+            for (int i = 0; i < chunk.size; i++) {
+                long timestamp = chunk.timestamps[i];
+                if (timestamp < fromMs || timestamp >= toMs
+                        || (region >= 0 && chunk.regions[i] != region)
+                        || (deviceType >= 0 && chunk.deviceTypes[i] != deviceType)
+                        || (contentId >= 0 && chunk.contents[i] != contentId)) {
+                    continue;
+                }
+                if (unit != null) {
+                    long local = Math.floorDiv(timestamp + offsetMs, unitMs);
+                    if (!fixedOffset || local != lastLocal) {
+                        lastLocal = local;
+                        bucket = truncate(timestamp);
+                    }
+                }
+                if (current == null || bucket != currentBucket) {
+                    current = byBucket.computeIfAbsent(bucket, b -> new HashMap<>());
+                    currentBucket = bucket;
+                }
+                long key = (byRegion ? chunk.regions[i] + 1L : 0L) << 40
+                        | (byDeviceType ? chunk.deviceTypes[i] + 1L : 0L) << 20
+                        | (byContentId ? chunk.contents[i] + 1L : 0L);
+                Group group = current.get(key);
+                if (group == null) {
+                    group = new Group(byRegion ? chunk.regionDictionary.decode(chunk.regions[i]) : null,
+                            byDeviceType ? chunk.deviceTypeDictionary.decode(chunk.deviceTypes[i]) : null,
+                            byContentId ? chunk.contentDictionary.decode(chunk.contents[i]) : null, bucket);
+                    current.put(key, group);
+                }
+                group.add(chunk, i);
+            }
+
+            for (Map<Long, Group> groups : byBucket.values()) {
+                for (Group group : groups.values()) {
+                    group.resolveSessions(chunk);
+                    result.put(group.key(), group);
+                }
+            }
+            return result;
+        }
+
+        private int filterCode(Dictionary dictionary, String value) {
+            return value != null ? dictionary.lookup(value) : -1;
+        }
+
+        private long offsetMs(long timestamp) {
+            return zone.getRules().getOffset(Instant.ofEpochMilli(timestamp)).getTotalSeconds() * 1000L;
+        }
+
+        private long truncate(long timestamp) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), zone).truncatedTo(unit)
+                    .atZone(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    private static final class Group {
+        private final String region;
+        private final String deviceType;
+        private final String contentId;
+        private final long bucket;
+        // Chunk-local session codes while scanning one chunk, then the session IDs
+        private BitSet sessionCodes = new BitSet();
+        private Set<String> sessions;
+        private long events;
+        private long startupTimeSum;
+        private long startupTimeCount;
+        private long bufferingTotal;
+        private long bitrateSum;
+        private long bitrateCount;
+        private long errorTotal;
+
+        private Group(String region, String deviceType, String contentId, long bucket) {
+            this.region = region;
+            this.deviceType = deviceType;
+            this.contentId = contentId;
+            this.bucket = bucket;
+        }
+
+        private void add(Chunk chunk, int row) {
+            events++;
+            sessionCodes.set(chunk.sessions[row]);
+            long startupTime = chunk.startupTimes[row];
+            if (startupTime != NULL_LONG) {
+                startupTimeSum += startupTime;
+                startupTimeCount++;
+            }
+            long buffering = chunk.bufferingDurations[row];
+            if (buffering != NULL_LONG) {
+                bufferingTotal += buffering;
+            }
+            int bitrate = chunk.bitrates[row];
+            if (bitrate != NULL_INT) {
+                bitrateSum += bitrate;
+                bitrateCount++;
+            }
+            int errors = chunk.errorCounts[row];
+            if (errors != NULL_INT) {
+                errorTotal += errors;
+            }
+        }
+
+        private void resolveSessions(Chunk chunk) {
+            sessions = new HashSet<>(sessionCodes.cardinality() * 2);
+            for (int code = sessionCodes.nextSetBit(0); code >= 0; code = sessionCodes.nextSetBit(code + 1)) {
+                sessions.add(chunk.sessionDictionary.decode(code));
+            }
+            sessionCodes = null;
+        }
+
+        private String key() {
+            return region + '\u0000' + deviceType + '\u0000' + contentId + '\u0000' + bucket;
+        }
+
+        private Group merge(Group other) {
+            sessions.addAll(other.sessions);
+            events += other.events;
+            startupTimeSum += other.startupTimeSum;
+            startupTimeCount += other.startupTimeCount;
+            bufferingTotal += other.bufferingTotal;
+            bitrateSum += other.bitrateSum;
+            bitrateCount += other.bitrateCount;
+            errorTotal += other.errorTotal;
+            return this;
+        }
+
+        private AnalyticsCubeRow toRow(boolean bucketed) {
+            AnalyticsCubeRow row = new AnalyticsCubeRow();
+            row.setRegion(region);
+            row.setDeviceType(deviceType);
+            row.setContentId(contentId);
+            if (bucketed) {
+                row.setBucketStart(Instant.ofEpochMilli(bucket));
+            }
+            row.setSessions(sessions.size());
+            row.setEvents(events);
+            row.setAverageStartupTimeMs(startupTimeCount > 0 ? (double) startupTimeSum / startupTimeCount : 0.0);
+            row.setTotalBufferingMs(bufferingTotal);
+            row.setAverageBitrateKbps(bitrateCount > 0 ? (double) bitrateSum / bitrateCount : 0.0);
+            row.setTotalErrors(errorTotal);
+            return row;
+        }
+    }
+
+    /**
+     * Column arrays of up to {@code capacity} events. Appended to under the store's lock until
+     * {@link #seal sealed} into a trimmed, immutable copy.
+     */
+    private static final class Chunk {
+        private final long[] timestamps;
+        private final int[] sessions;
+        private final int[] eventTypes;
+        private final int[] deviceTypes;
+        private final int[] regions;
+        private final int[] contents;
+        private final long[] startupTimes;
+        private final long[] bufferingDurations;
+        private final int[] bitrates;
+        private final double[] bufferingRatios;
+        private final int[] errorCounts;
+        private final Dictionary sessionDictionary;
+        private final Dictionary eventTypeDictionary;
+        private final Dictionary deviceTypeDictionary;
+        private final Dictionary regionDictionary;
+        private final Dictionary contentDictionary;
+        private int size;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private Chunk(int capacity) {
+            timestamps = new long[capacity];
+            sessions = new int[capacity];
+            eventTypes = new int[capacity];
+            deviceTypes = new int[capacity];
+            regions = new int[capacity];
+            contents = new int[capacity];
+            startupTimes = new long[capacity];
+            bufferingDurations = new long[capacity];
+            bitrates = new int[capacity];
+            bufferingRatios = new double[capacity];
+            errorCounts = new int[capacity];
+            sessionDictionary = new Dictionary();
+            eventTypeDictionary = new Dictionary();
+            deviceTypeDictionary = new Dictionary();
+            regionDictionary = new Dictionary();
+            contentDictionary = new Dictionary();
+        }
+
+        private Chunk(Chunk source) {
+            int n = source.size;
+            timestamps = Arrays.copyOf(source.timestamps, n);
+            sessions = Arrays.copyOf(source.sessions, n);
+            eventTypes = Arrays.copyOf(source.eventTypes, n);
+            deviceTypes = Arrays.copyOf(source.deviceTypes, n);
+            regions = Arrays.copyOf(source.regions, n);
+            contents = Arrays.copyOf(source.contents, n);
+            startupTimes = Arrays.copyOf(source.startupTimes, n);
+            bufferingDurations = Arrays.copyOf(source.bufferingDurations, n);
+            bitrates = Arrays.copyOf(source.bitrates, n);
+            bufferingRatios = Arrays.copyOf(source.bufferingRatios, n);
+            errorCounts = Arrays.copyOf(source.errorCounts, n);
+            sessionDictionary = source.sessionDictionary;
+            eventTypeDictionary = source.eventTypeDictionary;
+            deviceTypeDictionary = source.deviceTypeDictionary;
+            regionDictionary = source.regionDictionary;
+            contentDictionary = source.contentDictionary;
+            size = n;
+            minTimestamp = source.minTimestamp;
+            maxTimestamp = source.maxTimestamp;
+        }
+
+        private void append(long timestamp, String sessionId, String eventType, String deviceType, String region,
+                            String contentId, long startupTime, long buffering, int bitrate, double bufferingRatio,
+                            int errors) {
+            int row = size;
+            timestamps[row] = timestamp;
+            sessions[row] = sessionDictionary.encode(sessionId);
+            eventTypes[row] = eventTypeDictionary.encode(eventType);
+            deviceTypes[row] = deviceTypeDictionary.encode(deviceType);
+            regions[row] = regionDictionary.encode(region);
+            contents[row] = contentDictionary.encode(contentId);
+            startupTimes[row] = startupTime;
+            bufferingDurations[row] = buffering;
+            bitrates[row] = bitrate;
+            bufferingRatios[row] = bufferingRatio;
+            errorCounts[row] = errors;
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            size = row + 1;
+        }
+
+        private Chunk seal() {
+            return new Chunk(this);
+        }
+    }
+
+    private static final class Dictionary {
+        private static final int NULL_CODE = -1;
+        private static final int ABSENT = -2;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int encode(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        private int lookup(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : ABSENT;
+        }
+
+        private String decode(int code) {
+            return code >= 0 ? values.get(code) : null;
+        }
+    }
+}
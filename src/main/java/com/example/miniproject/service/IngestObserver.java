@@ -0,0 +1,18 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+
+import java.util.List;
+
+/**
+ * Receives events once the consumer has stored them, for in-memory views fed by the ingest
+ * path. Called on the listener thread once per poll, so implementations must be quick and
+ * thread-safe. Events arrive in poll order, and only those whose offsets the poll commits: when
+ * a poll fails part-way, the records from the failed one on are passed on once redelivered, so a
+ * retry does not count them twice. Delivery is otherwise best-effort: failures are logged and
+ * ignored, and a crash or rebalance before the commit still replays a poll.
+ */
+public interface IngestObserver {
+
+    void onEventsStored(List<SessionEvent> events);
+}
@@ -0,0 +1,60 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "session.events.writer", havingValue = "batch", matchIfMissing = true)
+public class JdbcBatchEventWriter implements EventWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${session.events.batch-size:500}")
+    private int batchSize;
+
+    private static final String INSERT_SQL = "INSERT INTO session_events (session_id, event_type, timestamp, " +
+            "startup_time_ms, buffering_duration_ms, bitrate, buffering_ratio, " +
+            "error_count, device_type, region, content_id, kafka_partition, kafka_offset) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    /**
+     * Inserts a whole batch with JDBC batching in a single transaction, so a Kafka poll
+     * costs one round trip per {@code batchSize} rows instead of one transaction per event.
+     * Rows of a Kafka record that is already stored are skipped.
+     */
+    @Override
+    @Transactional
+    public void write(List<SessionEvent> events) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, batchSize, this::bindEvent);
+    }
+
+    private void bindEvent(PreparedStatement ps, SessionEvent event) throws SQLException {
+        QualityMetrics metrics = event.getMetrics() != null ? event.getMetrics() : new QualityMetrics();
+        ps.setString(1, event.getSessionId());
+        ps.setString(2, event.getEventType());
+        ps.setTimestamp(3, Timestamp.from(event.getTimestamp()));
+        ps.setObject(4, metrics.getStartupTimeMs(), Types.BIGINT);
+        ps.setObject(5, metrics.getBufferingDurationMs(), Types.BIGINT);
+        ps.setObject(6, metrics.getBitrate(), Types.INTEGER);
+        ps.setObject(7, metrics.getBufferingRatio(), Types.DOUBLE);
+        ps.setObject(8, metrics.getErrorCount(), Types.INTEGER);
+        ps.setString(9, event.getDeviceType());
+        ps.setString(10, event.getRegion());
+        ps.setString(11, event.getContentId());
+        ps.setObject(12, event.getKafkaPartition(), Types.INTEGER);
+        ps.setObject(13, event.getKafkaOffset(), Types.BIGINT);
+    }
+}
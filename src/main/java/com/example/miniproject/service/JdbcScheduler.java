@@ -0,0 +1,102 @@
+package com.example.miniproject.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking JDBC work for WebFlux requests off the event loop.
+ * <p>
+ * The connection pool is shared with the consumer lanes, the COPY flusher and the scheduled
+ * jobs, so the {@code threads} here cap how many connections API requests hold at once, and the
+ * pool is sized for that share plus the rest (see {@code application.properties}). A thread can
+ * still wait for a connection while ingest holds many. In front of the threads sits a bounded
+ * queue; when it is full the query fails at once with a {@link RejectedExecutionException}
+ * rather than piling up behind slow queries, and controllers answer 503.
+ */
+@Component
+@RequiredArgsConstructor
+public class JdbcScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.jdbc.threads:4}")
+    private int threads;
+
+    @Value("${session.jdbc.queue-capacity:200}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    private Scheduler scheduler;
+    private Timer queueWait;
+    private Counter rejected;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "jdbc-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        scheduler = Schedulers.fromExecutorService(executor, "jdbc");
+
+        Gauge.builder("session.jdbc.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("session.jdbc.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        queueWait = Timer.builder("session.jdbc.queue.wait").register(meterRegistry);
+        rejected = Counter.builder("session.jdbc.rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Runs a blocking call on the pool; a {@code null} result completes empty.
+     */
+    public <T> Mono<T> call(Callable<T> task) {
+        return Mono.defer(() -> {
+            long queuedAt = System.nanoTime();
+            return Mono.fromCallable(() -> {
+                queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return task.call();
+            }).subscribeOn(scheduler);
+        }).doOnError(RejectedExecutionException.class, e -> rejected.increment());
+    }
+
+    /**
+     * Reads a bounded blocking source, e.g. a page from a cursor, to the end on the pool and then
+     * emits it, so the cursor, its connection and the thread are released before a slow client
+     * has read anything.
+     */
+    public <T> Flux<T> page(Flux<T> source) {
+        return Flux.defer(() -> {
+            long queuedAt = System.nanoTime();
+            return source.doOnSubscribe(s -> queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS))
+                    .collectList()
+                    .subscribeOn(scheduler)
+                    .flatMapIterable(page -> page);
+        }).doOnError(RejectedExecutionException.class, e -> rejected.increment());
+    }
+}
@@ -1,19 +1,23 @@
 package com.example.miniproject.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
 import java.security.KeyPair;
-import java.time.Duration;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,85 +26,110 @@ public class JwtService {
 
     private final KeyPair keyPair;
 
-    @Qualifier("jwtRedisTemplate") // 使用@Qualifier指定要注入的bean
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
-
     private final Long jwtExpiration;
 
-    private static final String TOKEN_BLACKLIST_PREFIX = "token:blacklist:";
-    private static final String TOKEN_CACHE_PREFIX = "token:valid:";
+    private final TokenRevocationRegistry revocations;
+
+    @Value("${jwt.cache.max-entries:100000}")
+    private int cacheMaxEntries;
+
+    // Thread-safe, so built once instead of per request
+    private JwtParser parser;
+    // Token hash -> claims of tokens whose signature has been verified, in LRU order
+    private Map<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        parser = Jwts.parserBuilder()
+                .setSigningKey(keyPair.getPublic())
+                .build();
+        verifiedTokens = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    public Mono<String> generateToken(String username, List<String> roles) {
+        return buildToken(username, roles, jwtExpiration);
+    }
+
+    /**
+     * Signs a token with a unique {@code jti} and the user's current revocation epoch, one Redis
+     * GET per login. Nothing is written to Redis on login.
+     */
+    private Mono<String> buildToken(String username, List<String> roles, long expirationMs) {
+        return revocations.loadEpoch(username).map(epoch -> sign(username, roles, expirationMs, epoch));
+    }
 
-    public String generateToken(String username, List<String> roles) {
+    private String sign(String username, List<String> roles, long expirationMs, long epoch) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpiration);
+        Date expiryDate = new Date(now.getTime() + expirationMs);
 
-        String token = Jwts.builder()
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("roles", roles)
+                .claim(TokenRevocationRegistry.EPOCH_CLAIM, epoch)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(keyPair.getPrivate())
                 .compact();
-
-        // 缓存有效令牌
-        redisTemplate.opsForValue()
-                .set(TOKEN_CACHE_PREFIX + token, "valid", Duration.ofMillis(jwtExpiration))
-                .subscribe();
-
-        return token;
     }
 
+    /**
+     * Looks the token up in the cache of verified tokens, verifying the signature only for tokens
+     * not seen before (or evicted), then checks the local revocation state. No Redis call on any
+     * path.
+     */
     public Mono<Claims> validateToken(String token) {
-        // 首先检查令牌是否被列入黑名单
-        return redisTemplate.hasKey(TOKEN_BLACKLIST_PREFIX + token)
-                .flatMap(isBlacklisted -> {
-                    if (isBlacklisted) {
-                        return Mono.error(new RuntimeException("Token is blacklisted"));
-                    }
-
-                    // 检查令牌是否在缓存中
-                    return redisTemplate.opsForValue().get(TOKEN_CACHE_PREFIX + token)
-                            .flatMap(cached -> {
-                                if (cached != null) {
-                                    return parseToken(token);
-                                }
-
-                                // 如果不在缓存中，验证并缓存（如果有效）
-                                return parseToken(token)
-                                        .doOnSuccess(claims ->
-                                                redisTemplate.opsForValue()
-                                                        .set(TOKEN_CACHE_PREFIX + token,
-                                                                "valid",
-                                                                Duration.ofMillis(jwtExpiration))
-                                                        .subscribe()
-                                        );
-                            });
-                });
+        String hash = TokenRevocationRegistry.hash(token);
+        VerifiedToken cached;
+        synchronized (verifiedTokens) {
+            cached = verifiedTokens.get(hash);
+        }
+        Mono<Claims> verified;
+        if (cached != null && cached.expiresAtMs > System.currentTimeMillis()) {
+            verified = Mono.just(cached.claims);
+        } else {
+            verified = parseToken(token).doOnNext(claims -> {
+                long expiresAtMs = claims.getExpiration() != null
+                        ? claims.getExpiration().getTime() : System.currentTimeMillis() + jwtExpiration;
+                synchronized (verifiedTokens) {
+                    verifiedTokens.put(hash, new VerifiedToken(claims, expiresAtMs));
+                }
+            });
+        }
+        return verified.flatMap(claims -> revocations.isRevoked(claims, token)
+                ? Mono.error(new RuntimeException("Token is blacklisted"))
+                : Mono.just(claims));
     }
 
     private Mono<Claims> parseToken(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(keyPair.getPublic())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return Mono.just(claims);
+            return Mono.just(parser.parseClaimsJws(token).getBody());
         } catch (Exception e) {
             return Mono.error(e);
         }
     }
 
     public void blacklistToken(String token) {
-        // 将令牌添加到黑名单，保持与原令牌相同的过期时间
-        redisTemplate.opsForValue()
-                .set(TOKEN_BLACKLIST_PREFIX + token,
-                        "blacklisted",
-                        Duration.ofMillis(jwtExpiration))
-                .subscribe();
-
-        // 如果存在，则从有效缓存中删除
-        redisTemplate.delete(TOKEN_CACHE_PREFIX + token).subscribe();
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            // Invalid or expired tokens are rejected anyway
+            return;
+        }
+        revocations.revoke(claims, token);
+    }
+
+    /**
+     * Revokes every token issued to {@code username} so far, on all nodes.
+     */
+    public Mono<Void> revokeAllTokens(String username) {
+        return revocations.revokeAll(username);
     }
 
     public List<GrantedAuthority> getAuthorities(Claims claims) {
@@ -112,23 +141,17 @@ public class JwtService {
     }
 
     // 为特定用户和角色生成带有自定义过期时间的令牌
-    public String generateTokenWithCustomExpiration(String username, List<String> roles, long customExpirationMs) {
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + customExpirationMs);
-
-        String token = Jwts.builder()
-                .setSubject(username)
-                .claim("roles", roles)
-                .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(keyPair.getPrivate())
-                .compact();
+    public Mono<String> generateTokenWithCustomExpiration(String username, List<String> roles, long customExpirationMs) {
+        return buildToken(username, roles, customExpirationMs);
+    }
 
-        // 缓存有效令牌，使用自定义过期时间
-        redisTemplate.opsForValue()
-                .set(TOKEN_CACHE_PREFIX + token, "valid", Duration.ofMillis(customExpirationMs))
-                .subscribe();
+    private static final class VerifiedToken {
+        private final Claims claims;
+        private final long expiresAtMs;
 
-        return token;
+        private VerifiedToken(Claims claims, long expiresAtMs) {
+            this.claims = claims;
+            this.expiresAtMs = expiresAtMs;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.example.miniproject.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks on a fixed set of single-threaded lanes chosen by key hash. Tasks for the same
+ * key always land on the same lane and run in submission order, while different keys run in
+ * parallel. Used by the Kafka listener to spread one partition's poll over all cores without
+ * reordering events of a session.
+ * <p>
+ * Lane queues are unbounded; callers are expected to wait for their tasks (the listener waits
+ * for the whole poll), which bounds the backlog to one poll per consumer thread.
+ */
+@Component
+public class KeyedExecutor {
+
+    @Value("${session.events.processing.lanes:0}")
+    private int configuredLanes;
+
+    private ExecutorService[] lanes;
+
+    @PostConstruct
+    public void start() {
+        int count = configuredLanes > 0 ? configuredLanes : Runtime.getRuntime().availableProcessors();
+        lanes = new ExecutorService[count];
+        AtomicInteger threadIndex = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "session-lane-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    public int laneFor(String key) {
+        return Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    public <T> CompletableFuture<T> submit(int lane, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, lanes[lane]);
+    }
+}
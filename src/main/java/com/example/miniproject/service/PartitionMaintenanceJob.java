@@ -0,0 +1,105 @@
+package com.example.miniproject.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the daily partitions of {@code session_events} in shape: creates partitions
+ * {@code premake-days} ahead, and retires whole partitions once they are past retention
+ * instead of deleting rows. With {@code require-archive} a partition is only dropped after the
+ * retention tiering job has archived past its upper bound.
+ * <p>
+ * Partitions are named {@code session_events_pYYYYMMDD} and cover {@code [day, day + 1)} in the
+ * same wall-clock time the rows are written in (the JVM default zone).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "session.events.partitioning.enabled", havingValue = "true")
+public class PartitionMaintenanceJob {
+
+    private static final String PARTITION_PREFIX = "session_events_p";
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${session.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${session.events.partitioning.premake-days:3}")
+    private int premakeDays;
+
+    @Value("${session.events.partitioning.require-archive:true}")
+    private boolean requireArchive;
+
+    @Scheduled(fixedDelayString = "${session.events.partitioning.interval-ms:3600000}")
+    public void maintain() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= premakeDays; i++) {
+            createPartition(today.plusDays(i));
+        }
+        dropExpiredPartitions(today.minusDays(retentionDays));
+    }
+
+    private void createPartition(LocalDate day) {
+        String name = PARTITION_PREFIX + SUFFIX_FORMAT.format(day);
+        try {
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF session_events FOR VALUES FROM ('%s') TO ('%s')",
+                    name, day, day.plusDays(1)));
+        } catch (DataAccessException e) {
+            // Typically rows for that day already sit in the default partition
+            log.error("Error creating partition {}: {}", name, e.getMessage());
+        }
+    }
+
+    private void dropExpiredPartitions(LocalDate retentionStart) {
+        LocalDateTime archivedUpTo = requireArchive ? archivedUpTo() : LocalDateTime.MAX;
+
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid" +
+                        " WHERE i.inhparent = 'session_events'::regclass AND c.relname LIKE ?",
+                String.class, PARTITION_PREFIX + "%");
+
+        for (String name : partitions) {
+            LocalDate day;
+            try {
+                day = LocalDate.parse(name.substring(PARTITION_PREFIX.length()), SUFFIX_FORMAT);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            LocalDate upperBound = day.plusDays(1);
+            if (upperBound.isAfter(retentionStart) || archivedUpTo.isBefore(upperBound.atStartOfDay())) {
+                continue;
+            }
+            try {
+                // Not CONCURRENTLY: Postgres refuses that while the table has a default partition. The
+                // ACCESS EXCLUSIVE lock on the parent is only held for the catalog update
+                jdbcTemplate.execute("ALTER TABLE session_events DETACH PARTITION " + name);
+                jdbcTemplate.execute("DROP TABLE " + name);
+                log.info("Dropped expired partition {}", name);
+            } catch (DataAccessException e) {
+                log.error("Error dropping partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private LocalDateTime archivedUpTo() {
+        List<Timestamp> rows = jdbcTemplate.queryForList(
+                "SELECT last_timestamp FROM archive_checkpoints WHERE job = ?",
+                Timestamp.class, RetentionTieringJob.JOB_NAME);
+        return rows.isEmpty() ? LocalDateTime.MIN : rows.get(0).toLocalDateTime();
+    }
+}
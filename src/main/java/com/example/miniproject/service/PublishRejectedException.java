@@ -0,0 +1,11 @@
+package com.example.miniproject.service;
+
+/**
+ * Thrown when an event is refused before reaching Kafka because the producer is saturated.
+ */
+public class PublishRejectedException extends RuntimeException {
+
+    public PublishRejectedException(String message) {
+        super(message);
+    }
+}
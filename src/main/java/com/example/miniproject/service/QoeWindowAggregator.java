@@ -0,0 +1,247 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QoeWindow;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Event-time QoE windows over the consumed stream, keyed by region and content.
+ * <p>
+ * Events are counted into {@code pane-ms} panes; each configured window size is served both as
+ * a sliding window (the panes up to the newest one, re-published every tick) and as tumbling
+ * windows, published once when closed. The watermark trails the newest event time by
+ * {@code allowed-lateness-ms}; panes behind it are final, and events that would fall into them
+ * are dropped and counted as late. Each instance only sees the partitions assigned to it.
+ * <p>
+ * Active sessions are counted exactly up to {@code exact-sessions} per pane and key, and
+ * estimated with a {@link HyperLogLog} beyond that, so a busy pane stays small.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QoeWindowAggregator implements IngestObserver {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.qoe.pane-ms:10000}")
+    private long paneMs;
+
+    @Value("${session.qoe.window-ms:10000,60000,300000}")
+    private long[] windowMs;
+
+    @Value("${session.qoe.allowed-lateness-ms:5000}")
+    private long allowedLatenessMs;
+
+    @Value("${session.qoe.exact-sessions:64}")
+    private int exactSessions;
+
+    @Value("${session.qoe.sessions-precision:10}")
+    private int sessionsPrecision;
+
+    private final Sinks.Many<QoeWindow> sink = Sinks.many().multicast().directBestEffort();
+    // Pane start (epoch millis) -> region/content key -> stats
+    private final TreeMap<Long, Map<String, PaneStats>> panes = new TreeMap<>();
+    private long maxEventTimeMs = Long.MIN_VALUE;
+    // Per window size, end of the last tumbling window published
+    private long[] lastClosedEnd;
+    private long maxWindowMs;
+    private Counter lateEvents;
+
+    @PostConstruct
+    public void init() {
+        for (long size : windowMs) {
+            if (size <= 0 || size % paneMs != 0) {
+                throw new IllegalStateException("QoE window " + size + " ms is not a multiple of the pane size");
+            }
+        }
+        lastClosedEnd = new long[windowMs.length];
+        Arrays.fill(lastClosedEnd, Long.MIN_VALUE);
+        maxWindowMs = Arrays.stream(windowMs).max().orElse(paneMs);
+        lateEvents = Counter.builder("session.qoe.late.events").register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void onEventsStored(List<SessionEvent> events) {
+        // Clock skew must not drag the watermark into the future and make everything late
+        long maxAcceptedMs = System.currentTimeMillis() + allowedLatenessMs;
+        for (SessionEvent event : events) {
+            long time = event.getTimestamp().toEpochMilli();
+            maxEventTimeMs = Math.max(maxEventTimeMs, Math.min(time, maxAcceptedMs));
+            long pane = Math.floorDiv(time, paneMs) * paneMs;
+            if (pane + paneMs <= watermark()) {
+                lateEvents.increment();
+                continue;
+            }
+            String key = event.getRegion() + '\u0000' + event.getContentId();
+            panes.computeIfAbsent(pane, p -> new HashMap<>())
+                    .computeIfAbsent(key, k -> newStats(event.getRegion(), event.getContentId()))
+                    .add(event);
+        }
+    }
+
+    /**
+     * Live feed of window updates; slow subscribers miss updates rather than holding up others.
+     */
+    public Flux<QoeWindow> stream() {
+        return sink.asFlux();
+    }
+
+    @Scheduled(fixedDelayString = "${session.qoe.publish-interval-ms:1000}")
+    public void publish() {
+        List<QoeWindow> updates = new ArrayList<>();
+        synchronized (this) {
+            if (maxEventTimeMs == Long.MIN_VALUE) {
+                return;
+            }
+            long watermark = watermark();
+            long currentPaneEnd = Math.floorDiv(maxEventTimeMs, paneMs) * paneMs + paneMs;
+            for (int i = 0; i < windowMs.length; i++) {
+                long size = windowMs[i];
+                collect(updates, "sliding", size, currentPaneEnd - size, currentPaneEnd, false);
+
+                long closedEnd = Math.floorDiv(watermark, size) * size;
+                // On startup only the latest closed window is published, not the whole history
+                long end = lastClosedEnd[i] == Long.MIN_VALUE ? closedEnd : lastClosedEnd[i] + size;
+                for (; end <= closedEnd; end += size) {
+                    collect(updates, "tumbling", size, end - size, end, true);
+                }
+                lastClosedEnd[i] = Math.max(lastClosedEnd[i], closedEnd);
+            }
+            panes.headMap(watermark - maxWindowMs - paneMs).clear();
+        }
+        for (QoeWindow update : updates) {
+            sink.tryEmitNext(update);
+        }
+    }
+
+    private long watermark() {
+        return maxEventTimeMs == Long.MIN_VALUE ? Long.MIN_VALUE : maxEventTimeMs - allowedLatenessMs;
+    }
+
+    private void collect(List<QoeWindow> updates, String type, long size, long start, long end, boolean closed) {
+        Map<String, PaneStats> merged = new HashMap<>();
+        for (Map<String, PaneStats> pane : panes.subMap(start, end).values()) {
+            pane.forEach((key, stats) ->
+                    merged.computeIfAbsent(key, k -> newStats(stats.region, stats.contentId)).merge(stats));
+        }
+        for (PaneStats stats : merged.values()) {
+            QoeWindow window = stats.toWindow();
+            window.setType(type);
+            window.setSizeMs(size);
+            window.setStart(Instant.ofEpochMilli(start));
+            window.setEnd(Instant.ofEpochMilli(end));
+            window.setClosed(closed);
+            updates.add(window);
+        }
+    }
+
+    private PaneStats newStats(String region, String contentId) {
+        return new PaneStats(region, contentId, exactSessions, sessionsPrecision);
+    }
+
+    private static final class PaneStats {
+        private final String region;
+        private final String contentId;
+        private final int exactSessions;
+        private final int sessionsPrecision;
+        // Exact until it outgrows exactSessions, then replaced by the sketch
+        private Set<String> sessions = new HashSet<>();
+        private HyperLogLog sessionSketch;
+        private long events;
+        private long errors;
+        private long startupTimeSum;
+        private long startupTimeCount;
+        private double bufferingRatioSum;
+        private long bufferingRatioCount;
+
+        private PaneStats(String region, String contentId, int exactSessions, int sessionsPrecision) {
+            this.region = region;
+            this.contentId = contentId;
+            this.exactSessions = exactSessions;
+            this.sessionsPrecision = sessionsPrecision;
+        }
+
+        private void add(SessionEvent event) {
+            events++;
+            addSession(event.getSessionId());
+            QualityMetrics metrics = event.getMetrics();
+            if (metrics == null) {
+                return;
+            }
+            if (metrics.getErrorCount() != null) {
+                errors += metrics.getErrorCount();
+            }
+            if (metrics.getStartupTimeMs() != null) {
+                startupTimeSum += metrics.getStartupTimeMs();
+                startupTimeCount++;
+            }
+            if (metrics.getBufferingRatio() != null) {
+                bufferingRatioSum += metrics.getBufferingRatio();
+                bufferingRatioCount++;
+            }
+        }
+
+        private void merge(PaneStats other) {
+            events += other.events;
+            if (other.sessionSketch != null) {
+                toSketch();
+                sessionSketch.merge(other.sessionSketch);
+            } else {
+                other.sessions.forEach(this::addSession);
+            }
+            errors += other.errors;
+            startupTimeSum += other.startupTimeSum;
+            startupTimeCount += other.startupTimeCount;
+            bufferingRatioSum += other.bufferingRatioSum;
+            bufferingRatioCount += other.bufferingRatioCount;
+        }
+
+        private void addSession(String sessionId) {
+            if (sessionSketch != null) {
+                sessionSketch.add(sessionId);
+            } else if (sessions.add(sessionId) && sessions.size() > exactSessions) {
+                toSketch();
+            }
+        }
+
+        private void toSketch() {
+            if (sessionSketch == null) {
+                sessionSketch = new HyperLogLog(sessionsPrecision);
+                sessions.forEach(sessionSketch::add);
+                sessions = null;
+            }
+        }
+
+        private QoeWindow toWindow() {
+            QoeWindow window = new QoeWindow();
+            window.setRegion(region);
+            window.setContentId(contentId);
+            window.setEvents(events);
+            window.setActiveSessions(sessionSketch != null ? sessionSketch.estimate() : sessions.size());
+            window.setErrorRate(events > 0 ? (double) errors / events : 0.0);
+            window.setAverageStartupTimeMs(startupTimeCount > 0 ? (double) startupTimeSum / startupTimeCount : 0.0);
+            window.setAverageBufferingRatio(bufferingRatioCount > 0 ? bufferingRatioSum / bufferingRatioCount : 0.0);
+            return window;
+        }
+    }
+}
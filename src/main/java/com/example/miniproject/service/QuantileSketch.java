@@ -0,0 +1,188 @@
+package com.example.miniproject.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Mergeable quantile sketch for non-negative metrics (DDSketch style): values are counted in
+ * logarithmic buckets {@code (gamma^(i-1), gamma^i]}, so any quantile is returned within
+ * {@link #RELATIVE_ACCURACY} of the true value, and merging two sketches is adding their counts.
+ * <p>
+ * Counts are kept densely between the lowest and highest bucket seen, capped at
+ * {@link #MAX_BUCKETS}; beyond that the lowest buckets are folded together, which only costs
+ * accuracy at the very bottom of the range. Real sessions touch a few dozen buckets, and the
+ * serialized form stores only non-empty buckets as varints. Not thread-safe.
+ */
+public final class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    static final int MAX_BUCKETS = 1024;
+
+    private static final byte VERSION = 1;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final long[] EMPTY = new long[0];
+
+    private long count;
+    private long zeroCount;
+    private long[] counts = EMPTY;
+    // Bucket index of counts[0]
+    private int offset;
+
+    public void add(long value) {
+        if (value <= 0) {
+            zeroCount++;
+        } else {
+            increment((int) Math.ceil(Math.log(value) / LOG_GAMMA), 1);
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.counts.length > 0) {
+            // Size the range once up front rather than growing bucket by bucket
+            increment(other.offset, 0);
+            increment(other.offset + other.counts.length - 1, 0);
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    increment(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the estimated value at quantile {@code q} (0..1), or 0 for an empty sketch.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0.0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return bucketValue(offset + i);
+            }
+        }
+        return bucketValue(offset + counts.length - 1);
+    }
+
+    private static double bucketValue(int index) {
+        // Midpoint in relative terms, so the error is at most RELATIVE_ACCURACY either way
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    private void increment(int index, long n) {
+        if (counts.length == 0) {
+            counts = new long[1];
+            offset = index;
+        }
+        int max = offset + counts.length - 1;
+        if (index < offset || index > max) {
+            resize(Math.min(offset, index), Math.max(max, index));
+        }
+        counts[Math.max(index, offset) - offset] += n;
+    }
+
+    private void resize(int min, int max) {
+        min = Math.max(min, max - MAX_BUCKETS + 1);
+        long[] resized = new long[max - min + 1];
+        for (int i = 0; i < counts.length; i++) {
+            resized[Math.max(offset + i, min) - min] += counts[i];
+        }
+        counts = resized;
+        offset = min;
+    }
+
+    /**
+     * Layout: version | zero count | non-empty bucket count | (index delta, count)*, all varints.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        out.write(VERSION);
+        writeVarLong(out, zeroCount);
+        int nonEmpty = 0;
+        for (long c : counts) {
+            nonEmpty += c != 0 ? 1 : 0;
+        }
+        writeVarLong(out, nonEmpty);
+        int previous = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                int index = offset + i;
+                long delta = index - previous;
+                writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                writeVarLong(out, counts[i]);
+                previous = index;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a sketch written by {@link #toBytes()}; null or empty input gives an empty sketch.
+     */
+    public static QuantileSketch fromBytes(byte[] data) {
+        QuantileSketch sketch = new QuantileSketch();
+        if (data == null || data.length == 0) {
+            return sketch;
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch version " + version);
+        }
+        sketch.zeroCount = readVarLong(in);
+        sketch.count = sketch.zeroCount;
+        int nonEmpty = (int) readVarLong(in);
+        int[] indexes = new int[nonEmpty];
+        long[] bucketCounts = new long[nonEmpty];
+        int index = 0;
+        for (int i = 0; i < nonEmpty; i++) {
+            long raw = readVarLong(in);
+            index += (int) ((raw >>> 1) ^ -(raw & 1));
+            indexes[i] = index;
+            bucketCounts[i] = readVarLong(in);
+        }
+        if (nonEmpty > 0) {
+            sketch.increment(indexes[0], 0);
+            sketch.increment(indexes[nonEmpty - 1], 0);
+        }
+        for (int i = 0; i < nonEmpty; i++) {
+            sketch.increment(indexes[i], bucketCounts[i]);
+            sketch.count += bucketCounts[i];
+        }
+        return sketch;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in sketch");
+    }
+}
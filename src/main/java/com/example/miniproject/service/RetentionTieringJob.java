@@ -0,0 +1,200 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves rows older than the retention period from {@code session_events} to S3.
+ * <p>
+ * Each run walks old rows in {@code (timestamp, id)} keyset order, one chunk at a time: the
+ * chunk is written as archive segments, and only after every upload is confirmed are its rows
+ * deleted (in bounded batches) and the checkpoint advanced, in one transaction. Segment keys are
+ * derived from the chunk, so a chunk replayed after a crash overwrites its own objects instead of
+ * duplicating them. Runs are capped in rows, pause between chunks and back off while the archive
+ * uploader is busy, so the job stays out of the way of live ingest.
+ * <p>
+ * When {@code session_events} is partitioned the job only archives and checkpoints; the rows
+ * go away with their partition in {@link PartitionMaintenanceJob}. Once a run finds nothing left
+ * to archive, the checkpoint moves up to its cutoff, so partitions that held no rows past the
+ * last archived one can still be dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetentionTieringJob {
+
+    static final String JOB_NAME = "session-events-tiering";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchiveWriter archiveWriter;
+
+    @Value("${session.retention-days:7}")
+    private int retentionDays;
+
+    // Partitioned tables are retired a whole partition at a time by PartitionMaintenanceJob
+    @Value("${session.events.partitioning.enabled:false}")
+    private boolean partitioned;
+
+    @Value("${session.tiering.enabled:true}")
+    private boolean enabled;
+
+    @Value("${session.tiering.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${session.tiering.delete-batch-size:1000}")
+    private int deleteBatchSize;
+
+    @Value("${session.tiering.max-rows-per-run:200000}")
+    private int maxRowsPerRun;
+
+    @Value("${session.tiering.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${session.tiering.max-upload-backlog:4}")
+    private int maxUploadBacklog;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(fixedDelayString = "${session.tiering.interval-ms:600000}",
+            initialDelayString = "${session.tiering.initial-delay-ms:60000}")
+    public void run() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            tierOldEvents();
+        } catch (Exception e) {
+            log.error("Retention tiering run failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void tierOldEvents() throws InterruptedException {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
+        Checkpoint checkpoint = loadCheckpoint();
+        int moved = 0;
+
+        while (moved < maxRowsPerRun) {
+            if (archiveWriter.uploadBacklog() > maxUploadBacklog) {
+                log.info("Archive uploader busy, pausing retention tiering");
+                break;
+            }
+
+            List<SessionEvent> chunk = jdbcTemplate.query(
+                    "SELECT " + SessionEventRowMapper.COLUMNS + " FROM session_events" +
+                            " WHERE timestamp < ? AND timestamp >= ? AND (timestamp, id) > (?, ?)" +
+                            " ORDER BY timestamp, id LIMIT ?",
+                    SessionEventRowMapper.INSTANCE,
+                    cutoff, checkpoint.timestamp, checkpoint.timestamp, checkpoint.id,
+                    Math.min(chunkSize, maxRowsPerRun - moved));
+            if (chunk.isEmpty()) {
+                if (!partitioned) {
+                    // Pass complete: start the next one from the beginning to pick up late rows
+                    saveCheckpoint(new Checkpoint(new Timestamp(0), 0L));
+                } else if (checkpoint.timestamp.before(cutoff)) {
+                    // Everything before the cutoff is archived, even after a quiet period with no
+                    // rows; late events never enter the table, so nothing lands behind it later
+                    saveCheckpoint(new Checkpoint(cutoff, 0L));
+                }
+                break;
+            }
+
+            archive(chunk);
+            SessionEvent last = chunk.get(chunk.size() - 1);
+            Checkpoint next = new Checkpoint(Timestamp.from(last.getTimestamp()), last.getId());
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!partitioned) {
+                    deleteRows(chunk);
+                }
+                saveCheckpoint(next);
+            });
+
+            checkpoint = next;
+            moved += chunk.size();
+            Thread.sleep(pauseMs);
+        }
+
+        if (moved > 0) {
+            log.info("Moved {} events older than {} to S3", moved, cutoff);
+        }
+    }
+
+    private void archive(List<SessionEvent> chunk) {
+        Map<String, List<SessionEvent>> segments = new LinkedHashMap<>();
+        for (SessionEvent event : chunk) {
+            Instant hour = event.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+            String region = ArchiveWriter.regionOf(event);
+            segments.computeIfAbsent(region + '\u0000' + hour, k -> new ArrayList<>()).add(event);
+        }
+
+        List<CompletableFuture<String>> uploads = new ArrayList<>(segments.size());
+        for (List<SessionEvent> events : segments.values()) {
+            SessionEvent first = events.get(0);
+            String name = "tier-" + first.getId() + "-" + events.get(events.size() - 1).getId();
+            uploads.add(archiveWriter.writeSegment(ArchiveWriter.segmentKey(ArchiveWriter.regionOf(first),
+                    first.getTimestamp().truncatedTo(ChronoUnit.HOURS), name), events));
+        }
+        // Throws if any upload failed, leaving the rows and checkpoint untouched
+        CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void deleteRows(List<SessionEvent> chunk) {
+        for (int start = 0; start < chunk.size(); start += deleteBatchSize) {
+            List<SessionEvent> batch = chunk.subList(start, Math.min(chunk.size(), start + deleteBatchSize));
+            Long[] ids = batch.stream().map(SessionEvent::getId).toArray(Long[]::new);
+            // Chunks are in timestamp order; the range lets the planner prune partitions
+            Timestamp from = Timestamp.from(batch.get(0).getTimestamp());
+            Timestamp to = Timestamp.from(batch.get(batch.size() - 1).getTimestamp());
+            jdbcTemplate.update("DELETE FROM session_events WHERE id = ANY (?) AND timestamp BETWEEN ? AND ?",
+                    ps -> {
+                        ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids));
+                        ps.setTimestamp(2, from);
+                        ps.setTimestamp(3, to);
+                    });
+        }
+    }
+
+    private Checkpoint loadCheckpoint() {
+        List<Checkpoint> rows = jdbcTemplate.query(
+                "SELECT last_timestamp, last_id FROM archive_checkpoints WHERE job = ?",
+                (rs, rowNum) -> new Checkpoint(rs.getTimestamp("last_timestamp"), rs.getLong("last_id")),
+                JOB_NAME);
+        return rows.isEmpty() ? new Checkpoint(new Timestamp(0), 0L) : rows.get(0);
+    }
+
+    private void saveCheckpoint(Checkpoint checkpoint) {
+        jdbcTemplate.update("INSERT INTO archive_checkpoints (job, last_timestamp, last_id, updated_at)" +
+                        " VALUES (?, ?, ?, now())" +
+                        " ON CONFLICT (job) DO UPDATE SET last_timestamp = EXCLUDED.last_timestamp," +
+                        " last_id = EXCLUDED.last_id, updated_at = EXCLUDED.updated_at",
+                JOB_NAME, checkpoint.timestamp, checkpoint.id);
+    }
+
+    private static final class Checkpoint {
+        private final Timestamp timestamp;
+        private final long id;
+
+        private Checkpoint(Timestamp timestamp, long id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a {@code session_events} row, keeping NULL metrics as null instead of 0.
+ */
+public class SessionEventRowMapper implements RowMapper<SessionEvent> {
+
+    public static final SessionEventRowMapper INSTANCE = new SessionEventRowMapper(null);
+
+    public static final String COLUMNS = "id, session_id, event_type, timestamp, startup_time_ms, " +
+            "buffering_duration_ms, bitrate, buffering_ratio, error_count, device_type, region, content_id";
+
+    /** Everything but {@code session_id}, for queries that already filter on one session. */
+    public static final String SESSION_COLUMNS = "id, event_type, timestamp, startup_time_ms, " +
+            "buffering_duration_ms, bitrate, buffering_ratio, error_count, device_type, region, content_id";
+
+    private final String sessionId;
+
+    private SessionEventRowMapper(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Mapper for {@link #SESSION_COLUMNS} rows that fills in the known session ID.
+     */
+    public static SessionEventRowMapper forSession(String sessionId) {
+        return new SessionEventRowMapper(sessionId);
+    }
+
+    @Override
+    public SessionEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        SessionEvent event = new SessionEvent();
+        event.setId(rs.getLong("id"));
+        event.setSessionId(sessionId != null ? sessionId : rs.getString("session_id"));
+        event.setEventType(rs.getString("event_type"));
+        event.setTimestamp(rs.getTimestamp("timestamp").toInstant());
+        event.setDeviceType(rs.getString("device_type"));
+        event.setRegion(rs.getString("region"));
+        event.setContentId(rs.getString("content_id"));
+
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setStartupTimeMs(rs.getObject("startup_time_ms", Long.class));
+        metrics.setBufferingDurationMs(rs.getObject("buffering_duration_ms", Long.class));
+        metrics.setBitrate(rs.getObject("bitrate", Integer.class));
+        metrics.setBufferingRatio(rs.getObject("buffering_ratio", Double.class));
+        metrics.setErrorCount(rs.getObject("error_count", Integer.class));
+
+        event.setMetrics(metrics);
+        return event;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.EventQuery;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache of per-session API responses (analytics and event pages).
+ * <p>
+ * The local tier is an LRU bounded by {@code local-max-bytes}, entries weighed by their JSON
+ * size; behind it, every node shares one Redis hash per session expiring after
+ * {@code redis-ttl-ms}. Concurrent misses for the same response wait for a single load. When the
+ * consumer stores events of a session, its Redis hash is deleted and the session is announced on
+ * a pub/sub channel so every node drops its local entries. A load that overlaps an invalidation
+ * on this node is not cached; one racing an invalidation from another node may leave a stale
+ * Redis entry until it expires. Local entries expire after {@code redis-ttl-ms} too, and the
+ * whole local tier is dropped when the channel fails, since invalidations published while it
+ * resubscribes are lost.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionResponseCache implements IngestObserver {
+
+    static final String CHANNEL = "response-cache:invalidations";
+    private static final String KEY_PREFIX = "response-cache:";
+    private static final int STRIPES = 4096;
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${session.response-cache.local-max-bytes:67108864}")
+    private long localMaxBytes;
+
+    @Value("${session.response-cache.max-entry-bytes:1048576}")
+    private int maxEntryBytes;
+
+    @Value("${session.response-cache.redis-ttl-ms:300000}")
+    private long redisTtlMs;
+
+    // Event pages above this limit are streamed rather than collected for caching
+    @Value("${session.response-cache.max-event-limit:1000}")
+    private int maxEventLimit;
+
+    @Value("${session.retention-days:7}")
+    private int retentionDays;
+
+    // Access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> local = new LinkedHashMap<>(1024, 0.75f, true);
+    private final Map<String, Set<String>> localKeysBySession = new HashMap<>();
+    private long localBytes;
+    // Bumped under the local lock by every invalidation of a session in the stripe; a load only
+    // caches its result if its stripe has not moved since the load started
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final Map<String, Sinks.One<Object>> loading = new ConcurrentHashMap<>();
+
+    private JavaType analyticsType;
+    private JavaType eventsType;
+    private Disposable subscription;
+    private Counter localHits;
+    private Counter redisHits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter invalidations;
+    private Timer loadTime;
+
+    @PostConstruct
+    public void init() {
+        analyticsType = objectMapper.constructType(SessionAnalytics.class);
+        eventsType = objectMapper.getTypeFactory().constructCollectionType(List.class, SessionEvent.class);
+
+        localHits = Counter.builder("session.response.cache.hits").tag("tier", "local").register(meterRegistry);
+        redisHits = Counter.builder("session.response.cache.hits").tag("tier", "redis").register(meterRegistry);
+        misses = Counter.builder("session.response.cache.misses").register(meterRegistry);
+        evictions = Counter.builder("session.response.cache.evictions").register(meterRegistry);
+        invalidations = Counter.builder("session.response.cache.invalidations").register(meterRegistry);
+        loadTime = Timer.builder("session.response.cache.load").register(meterRegistry);
+        Gauge.builder("session.response.cache.bytes", this, c -> c.localStats(true)).register(meterRegistry);
+        Gauge.builder("session.response.cache.entries", this, c -> c.localStats(false)).register(meterRegistry);
+
+        subscription = redisTemplate.listenToChannel(CHANNEL)
+                .doOnNext(message -> invalidateLocal(List.of(message.getMessage().split("\n"))))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> {
+                            log.warn("Response cache channel failed, resubscribing: {}", signal.failure().getMessage());
+                            invalidateAllLocal();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscription.dispose();
+    }
+
+    public Mono<SessionAnalytics> analytics(String sessionId, Supplier<Mono<SessionAnalytics>> loader) {
+        return get(sessionId, "analytics", analyticsType, loader);
+    }
+
+    /**
+     * A page of events, cached as a whole unless its limit is above {@code max-event-limit}. A
+     * page without {@code from} starts at the retention cutoff, which moves, so the cutoff is part
+     * of its key to the minute and rows that aged out stop being served within a minute.
+     */
+    public Flux<SessionEvent> events(String sessionId, EventQuery query, Supplier<Flux<SessionEvent>> loader) {
+        if (query.getLimit() != null && query.getLimit() > maxEventLimit) {
+            return Flux.defer(loader);
+        }
+        Instant from = query.getFrom() != null ? query.getFrom()
+                : Instant.now().minus(retentionDays, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MINUTES);
+        String key = "events|" + nullToEmpty(query.getEventType()) + '|' + from + '|'
+                + nullToEmpty(query.getTo()) + '|' + nullToEmpty(query.getBeforeTimestamp()) + '|'
+                + nullToEmpty(query.getBeforeId()) + '|' + nullToEmpty(query.getLimit());
+        return this.<List<SessionEvent>>get(sessionId, key, eventsType,
+                        () -> loader.get().collectList().map(Collections::unmodifiableList))
+                .flatMapIterable(events -> events);
+    }
+
+    @Override
+    public void onEventsStored(List<SessionEvent> events) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> sessions = new LinkedHashSet<>();
+        for (SessionEvent event : events) {
+            sessions.add(event.getSessionId());
+        }
+        invalidateLocal(sessions);
+        String[] keys = sessions.stream().map(sessionId -> KEY_PREFIX + sessionId).toArray(String[]::new);
+        // Issued together, so both commands share one round trip on the connection
+        Mono.when(redisTemplate.delete(keys), redisTemplate.convertAndSend(CHANNEL, String.join("\n", sessions)))
+                .subscribe(null, e -> log.warn("Error invalidating cached responses: {}", e.getMessage()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> get(String sessionId, String key, JavaType type, Supplier<Mono<T>> loader) {
+        if (!enabled) {
+            return Mono.defer(loader);
+        }
+        return Mono.defer(() -> {
+            String localKey = sessionId + '\u0000' + key;
+            synchronized (local) {
+                Entry entry = local.get(localKey);
+                if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+                    localHits.increment();
+                    return Mono.just((T) entry.value);
+                }
+                if (entry != null) {
+                    local.remove(localKey);
+                    localBytes -= entry.weight;
+                    unindex(sessionId, localKey);
+                }
+            }
+            Sinks.One<Object> sink = Sinks.one();
+            Sinks.One<Object> pending = loading.putIfAbsent(localKey, sink);
+            if (pending != null) {
+                return pending.asMono().map(value -> (T) value);
+            }
+            load(sessionId, key, localKey, type, (Supplier<Mono<Object>>) (Supplier<?>) loader, sink);
+            // The load runs to completion even if this caller cancels, as others may be waiting
+            return sink.asMono().map(value -> (T) value);
+        });
+    }
+
+    private void load(String sessionId, String key, String localKey, JavaType type,
+                      Supplier<Mono<Object>> loader, Sinks.One<Object> sink) {
+        long generation = generations.get(stripe(sessionId));
+        String redisKey = KEY_PREFIX + sessionId;
+        redisTemplate.<String, String>opsForHash().get(redisKey, key)
+                .flatMap(json -> Mono.fromCallable(() -> new Loaded(objectMapper.readValue(json, type), json.length())))
+                .doOnNext(loaded -> redisHits.increment())
+                .onErrorResume(e -> {
+                    log.warn("Error reading cached response for session {}: {}", sessionId, e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    misses.increment();
+                    long start = System.nanoTime();
+                    return loader.get()
+                            .doOnNext(value -> loadTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                            .map(value -> storeRemote(sessionId, redisKey, key, value, generation));
+                }))
+                .subscribe(loaded -> {
+                    if (loaded.weight <= maxEntryBytes) {
+                        putLocal(sessionId, localKey, loaded, generation);
+                    }
+                    loading.remove(localKey, sink);
+                    sink.tryEmitValue(loaded.value);
+                }, e -> {
+                    loading.remove(localKey, sink);
+                    sink.tryEmitError(e);
+                }, () -> {
+                    if (loading.remove(localKey, sink)) {
+                        sink.tryEmitEmpty();
+                    }
+                });
+    }
+
+    private Loaded storeRemote(String sessionId, String redisKey, String key, Object value, long generation) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            log.warn("Error serializing response for session {}: {}", sessionId, e.getMessage());
+            return new Loaded(value, Integer.MAX_VALUE);
+        }
+        if (json.length() <= maxEntryBytes && generations.get(stripe(sessionId)) == generation) {
+            Mono.when(redisTemplate.opsForHash().put(redisKey, key, json),
+                            redisTemplate.expire(redisKey, Duration.ofMillis(redisTtlMs)))
+                    .subscribe(null, e -> log.warn("Error caching response for session {}: {}",
+                            sessionId, e.getMessage()));
+        }
+        return new Loaded(value, json.length());
+    }
+
+    private void putLocal(String sessionId, String localKey, Loaded loaded, long generation) {
+        synchronized (local) {
+            if (generations.get(stripe(sessionId)) != generation) {
+                return;
+            }
+            Entry previous = local.put(localKey, new Entry(sessionId, loaded.value, loaded.weight,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(redisTtlMs)));
+            localBytes += loaded.weight - (previous != null ? previous.weight : 0);
+            localKeysBySession.computeIfAbsent(sessionId, s -> new HashSet<>()).add(localKey);
+            Iterator<Map.Entry<String, Entry>> eldest = local.entrySet().iterator();
+            while (localBytes > localMaxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> evicted = eldest.next();
+                eldest.remove();
+                localBytes -= evicted.getValue().weight;
+                unindex(evicted.getValue().sessionId, evicted.getKey());
+                evictions.increment();
+            }
+        }
+    }
+
+    private void invalidateLocal(Collection<String> sessions) {
+        synchronized (local) {
+            for (String sessionId : sessions) {
+                generations.incrementAndGet(stripe(sessionId));
+                Set<String> keys = localKeysBySession.remove(sessionId);
+                if (keys == null) {
+                    continue;
+                }
+                for (String localKey : keys) {
+                    Entry entry = local.remove(localKey);
+                    if (entry != null) {
+                        localBytes -= entry.weight;
+                    }
+                }
+            }
+        }
+        invalidations.increment(sessions.size());
+    }
+
+    /**
+     * Drops every local entry and bumps every stripe, so loads in flight are not cached either.
+     */
+    private void invalidateAllLocal() {
+        synchronized (local) {
+            for (int i = 0; i < STRIPES; i++) {
+                generations.incrementAndGet(i);
+            }
+            invalidations.increment(localKeysBySession.size());
+            local.clear();
+            localKeysBySession.clear();
+            localBytes = 0;
+        }
+    }
+
+    private void unindex(String sessionId, String localKey) {
+        Set<String> keys = localKeysBySession.get(sessionId);
+        if (keys != null && keys.remove(localKey) && keys.isEmpty()) {
+            localKeysBySession.remove(sessionId);
+        }
+    }
+
+    private double localStats(boolean bytes) {
+        synchronized (local) {
+            return bytes ? localBytes : local.size();
+        }
+    }
+
+    private static int stripe(String sessionId) {
+        return Math.floorMod(sessionId.hashCode(), STRIPES);
+    }
+
+    private static String nullToEmpty(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static final class Loaded {
+        private final Object value;
+        private final int weight;
+
+        private Loaded(Object value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Entry {
+        private final String sessionId;
+        private final Object value;
+        private final int weight;
+        private final long expiresAtNanos;
+
+        private Entry(String sessionId, Object value, int weight, long expiresAtNanos) {
+            this.sessionId = sessionId;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.transaction.Transactional;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Maintains {@code session_rollups}, one row of running totals and quantile sketches per
+ * session, so session analytics are a primary-key lookup instead of a scan of raw events.
+ * <p>
+ * {@code session_rollup_offsets} remembers, per session and Kafka partition, the offset of the
+ * last event folded in. Records of a partition are applied in offset order, so a redelivered
+ * record is recognised by an offset at or below that watermark and skipped. The watermark is
+ * kept per partition because hot sessions may be spread over several.
+ * <p>
+ * Raw rows are inserted idempotently (keyed by Kafka record) before their rollup is applied, so a
+ * poll retried after a rollup failure neither duplicates rows nor the rollup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SessionRollupService {
+
+    private static final String ROLLUP_COLUMNS = "event_count, startup_time_sum, startup_time_count, " +
+            "buffering_total, bitrate_sum, bitrate_count, error_total, startup_sketch, buffering_sketch, bitrate_sketch";
+
+    private static final String ENSURE_SQL = "INSERT INTO session_rollups (session_id, updated_at) " +
+            "VALUES (?, now()) ON CONFLICT (session_id) DO NOTHING";
+
+    // Totals are added; sketches are replaced with the merged copy read under the row lock
+    private static final String UPDATE_SQL = "UPDATE session_rollups SET event_count = event_count + ?, " +
+            "startup_time_sum = startup_time_sum + ?, startup_time_count = startup_time_count + ?, " +
+            "buffering_total = buffering_total + ?, bitrate_sum = bitrate_sum + ?, " +
+            "bitrate_count = bitrate_count + ?, error_total = error_total + ?, " +
+            "startup_sketch = ?, buffering_sketch = ?, bitrate_sketch = ?, " +
+            "region = COALESCE(region, ?), device_type = COALESCE(device_type, ?), " +
+            "content_id = COALESCE(content_id, ?), first_event_time = LEAST(first_event_time, ?), " +
+            "updated_at = now() WHERE session_id = ?";
+
+    private static final String REPLACE_SQL = "INSERT INTO session_rollups (session_id, " + ROLLUP_COLUMNS +
+            ", region, device_type, content_id, first_event_time, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now()) " +
+            "ON CONFLICT (session_id) DO UPDATE SET event_count = EXCLUDED.event_count, " +
+            "startup_time_sum = EXCLUDED.startup_time_sum, startup_time_count = EXCLUDED.startup_time_count, " +
+            "buffering_total = EXCLUDED.buffering_total, bitrate_sum = EXCLUDED.bitrate_sum, " +
+            "bitrate_count = EXCLUDED.bitrate_count, error_total = EXCLUDED.error_total, " +
+            "startup_sketch = EXCLUDED.startup_sketch, buffering_sketch = EXCLUDED.buffering_sketch, " +
+            "bitrate_sketch = EXCLUDED.bitrate_sketch, region = EXCLUDED.region, " +
+            "device_type = EXCLUDED.device_type, content_id = EXCLUDED.content_id, " +
+            "first_event_time = EXCLUDED.first_event_time, updated_at = EXCLUDED.updated_at";
+
+    private static final String WATERMARK_SQL = "INSERT INTO session_rollup_offsets " +
+            "(session_id, kafka_partition, last_offset) VALUES (?, ?, ?) " +
+            "ON CONFLICT (session_id, kafka_partition) DO UPDATE SET " +
+            "last_offset = GREATEST(session_rollup_offsets.last_offset, EXCLUDED.last_offset)";
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${session.events.query.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${session.retention-days:7}")
+    private int retentionDays;
+
+    /**
+     * Folds freshly stored records into their sessions' rollups, skipping any already applied.
+     */
+    @Transactional
+    public void apply(List<ConsumerRecord<String, SessionEvent>> records) {
+        // Sorted, so concurrent batches lock rollup rows in the same order
+        Map<String, List<ConsumerRecord<String, SessionEvent>>> bySession = new TreeMap<>();
+        for (ConsumerRecord<String, SessionEvent> record : records) {
+            bySession.computeIfAbsent(record.value().getSessionId(), id -> new ArrayList<>()).add(record);
+        }
+        String[] sessionIds = bySession.keySet().toArray(new String[0]);
+        List<Object[]> ensure = new ArrayList<>(sessionIds.length);
+        for (String sessionId : sessionIds) {
+            ensure.add(new Object[]{sessionId});
+        }
+        jdbcTemplate.batchUpdate(ENSURE_SQL, ensure);
+
+        // The row locks serialize consumers that share a session, including one still
+        // finishing a revoked partition
+        Map<String, Rollup> current = new HashMap<>();
+        jdbcTemplate.query("SELECT session_id, " + ROLLUP_COLUMNS + " FROM session_rollups" +
+                        " WHERE session_id = ANY (?) ORDER BY session_id FOR UPDATE",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", sessionIds)),
+                rs -> {
+                    current.put(rs.getString("session_id"), Rollup.fromRow(rs));
+                });
+
+        Map<String, Long> watermarks = new HashMap<>();
+        jdbcTemplate.query("SELECT session_id, kafka_partition, last_offset FROM session_rollup_offsets" +
+                        " WHERE session_id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", sessionIds)),
+                rs -> {
+                    watermarks.put(watermarkKey(rs.getString("session_id"), rs.getInt("kafka_partition")),
+                            rs.getLong("last_offset"));
+                });
+
+        List<Object[]> updates = new ArrayList<>(sessionIds.length);
+        Map<String, Object[]> newWatermarks = new LinkedHashMap<>();
+        bySession.forEach((sessionId, sessionRecords) -> {
+            Rollup delta = new Rollup();
+            Rollup merged = current.getOrDefault(sessionId, new Rollup());
+            for (ConsumerRecord<String, SessionEvent> record : sessionRecords) {
+                String key = watermarkKey(sessionId, record.partition());
+                Long watermark = watermarks.get(key);
+                if (watermark != null && record.offset() <= watermark) {
+                    continue;
+                }
+                delta.add(record.value());
+                merged.addToSketches(record.value());
+                newWatermarks.put(key, new Object[]{sessionId, record.partition(), record.offset()});
+            }
+            if (delta.totals.getEventCount() > 0) {
+                AnalyticsAccumulator totals = delta.totals;
+                updates.add(new Object[]{totals.getEventCount(), totals.getStartupTimeSum(),
+                        totals.getStartupTimeCount(), totals.getBufferingTotal(), totals.getBitrateSum(),
+                        totals.getBitrateCount(), totals.getErrorTotal(),
+                        merged.startupSketch.toBytes(), merged.bufferingSketch.toBytes(), merged.bitrateSketch.toBytes(),
+                        delta.region, delta.deviceType, delta.contentId, delta.firstEventTimestamp(), sessionId});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            jdbcTemplate.batchUpdate(WATERMARK_SQL, new ArrayList<>(newWatermarks.values()));
+        }
+    }
+
+    public Optional<SessionAnalytics> getAnalytics(String sessionId) {
+        List<SessionAnalytics> rows = jdbcTemplate.query("SELECT " + ROLLUP_COLUMNS +
+                        " FROM session_rollups WHERE session_id = ?",
+                (rs, rowNum) -> Rollup.fromRow(rs).toAnalytics(), sessionId);
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Merges the rollups of every session matching the given dimensions (null matches all) into
+     * one result, so per-region or per-content percentiles need no raw events. At least one
+     * dimension is required, since every matching row is read and deserialized; fleet-wide
+     * figures come from the analytics cube. Throws {@link IllegalArgumentException} otherwise.
+     */
+    public SessionAnalytics mergeAnalytics(String region, String deviceType, String contentId) {
+        if (region == null && deviceType == null && contentId == null) {
+            throw new IllegalArgumentException("At least one of region, deviceType or contentId is required");
+        }
+        StringBuilder sql = new StringBuilder("SELECT " + ROLLUP_COLUMNS + " FROM session_rollups WHERE true");
+        List<Object> args = new ArrayList<>(3);
+        if (region != null) {
+            sql.append(" AND region = ?");
+            args.add(region);
+        }
+        if (deviceType != null) {
+            sql.append(" AND device_type = ?");
+            args.add(deviceType);
+        }
+        if (contentId != null) {
+            sql.append(" AND content_id = ?");
+            args.add(contentId);
+        }
+        Rollup merged = new Rollup();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            merged.merge(Rollup.fromRow(rs));
+        }, args.toArray());
+        return merged.toAnalytics();
+    }
+
+    /**
+     * Recomputes rollups from the raw rows currently in {@code session_events}, for one session or
+     * for all of them when {@code sessionId} is null. Only sessions whose first event is still
+     * within retention are rebuilt: older raw rows may already be archived and deleted, and late
+     * events never reach Postgres, so rebuilding those would undercount. Returns the number of
+     * rollups written.
+     * <p>
+     * Sessions are rebuilt a batch at a time, each in its own transaction that first locks their
+     * rollup rows in the same order as {@link #apply}, so a concurrent apply either commits before
+     * the raw rows are read or waits for the rebuilt rows. Only rows at or below the offset
+     * watermarks are counted: rows stored but not yet applied are left to their pending apply,
+     * which would otherwise add them a second time. Sessions without such rows are left as they
+     * are, and watermarks are left alone.
+     */
+    public int rebuild(String sessionId) {
+        Timestamp retentionStart = Timestamp.from(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int[] rebuilt = {0};
+        String after = "";
+        while (true) {
+            String from = after;
+            List<String> locked = transactionTemplate.execute(status -> {
+                List<String> sessionIds = lockRollups(sessionId, from, retentionStart);
+                if (!sessionIds.isEmpty()) {
+                    rebuilt[0] += rebuildLocked(sessionIds);
+                }
+                return sessionIds;
+            });
+            if (locked.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            after = locked.get(locked.size() - 1);
+        }
+        log.info("Rebuilt {} session rollups", rebuilt[0]);
+        return rebuilt[0];
+    }
+
+    private List<String> lockRollups(String sessionId, String after, Timestamp retentionStart) {
+        String sql = "SELECT session_id FROM session_rollups WHERE first_event_time >= ? AND session_id > ?" +
+                (sessionId != null ? " AND session_id = ?" : "") + " ORDER BY session_id LIMIT ? FOR UPDATE";
+        return sessionId != null
+                ? jdbcTemplate.queryForList(sql, String.class, retentionStart, after, sessionId, REBUILD_BATCH_SIZE)
+                : jdbcTemplate.queryForList(sql, String.class, retentionStart, after, REBUILD_BATCH_SIZE);
+    }
+
+    private int rebuildLocked(List<String> sessionIds) {
+        // Rows without a Kafka record key predate idempotent ingest and are always counted
+        String sql = "SELECT " + SessionEventRowMapper.COLUMNS + " FROM session_events e" +
+                " WHERE e.session_id = ANY (?) AND (e.kafka_offset IS NULL OR EXISTS (" +
+                "SELECT 1 FROM session_rollup_offsets o WHERE o.session_id = e.session_id" +
+                " AND o.kafka_partition = e.kafka_partition AND e.kafka_offset <= o.last_offset))";
+        Map<String, Rollup> rollups = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            // Streams within the transaction instead of loading every row of the batch
+            ps.setFetchSize(fetchSize);
+            ps.setArray(1, con.createArrayOf("varchar", sessionIds.toArray()));
+            return ps;
+        }, rs -> {
+            SessionEvent event = SessionEventRowMapper.INSTANCE.mapRow(rs, 0);
+            Rollup rollup = rollups.computeIfAbsent(event.getSessionId(), id -> new Rollup());
+            rollup.add(event);
+            rollup.addToSketches(event);
+        });
+        List<Object[]> replace = new ArrayList<>(rollups.size());
+        rollups.forEach((sessionId, rollup) -> replace.add(rollup.toReplaceArgs(sessionId)));
+        if (!replace.isEmpty()) {
+            jdbcTemplate.batchUpdate(REPLACE_SQL, replace);
+        }
+        return replace.size();
+    }
+
+    private static String watermarkKey(String sessionId, int partition) {
+        return sessionId + '\u0000' + partition;
+    }
+
+    private static final class Rollup {
+        private AnalyticsAccumulator totals = new AnalyticsAccumulator();
+        private QuantileSketch startupSketch = new QuantileSketch();
+        private QuantileSketch bufferingSketch = new QuantileSketch();
+        private QuantileSketch bitrateSketch = new QuantileSketch();
+        private String region;
+        private String deviceType;
+        private String contentId;
+        private Instant firstEventTime;
+
+        private static Rollup fromRow(ResultSet rs) throws SQLException {
+            Rollup rollup = new Rollup();
+            rollup.totals = new AnalyticsAccumulator(rs.getLong("event_count"), rs.getLong("startup_time_sum"),
+                    rs.getLong("startup_time_count"), rs.getLong("buffering_total"), rs.getLong("bitrate_sum"),
+                    rs.getLong("bitrate_count"), rs.getLong("error_total"));
+            rollup.startupSketch = QuantileSketch.fromBytes(rs.getBytes("startup_sketch"));
+            rollup.bufferingSketch = QuantileSketch.fromBytes(rs.getBytes("buffering_sketch"));
+            rollup.bitrateSketch = QuantileSketch.fromBytes(rs.getBytes("bitrate_sketch"));
+            return rollup;
+        }
+
+        private void add(SessionEvent event) {
+            totals.add(event);
+            if (firstEventTime == null || event.getTimestamp().isBefore(firstEventTime)) {
+                firstEventTime = event.getTimestamp();
+            }
+            region = region != null ? region : event.getRegion();
+            deviceType = deviceType != null ? deviceType : event.getDeviceType();
+            contentId = contentId != null ? contentId : event.getContentId();
+        }
+
+        private void addToSketches(SessionEvent event) {
+            AnalyticsEngine.addToSketches(event, startupSketch, bufferingSketch, bitrateSketch);
+        }
+
+        private void merge(Rollup other) {
+            totals.combine(other.totals);
+            startupSketch.merge(other.startupSketch);
+            bufferingSketch.merge(other.bufferingSketch);
+            bitrateSketch.merge(other.bitrateSketch);
+        }
+
+        private Object[] toReplaceArgs(String sessionId) {
+            return new Object[]{sessionId, totals.getEventCount(), totals.getStartupTimeSum(),
+                    totals.getStartupTimeCount(), totals.getBufferingTotal(), totals.getBitrateSum(),
+                    totals.getBitrateCount(), totals.getErrorTotal(), startupSketch.toBytes(),
+                    bufferingSketch.toBytes(), bitrateSketch.toBytes(), region, deviceType, contentId,
+                    firstEventTimestamp()};
+        }
+
+        private Timestamp firstEventTimestamp() {
+            return firstEventTime != null ? Timestamp.from(firstEventTime) : null;
+        }
+
+        private SessionAnalytics toAnalytics() {
+            SessionAnalytics analytics = totals.toAnalytics();
+            AnalyticsEngine.setPercentiles(analytics, startupSketch, bufferingSketch, bitrateSketch);
+            return analytics;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.model.SessionMetadata;
+import com.example.miniproject.repository.SessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Sessionization: live per-session state kept in memory, sharded by session ID.
+ * <p>
+ * Each shard is a bounded LRU map guarded by its own lock; when full, the least recently
+ * updated session is closed early. Sessions close on an {@code end} event, after
+ * {@code idle-timeout-ms} without events, or on shutdown, and each close is written as one
+ * summary row by the sweeper, off the consumer thread. State is kept in primitive fields with
+ * interned dimension strings, around a hundred bytes per session.
+ * <p>
+ * Each session remembers the last Kafka offset applied per partition and skips redelivered
+ * records at or below it. Those offsets outlive the session for the most recent
+ * {@code closed-watermarks} closes, so records replayed after a close do not rebuild it, and
+ * they are written with the summary so the repository can skip a replayed segment after a
+ * restart. Summaries awaiting the sweeper are bounded by {@code max-pending-summaries}; a row
+ * the database keeps rejecting is dropped after {@code write-attempts} tries.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionTracker implements IngestObserver {
+
+    private final SessionRepository sessionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.sessionization.shards:16}")
+    private int shardCount;
+
+    @Value("${session.sessionization.max-sessions:200000}")
+    private int maxSessions;
+
+    @Value("${session.sessionization.idle-timeout-ms:1800000}")
+    private long idleTimeoutMs;
+
+    @Value("${session.sessionization.closed-watermarks:200000}")
+    private int closedWatermarks;
+
+    @Value("${session.sessionization.max-pending-summaries:100000}")
+    private int maxPendingSummaries;
+
+    @Value("${session.sessionization.write-attempts:5}")
+    private int writeAttempts;
+
+    private Shard[] shards;
+    private int maxPerShard;
+    private int maxWatermarksPerShard;
+    private BlockingQueue<PendingSummary> closed;
+    private Counter closedSessions;
+    private Counter duplicateEvents;
+    private Counter droppedSummaries;
+
+    @PostConstruct
+    public void init() {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        maxPerShard = Math.max(1, maxSessions / shardCount);
+        maxWatermarksPerShard = Math.max(1, closedWatermarks / shardCount);
+        closed = new LinkedBlockingQueue<>(maxPendingSummaries);
+        Gauge.builder("session.sessionization.live", this, SessionTracker::liveSessions).register(meterRegistry);
+        Gauge.builder("session.sessionization.pending", this, t -> t.closed.size()).register(meterRegistry);
+        closedSessions = Counter.builder("session.sessionization.closed").register(meterRegistry);
+        duplicateEvents = Counter.builder("session.sessionization.duplicates").register(meterRegistry);
+        droppedSummaries = Counter.builder("session.sessionization.summaries.dropped").register(meterRegistry);
+    }
+
+    @Override
+    public void onEventsStored(List<SessionEvent> events) {
+        long now = System.currentTimeMillis();
+        for (SessionEvent event : events) {
+            Shard shard = shardFor(event.getSessionId());
+            synchronized (shard) {
+                LiveSession session = shard.sessions.get(event.getSessionId());
+                if (session == null) {
+                    long[] closedOffsets = shard.closedOffsets.get(event.getSessionId());
+                    if (closedOffsets != null && LiveSession.isApplied(closedOffsets, event)) {
+                        duplicateEvents.increment();
+                        continue;
+                    }
+                    if (shard.sessions.size() >= maxPerShard) {
+                        Iterator<Map.Entry<String, LiveSession>> eldest = shard.sessions.entrySet().iterator();
+                        Map.Entry<String, LiveSession> entry = eldest.next();
+                        eldest.remove();
+                        close(shard, entry.getKey(), entry.getValue(), "capacity");
+                    }
+                    session = new LiveSession();
+                    session.closedOffsets = shard.closedOffsets.remove(event.getSessionId());
+                    shard.sessions.put(event.getSessionId(), session);
+                }
+                if (!session.apply(event, now)) {
+                    duplicateEvents.increment();
+                    continue;
+                }
+                if (session.state == State.ENDED) {
+                    shard.sessions.remove(event.getSessionId());
+                    close(shard, event.getSessionId(), session, "ended");
+                }
+            }
+        }
+    }
+
+    /**
+     * Current state of a live session, without touching the database.
+     */
+    public Optional<SessionMetadata> getLive(String sessionId) {
+        Shard shard = shardFor(sessionId);
+        synchronized (shard) {
+            LiveSession session = shard.sessions.get(sessionId);
+            return session != null ? Optional.of(session.toMetadata(sessionId)) : Optional.empty();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${session.sessionization.sweep-interval-ms:10000}")
+    public void sweep() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.sessions.entrySet().removeIf(entry -> {
+                    if (entry.getValue().lastUpdatedMs < cutoff) {
+                        close(shard, entry.getKey(), entry.getValue(), "idle");
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        writeClosed();
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.sessions.forEach((sessionId, session) -> close(shard, sessionId, session, "shutdown"));
+                shard.sessions.clear();
+            }
+        }
+        writeClosed();
+    }
+
+    private void writeClosed() {
+        List<PendingSummary> batch = new ArrayList<>();
+        closed.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            save(batch);
+        } catch (NonTransientDataAccessException e) {
+            // A bad row fails the whole batch, so isolate it and only count attempts against it
+            log.warn("Error writing {} session summaries, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingSummary pending : batch) {
+                try {
+                    save(List.of(pending));
+                } catch (DataAccessException rowError) {
+                    if (++pending.attempts >= writeAttempts) {
+                        drop(pending, rowError.getMessage());
+                    } else {
+                        requeue(pending);
+                    }
+                }
+            }
+        } catch (DataAccessException e) {
+            // Database unavailable: retried on the next sweep while the queue has room
+            log.error("Error writing {} session summaries: {}", batch.size(), e.getMessage());
+            batch.forEach(this::requeue);
+        }
+    }
+
+    private void save(List<PendingSummary> batch) {
+        List<SessionMetadata> summaries = new ArrayList<>(batch.size());
+        batch.forEach(pending -> summaries.add(pending.summary));
+        sessionRepository.saveSummaries(summaries);
+    }
+
+    private void requeue(PendingSummary pending) {
+        if (!closed.offer(pending)) {
+            drop(pending, "too many summaries pending");
+        }
+    }
+
+    private void drop(PendingSummary pending, String reason) {
+        log.error("Dropping summary of session {}: {}", pending.summary.getSessionId(), reason);
+        droppedSummaries.increment();
+    }
+
+    private void close(Shard shard, String sessionId, LiveSession session, String reason) {
+        SessionMetadata summary = session.toMetadata(sessionId);
+        summary.setEndTime(summary.getLastEventTime());
+        summary.setCloseReason(reason);
+        session.putOffsets(summary);
+        requeue(new PendingSummary(summary));
+        closedSessions.increment();
+
+        // Kept so records of this session replayed after the close are recognised
+        shard.closedOffsets.put(sessionId, session.appliedOffsets());
+        if (shard.closedOffsets.size() > maxWatermarksPerShard) {
+            Iterator<String> eldest = shard.closedOffsets.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private Shard shardFor(String sessionId) {
+        return shards[Math.floorMod(sessionId.hashCode(), shards.length)];
+    }
+
+    private double liveSessions() {
+        long live = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                live += shard.sessions.size();
+            }
+        }
+        return live;
+    }
+
+    private enum State {
+        STARTED, PLAYING, BUFFERING, PAUSED, ERROR, ENDED;
+
+        private static State after(State current, String eventType) {
+            switch (eventType) {
+                case "start":
+                    return STARTED;
+                case "heartbeat":
+                case "resume":
+                case "seek":
+                case "bitrate_change":
+                    return PLAYING;
+                case "buffering":
+                    return BUFFERING;
+                case "pause":
+                    return PAUSED;
+                case "error":
+                    return ERROR;
+                case "end":
+                    return ENDED;
+                default:
+                    return current;
+            }
+        }
+    }
+
+    private static final class Shard {
+        // Access order, so the eldest entry is the session least recently updated or read
+        private final LinkedHashMap<String, LiveSession> sessions = new LinkedHashMap<>(1024, 0.75f, true);
+        // Applied offsets of recently closed sessions, oldest close first
+        private final LinkedHashMap<String, long[]> closedOffsets = new LinkedHashMap<>();
+    }
+
+    private static final class PendingSummary {
+        private final SessionMetadata summary;
+        private int attempts;
+
+        private PendingSummary(SessionMetadata summary) {
+            this.summary = summary;
+        }
+    }
+
+    private static final class LiveSession {
+        private static final long[] NO_OFFSETS = new long[0];
+
+        private State state = State.STARTED;
+        private long startMs = Long.MAX_VALUE;
+        private long lastEventMs = Long.MIN_VALUE;
+        private long lastUpdatedMs;
+        private long events;
+        private long errors;
+        private long bufferingMs;
+        private long startupTimeMs = -1;
+        private long bitrateSum;
+        private int bitrateCount;
+        private String deviceType;
+        private String region;
+        private String contentId;
+        // (partition, first offset, last offset) triples of this segment; usually one partition
+        private long[] offsets = NO_OFFSETS;
+        // Same layout, for the segments of this session closed earlier; usually null
+        private long[] closedOffsets;
+
+        /**
+         * Folds the event in, unless its Kafka record has been applied already.
+         */
+        private boolean apply(SessionEvent event, long now) {
+            if (!track(event)) {
+                return false;
+            }
+            long time = event.getTimestamp().toEpochMilli();
+            startMs = Math.min(startMs, time);
+            // Out-of-order events update totals but not the lifecycle state
+            if (time >= lastEventMs) {
+                lastEventMs = time;
+                state = State.after(state, event.getEventType());
+            }
+            lastUpdatedMs = now;
+            events++;
+            deviceType = deviceType != null ? deviceType : intern(event.getDeviceType());
+            region = region != null ? region : intern(event.getRegion());
+            contentId = contentId != null ? contentId : intern(event.getContentId());
+
+            QualityMetrics metrics = event.getMetrics();
+            if (metrics == null) {
+                return true;
+            }
+            if (metrics.getErrorCount() != null) {
+                errors += metrics.getErrorCount();
+            }
+            if (metrics.getBufferingDurationMs() != null) {
+                bufferingMs += metrics.getBufferingDurationMs();
+            }
+            if (metrics.getStartupTimeMs() != null && startupTimeMs < 0) {
+                startupTimeMs = metrics.getStartupTimeMs();
+            }
+            if (metrics.getBitrate() != null) {
+                bitrateSum += metrics.getBitrate();
+                bitrateCount++;
+            }
+            return true;
+        }
+
+        private boolean track(SessionEvent event) {
+            if (event.getKafkaPartition() == null || event.getKafkaOffset() == null) {
+                return true;
+            }
+            if (closedOffsets != null && isApplied(closedOffsets, event)) {
+                return false;
+            }
+            int partition = event.getKafkaPartition();
+            long offset = event.getKafkaOffset();
+            for (int i = 0; i < offsets.length; i += 3) {
+                if (offsets[i] == partition) {
+                    // A partition's records arrive in offset order, so anything not above the last was seen
+                    if (offset <= offsets[i + 2]) {
+                        return false;
+                    }
+                    offsets[i + 2] = offset;
+                    return true;
+                }
+            }
+            offsets = Arrays.copyOf(offsets, offsets.length + 3);
+            offsets[offsets.length - 3] = partition;
+            offsets[offsets.length - 2] = offset;
+            offsets[offsets.length - 1] = offset;
+            return true;
+        }
+
+        private static boolean isApplied(long[] offsets, SessionEvent event) {
+            if (event.getKafkaPartition() == null || event.getKafkaOffset() == null) {
+                return false;
+            }
+            for (int i = 0; i < offsets.length; i += 3) {
+                if (offsets[i] == event.getKafkaPartition() && event.getKafkaOffset() <= offsets[i + 2]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void putOffsets(SessionMetadata summary) {
+            Map<Integer, Long> first = new HashMap<>();
+            Map<Integer, Long> last = new HashMap<>();
+            for (int i = 0; i < offsets.length; i += 3) {
+                first.put((int) offsets[i], offsets[i + 1]);
+                last.put((int) offsets[i], offsets[i + 2]);
+            }
+            summary.setFirstOffsets(first);
+            summary.setLastOffsets(last);
+        }
+
+        private long[] appliedOffsets() {
+            if (closedOffsets == null) {
+                return offsets;
+            }
+            long[] merged = closedOffsets.clone();
+            for (int i = 0; i < offsets.length; i += 3) {
+                boolean found = false;
+                for (int j = 0; j < merged.length; j += 3) {
+                    if (merged[j] == offsets[i]) {
+                        merged[j + 2] = Math.max(merged[j + 2], offsets[i + 2]);
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    merged = Arrays.copyOf(merged, merged.length + 3);
+                    System.arraycopy(offsets, i, merged, merged.length - 3, 3);
+                }
+            }
+            return merged;
+        }
+
+        private SessionMetadata toMetadata(String sessionId) {
+            SessionMetadata metadata = new SessionMetadata();
+            metadata.setSessionId(sessionId);
+            metadata.setState(state.name());
+            metadata.setStartTime(Instant.ofEpochMilli(startMs));
+            metadata.setLastEventTime(Instant.ofEpochMilli(lastEventMs));
+            metadata.setDeviceType(deviceType);
+            metadata.setRegion(region);
+            metadata.setContentId(contentId);
+            metadata.setEventCount(events);
+            metadata.setErrorCount(errors);
+            metadata.setTotalBufferingMs(bufferingMs);
+            metadata.setStartupTimeMs(startupTimeMs >= 0 ? startupTimeMs : null);
+            metadata.setAverageBitrateKbps(bitrateCount > 0 ? (double) bitrateSum / bitrateCount : 0.0);
+            return metadata;
+        }
+
+        private static String intern(String value) {
+            // Device types, regions and content IDs repeat across millions of sessions
+            return value != null ? value.intern() : null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.miniproject.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted Space-Saving summary: the heaviest items of a stream in {@code capacity} counters.
+ * Counts are overestimates by at most the item's {@code error}; any item heavier than the
+ * smallest counter is guaranteed to be tracked. Summaries {@link #merge merge} with the same
+ * guarantees, so per-epoch and per-instance summaries can be combined. Counters also sit in a
+ * min-heap keyed by count, so finding the smallest is O(1) and an update O(log capacity). Not
+ * thread-safe.
+ */
+public final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Item> items;
+    private final Item[] heap;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.items = new HashMap<>(capacity * 2);
+        this.heap = new Item[capacity];
+    }
+
+    public void add(String item, long weight) {
+        if (item == null || weight <= 0) {
+            return;
+        }
+        Item existing = items.get(item);
+        if (existing != null) {
+            existing.count += weight;
+            siftDown(existing.heapIndex);
+            return;
+        }
+        if (items.size() < capacity) {
+            insert(new Item(item, weight, 0));
+            return;
+        }
+        // Take over the smallest counter; its count bounds what the newcomer may have missed
+        Item min = heap[0];
+        items.remove(min.item);
+        Item replacement = new Item(item, min.count + weight, min.count);
+        items.put(item, replacement);
+        heap[0] = replacement;
+        siftDown(0);
+    }
+
+    /**
+     * Returns a new summary of both streams. An item missing from one side may have been counted
+     * there up to that side's smallest counter, which is added to its count and error.
+     */
+    public SpaceSaving merge(SpaceSaving other) {
+        long minThis = minCount();
+        long minOther = other.minCount();
+        Map<String, Item> merged = new HashMap<>();
+        for (Item item : items.values()) {
+            Item match = other.items.get(item.item);
+            merged.put(item.item, new Item(item.item,
+                    item.count + (match != null ? match.count : minOther),
+                    item.error + (match != null ? match.error : minOther)));
+        }
+        for (Item item : other.items.values()) {
+            if (!merged.containsKey(item.item)) {
+                merged.put(item.item, new Item(item.item, item.count + minThis, item.error + minThis));
+            }
+        }
+        SpaceSaving result = new SpaceSaving(Math.max(capacity, other.capacity));
+        List<Item> sorted = new ArrayList<>(merged.values());
+        sorted.sort((a, b) -> Long.compare(b.count, a.count));
+        for (Item item : sorted.subList(0, Math.min(result.capacity, sorted.size()))) {
+            result.insert(item);
+        }
+        return result;
+    }
+
+    public List<Item> top(int k) {
+        List<Item> sorted = new ArrayList<>(items.values());
+        sorted.sort((a, b) -> Long.compare(b.count, a.count));
+        return sorted.subList(0, Math.min(k, sorted.size()));
+    }
+
+    private long minCount() {
+        return items.size() < capacity ? 0 : heap[0].count;
+    }
+
+    private void insert(Item item) {
+        items.put(item.item, item);
+        int index = items.size() - 1;
+        heap[index] = item;
+        item.heapIndex = index;
+        siftUp(index);
+    }
+
+    private void siftUp(int index) {
+        Item item = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= item.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(item, index);
+    }
+
+    // Counts only grow, so an updated counter can only move down
+    private void siftDown(int index) {
+        Item item = heap[index];
+        int size = items.size();
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (item.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(item, index);
+    }
+
+    private void place(Item item, int index) {
+        heap[index] = item;
+        item.heapIndex = index;
+    }
+
+    /**
+     * Text form: the capacity on the first line, then one {@code item \t count \t error} line
+     * per counter.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder().append(capacity).append('\n');
+        for (Item item : items.values()) {
+            out.append(item.item.replace('\t', ' ').replace('\n', ' ')).append('\t')
+                    .append(item.count).append('\t').append(item.error).append('\n');
+        }
+        return out.toString();
+    }
+
+    public static SpaceSaving parse(String text) {
+        String[] lines = text.split("\n");
+        SpaceSaving summary = new SpaceSaving(Integer.parseInt(lines[0]));
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split("\t");
+            if (summary.items.size() == summary.capacity || summary.items.containsKey(fields[0])) {
+                continue;
+            }
+            summary.insert(new Item(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+        }
+        return summary;
+    }
+
+    public static final class Item {
+        private final String item;
+        private long count;
+        private final long error;
+        private int heapIndex;
+
+        private Item(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -1,22 +1,37 @@
 package com.example.miniproject.service;
 
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.Upload;
-import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.EventQuery;
 import com.example.miniproject.model.SessionEvent;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.UncategorizedSQLException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
-import javax.transaction.Transactional;
-import java.io.ByteArrayInputStream;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
 @Slf4j
@@ -25,102 +40,256 @@ import java.util.concurrent.CompletableFuture;
 public class StorageService {
 
     private final JdbcTemplate jdbcTemplate;
-    private final TransferManager transferManager;
-    private final ObjectMapper objectMapper;
+    private final EventWriter eventWriter;
+    private final ArchiveWriter archiveWriter;
+    private final ArchiveReader archiveReader;
 
-    @Value("${aws.s3.bucket}")
-    private String bucketName;
+    @Value("${session.retention-days:7}")
+    private int retentionDays;
 
-    private static final int RETENTION_DAYS = 7;
+    @Value("${session.events.query.default-limit:1000}")
+    private int defaultLimit;
 
-    @Transactional
-    public void storeEvent(SessionEvent event){
-        String sql = "INSERT INTO session_events (session_id, event_type, timestamp, " +
-                "startup_time_ms, buffering_duration_ms, bitrate, buffering_ratio, " +
-                "error_count, device_type, region, content_id) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        jdbcTemplate.update(sql,
-                event.getSessionId(),
-                event.getEventType(),
-                event.getTimestamp(),
-                event.getMetrics().getStartupTimeMs(),
-                event.getMetrics().getBufferingDurationMs(),
-                event.getMetrics().getBitrate(),
-                event.getMetrics().getBufferingRatio(),
-                event.getMetrics().getErrorCount(),
-                event.getDeviceType(),
-                event.getRegion(),
-                event.getContentId()
-        );
+    @Value("${session.events.query.max-limit:10000}")
+    private int maxLimit;
+
+    @Value("${session.events.query.fetch-size:500}")
+    private int fetchSize;
 
+    /**
+     * Persists one event with {@link EventWriter#writeNow}, without waiting for a write-behind flush.
+     */
+    public void storeEvent(SessionEvent event){
         if (isEventOld(event)){
-            archiveToS3(event);
+            archiveLateEvents(Collections.singletonList(event));
+        } else {
+            eventWriter.writeNow(Collections.singletonList(event));
+        }
+    }
+
+    /**
+     * Persists a batch through the configured {@link EventWriter}; returns once the rows are durable.
+     * Events that arrive already past retention go straight to the S3 archive, also before returning.
+     */
+    public void storeEvents(List<SessionEvent> events){
+        List<SessionEvent> current = new ArrayList<>(events.size());
+        List<SessionEvent> late = new ArrayList<>();
+        for (SessionEvent event : events) {
+            if (isEventOld(event)){
+                late.add(event);
+            } else {
+                current.add(event);
+            }
+        }
+        if (!late.isEmpty()) {
+            archiveLateEvents(late);
+        }
+        if (!current.isEmpty()) {
+            eventWriter.write(current);
+        }
+    }
+
+    /**
+     * Uploads late events as one segment per region and hour and waits for the uploads, so the
+     * caller only commits their Kafka offsets once they are in S3. They bypass Postgres because
+     * the tiering job never goes back behind its checkpoint in a partitioned table, whose
+     * partition for that day may already be gone. Segments are named after the Kafka records they
+     * hold, so a redelivered poll overwrites its own objects. Upload failures are transient, so
+     * the listener retries the poll. These segments are small, but late events are rare, and
+     * batching them across polls would mean holding back offset commits until a segment fills.
+     */
+    private void archiveLateEvents(List<SessionEvent> events){
+        Map<String, List<SessionEvent>> segments = new LinkedHashMap<>();
+        for (SessionEvent event : events) {
+            Instant hour = event.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+            segments.computeIfAbsent(ArchiveWriter.regionOf(event) + '\u0000' + hour, k -> new ArrayList<>()).add(event);
+        }
+        List<CompletableFuture<String>> uploads = new ArrayList<>(segments.size());
+        for (List<SessionEvent> segment : segments.values()) {
+            SessionEvent first = segment.get(0);
+            String region = ArchiveWriter.regionOf(first);
+            Instant hour = first.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+            SessionEvent last = segment.get(segment.size() - 1);
+            uploads.add(first.getKafkaOffset() != null && last.getKafkaOffset() != null
+                    ? archiveWriter.writeSegment(ArchiveWriter.segmentKey(region, hour, "late-"
+                            + first.getKafkaPartition() + "-" + first.getKafkaOffset() + "-" + last.getKafkaOffset()),
+                            segment)
+                    : archiveWriter.writeSegment(region, hour, segment));
         }
+        try {
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw new TransientDataAccessResourceException("Archiving " + events.size() + " late events failed",
+                    e.getCause());
+        }
+        log.info("Archived {} events that arrived past retention", events.size());
     }
 
     private boolean isEventOld(SessionEvent event){
-        return event.getTimestamp().isBefore(Instant.now().minus(RETENTION_DAYS, ChronoUnit.DAYS));
+        return event.getTimestamp().isBefore(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
     }
 
-    private void archiveToS3(SessionEvent event){
-        try{
-            String key = generateS3Key(event);
-            String eventJson = objectMapper.writeValueAsString(event);
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(eventJson.getBytes());
+    public List<SessionEvent> getRecentEvents(String sessionId){
+        String sql = "SELECT " + SessionEventRowMapper.SESSION_COLUMNS + " FROM session_events WHERE session_id = ?" +
+                " AND timestamp > ? ORDER BY timestamp DESC";
 
-            Upload upload = transferManager.upload(bucketName, key, inputStream, null);
+        return jdbcTemplate.query(sql, SessionEventRowMapper.forSession(sessionId),
+                sessionId, Timestamp.from(Instant.now().minus(retentionDays, ChronoUnit.DAYS)));
 
-            CompletableFuture.runAsync(() ->{
-                try{
-                    upload.waitForCompletion();
-                    log.info("Successfully archived event to S3: {}", key);
-                }catch (Exception e){
-                    log.error("Error archived to S3: {}", e.getMessage());
-                }
-            });
-        }catch (Exception e){
-            log.error("Error preparing event for S3 archive: {}", e.getMessage());
+    }
+
+    /**
+     * Events of a session in {@code [from, to)}, newest first. Parts of the range beyond retention
+     * are read back from the S3 archive; rows that are archived but not yet removed from Postgres
+     * are only returned once.
+     */
+    public List<SessionEvent> getEvents(String sessionId, Instant from, Instant to){
+        String sql = "SELECT " + SessionEventRowMapper.COLUMNS + " FROM session_events WHERE session_id = ?" +
+                " AND timestamp >= ? AND timestamp < ? ORDER BY timestamp DESC";
+        List<SessionEvent> events = jdbcTemplate.query(sql, SessionEventRowMapper.INSTANCE,
+                sessionId, Timestamp.from(from), Timestamp.from(to));
 
+        Instant retentionStart = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+        if (from.isBefore(retentionStart)) {
+            Set<Long> ids = new HashSet<>();
+            events.forEach(event -> ids.add(event.getId()));
+            // Late events have no row ID; a redelivered poll can archive them twice
+            Set<SessionEvent> lateEvents = new HashSet<>();
+            Instant archiveTo = to.isBefore(retentionStart) ? to : retentionStart;
+            for (SessionEvent event : archiveReader.readSession(sessionId, from, archiveTo)) {
+                if (event.getId() != null ? ids.add(event.getId()) : lateEvents.add(event)) {
+                    events.add(event);
+                }
+            }
+            events.sort(Comparator.comparing(SessionEvent::getTimestamp).reversed());
         }
+        return events;
     }
 
-    private String generateS3Key(SessionEvent event){
-        Instant timestamp = event.getTimestamp();
-        return String.format("%tY/%tm/%td/%s/%s-%s.json",
-                timestamp, timestamp, timestamp,
-                event.getSessionId(),
-                event.getEventType(),
-                timestamp.toEpochMilli());
+    /**
+     * Streams one page of a session's events, newest first, keyset-paginated on
+     * {@code (timestamp, id)}. Within retention the rows are read through a server-side cursor
+     * ({@code fetch-size} rows per round trip) with the event type filter and limit in SQL, so a
+     * long session is never materialized. Ranges reaching past retention fall back to
+     * {@link #getEvents}, which merges in the S3 archive.
+     */
+    public Flux<SessionEvent> streamEvents(String sessionId, EventQuery query){
+        Instant retentionStart = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+        int limit = query.getLimit() != null ? Math.max(1, Math.min(query.getLimit(), maxLimit)) : defaultLimit;
+
+        if (query.getFrom() != null && query.getFrom().isBefore(retentionStart)) {
+            Instant to = query.getTo() != null ? query.getTo() : Instant.now();
+            Comparator<SessionEvent> newestFirst = KEYSET_ORDER.reversed();
+            return Flux.defer(() -> Flux.fromIterable(getEvents(sessionId, query.getFrom(), to)))
+                    .filter(e -> query.getEventType() == null || query.getEventType().equals(e.getEventType()))
+                    .filter(e -> query.getBeforeTimestamp() == null || isBeforeCursor(e, query))
+                    .sort(newestFirst)
+                    .take(limit);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(SessionEventRowMapper.SESSION_COLUMNS)
+                .append(" FROM session_events WHERE session_id = ? AND timestamp >= ?");
+        List<Object> args = new ArrayList<>();
+        args.add(sessionId);
+        args.add(Timestamp.from(query.getFrom() != null ? query.getFrom() : retentionStart));
+        if (query.getTo() != null) {
+            sql.append(" AND timestamp < ?");
+            args.add(Timestamp.from(query.getTo()));
+        }
+        if (query.getEventType() != null) {
+            sql.append(" AND event_type = ?");
+            args.add(query.getEventType());
+        }
+        if (query.getBeforeTimestamp() != null) {
+            Timestamp before = Timestamp.from(query.getBeforeTimestamp());
+            if (query.getBeforeId() != null) {
+                sql.append(" AND timestamp <= ? AND (timestamp, id) < (?, ?)");
+                args.add(before);
+                args.add(before);
+                args.add(query.getBeforeId());
+            } else {
+                sql.append(" AND timestamp < ?");
+                args.add(before);
+            }
+        }
+        sql.append(" ORDER BY timestamp DESC, id DESC LIMIT ?");
+        args.add(limit);
+
+        SessionEventRowMapper mapper = SessionEventRowMapper.forSession(sessionId);
+        return Flux.using(
+                () -> openCursor(sql.toString(), args),
+                cursor -> Flux.<SessionEvent>generate(sink -> {
+                    try {
+                        if (cursor.resultSet.next()) {
+                            sink.next(mapper.mapRow(cursor.resultSet, 0));
+                        } else {
+                            sink.complete();
+                        }
+                    } catch (SQLException e) {
+                        DataAccessException translated =
+                                jdbcTemplate.getExceptionTranslator().translate("streamEvents", cursor.sql, e);
+                        sink.error(translated != null ? translated
+                                : new UncategorizedSQLException("streamEvents", cursor.sql, e));
+                    }
+                }),
+                EventCursor::close);
     }
 
-    public List<SessionEvent> getRecentEvents(String sessionId){
-        String sql = "SELECT * FROM session_events WHERE session_id = ?" +
-                " AND timestamp > ? ORDER BY timestamp DESC";
+    private static final Comparator<SessionEvent> KEYSET_ORDER = Comparator
+            .comparing(SessionEvent::getTimestamp)
+            .thenComparing(e -> e.getId() != null ? e.getId() : 0L);
 
-        return jdbcTemplate.query(sql,
-                (rs, rowNum) -> {
-                    SessionEvent event = new SessionEvent();
-                    event.setId(rs.getLong("Id"));
-                    event.setSessionId(rs.getString("session_id"));
-                    event.setEventType(rs.getString("event_type"));
-                    event.setTimestamp(rs.getTimestamp("event_timestamp").toInstant());
-                    event.setDeviceType(rs.getString("device_type"));
-                    event.setRegion(rs.getString("region"));
-                    event.setContentId(rs.getString("content_id"));
-
-                    QualityMetrics metrics = new QualityMetrics();
-                    metrics.setStartupTimeMs(rs.getLong("startup_time_ms"));
-                    metrics.setBufferingDurationMs(rs.getLong("buffering_duration_ms"));
-                    metrics.setBitrate(rs.getInt("bitrate"));
-                    metrics.setBufferingRatio(rs.getDouble("buffering_ratio"));
-                    metrics.setErrorCount(rs.getInt("error_count"));
-
-                    event.setMetrics(metrics);
-                    return event;
-                }, sessionId, Instant.now().minus(RETENTION_DAYS, ChronoUnit.DAYS));
+    private static boolean isBeforeCursor(SessionEvent event, EventQuery query){
+        int byTime = event.getTimestamp().compareTo(query.getBeforeTimestamp());
+        if (byTime != 0 || query.getBeforeId() == null) {
+            return byTime < 0;
+        }
+        return event.getId() != null && event.getId() < query.getBeforeId();
+    }
 
+    private EventCursor openCursor(String sql, List<Object> args) throws SQLException {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        EventCursor cursor = new EventCursor(dataSource, connection, sql);
+        try {
+            // PostgreSQL only honours the fetch size (i.e. uses a cursor) outside autocommit
+            connection.setAutoCommit(false);
+            cursor.statement = connection.prepareStatement(sql);
+            cursor.statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                cursor.statement.setObject(i + 1, args.get(i));
+            }
+            cursor.resultSet = cursor.statement.executeQuery();
+            return cursor;
+        } catch (SQLException e) {
+            cursor.close();
+            throw e;
+        }
     }
 
+    private static final class EventCursor {
+        private final DataSource dataSource;
+        private final Connection connection;
+        private final String sql;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
 
+        private EventCursor(DataSource dataSource, Connection connection, String sql) {
+            this.dataSource = dataSource;
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        private void close() {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.warn("Error resetting streaming connection: {}", e.getMessage());
+            }
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
 }
@@ -0,0 +1,214 @@
+package com.example.miniproject.service;
+
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local copy of token revocations, so validating a token needs no Redis call.
+ * <p>
+ * A single token is revoked by its {@code jti}: Redis holds one short key per revoked token,
+ * expiring with the token. Revoking all tokens of a user increments that user's epoch; tokens
+ * carry the epoch they were issued in and are revoked once it is behind. Both are announced on a
+ * pub/sub channel and mirrored on every node, and reloaded from Redis on startup and every
+ * {@code resync-interval-ms}, which also covers messages missed while disconnected. Redis memory
+ * thus grows with revocations and users who revoked all their tokens, not with logins. New tokens
+ * take the epoch from Redis rather than the mirror, which may be a resync interval behind.
+ * <p>
+ * Tokens revoked before jti keys existed are stored as {@code token:blacklist:<token>}. Resync
+ * moves each to a {@code token:revoked:} key named by the token's hash, which is the ID of a
+ * token without {@code jti}, keeping its TTL, so they stay revoked until they expire.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationRegistry {
+
+    static final String CHANNEL = "token:revocations";
+    static final String EPOCH_CLAIM = "epoch";
+    private static final String REVOKED_PREFIX = "token:revoked:";
+    private static final String LEGACY_PREFIX = "token:blacklist:";
+    private static final String EPOCH_PREFIX = "token:epoch:";
+    private static final int RESYNC_BATCH = 500;
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Long jwtExpiration;
+
+    // jti -> epoch millis after which the entry can be dropped
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    // username -> current epoch; users without an entry are at epoch 0
+    private final Map<String, Long> epochs = new ConcurrentHashMap<>();
+    private Disposable subscription;
+
+    @PostConstruct
+    public void init() {
+        subscription = redisTemplate.listenToChannel(CHANNEL)
+                .doOnNext(message -> apply(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Token revocation channel failed, resubscribing: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+        try {
+            resync().block(Duration.ofSeconds(10));
+        } catch (RuntimeException e) {
+            log.error("Error loading token revocations, retrying on the next resync: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscription.dispose();
+    }
+
+    /**
+     * Whether verified claims belong to a revoked token, by jti or by user epoch.
+     */
+    public boolean isRevoked(Claims claims, String token) {
+        if (revoked.containsKey(tokenId(claims, token))) {
+            return true;
+        }
+        Number epoch = claims.get(EPOCH_CLAIM, Number.class);
+        Long current = claims.getSubject() != null ? epochs.get(claims.getSubject()) : null;
+        return current != null && (epoch != null ? epoch.longValue() : 0) < current;
+    }
+
+    /**
+     * Epoch to issue new tokens of {@code username} in, read from Redis so a token issued right
+     * after a revoke-all elsewhere is not behind on nodes that have seen it. Falls back to the
+     * local mirror when Redis is unavailable.
+     */
+    public Mono<Long> loadEpoch(String username) {
+        return redisTemplate.opsForValue().get(EPOCH_PREFIX + username)
+                .map(value -> epochs.merge(username, Long.parseLong(value), Math::max))
+                .defaultIfEmpty(0L)
+                .map(epoch -> Math.max(epoch, epochs.getOrDefault(username, 0L)))
+                .onErrorResume(e -> {
+                    log.warn("Error reading token epoch of {}, using the local one: {}", username, e.getMessage());
+                    return Mono.just(epochs.getOrDefault(username, 0L));
+                });
+    }
+
+    /**
+     * Revokes a token on this node at once, then stores and announces the revocation. The key
+     * and the local entry live as long as the token would have.
+     */
+    public void revoke(Claims claims, String token) {
+        long expiresAtMs = claims.getExpiration() != null
+                ? claims.getExpiration().getTime() : System.currentTimeMillis() + jwtExpiration;
+        long remainingMs = expiresAtMs - System.currentTimeMillis();
+        if (remainingMs <= 0) {
+            return;
+        }
+        String id = tokenId(claims, token);
+        revoked.put(id, expiresAtMs);
+        // Issued together, so both commands share one round trip on the connection
+        Mono.when(redisTemplate.opsForValue().set(REVOKED_PREFIX + id, "1", Duration.ofMillis(remainingMs)),
+                        redisTemplate.convertAndSend(CHANNEL, "jti " + expiresAtMs + ' ' + id))
+                .subscribe(null, e -> log.warn("Error publishing token revocation: {}", e.getMessage()));
+    }
+
+    /**
+     * Revokes every token issued to {@code username} so far by moving the user to a new epoch.
+     */
+    public Mono<Void> revokeAll(String username) {
+        return redisTemplate.opsForValue().increment(EPOCH_PREFIX + username)
+                .flatMap(epoch -> {
+                    epochs.merge(username, epoch, Math::max);
+                    return redisTemplate.convertAndSend(CHANNEL, "epoch " + epoch + ' ' + username);
+                })
+                .then();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocations.resync-interval-ms:60000}")
+    public void scheduledResync() {
+        resync().subscribe(null, e -> log.warn("Error resyncing token revocations: {}", e.getMessage()));
+    }
+
+    private Mono<Void> resync() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt < now);
+        // Remaining TTLs are not read back; no token outlives jwtExpiration from now
+        Mono<Void> tokens = redisTemplate.scan(ScanOptions.scanOptions().match(REVOKED_PREFIX + "*").build())
+                .doOnNext(key -> revoked.putIfAbsent(key.substring(REVOKED_PREFIX.length()), now + jwtExpiration))
+                .then();
+        Mono<Void> users = redisTemplate.scan(ScanOptions.scanOptions().match(EPOCH_PREFIX + "*").build())
+                .buffer(RESYNC_BATCH)
+                .concatMap(keys -> redisTemplate.opsForValue().multiGet(keys)
+                        .doOnNext(values -> applyEpochs(keys, values)))
+                .then();
+        Mono<Void> legacy = redisTemplate.scan(ScanOptions.scanOptions().match(LEGACY_PREFIX + "*").build())
+                .concatMap(this::migrateLegacy)
+                .then();
+        return Flux.merge(tokens, users, legacy).then();
+    }
+
+    private Mono<Void> migrateLegacy(String key) {
+        String id = hash(key.substring(LEGACY_PREFIX.length()));
+        return redisTemplate.getExpire(key)
+                .filter(ttl -> !ttl.isZero() && !ttl.isNegative())
+                .defaultIfEmpty(Duration.ofMillis(jwtExpiration))
+                .flatMap(ttl -> {
+                    revoked.merge(id, System.currentTimeMillis() + ttl.toMillis(), Math::max);
+                    return redisTemplate.opsForValue().set(REVOKED_PREFIX + id, "1", ttl);
+                })
+                .then(redisTemplate.delete(key))
+                .then();
+    }
+
+    private void applyEpochs(List<String> keys, List<String> values) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (values.get(i) != null) {
+                epochs.merge(keys.get(i).substring(EPOCH_PREFIX.length()), Long.parseLong(values.get(i)), Math::max);
+            }
+        }
+    }
+
+    private void apply(String message) {
+        // "jti <expiresAtMs> <id>" or "epoch <epoch> <username>"; the last field may contain spaces
+        String[] fields = message.split(" ", 3);
+        if (fields.length != 3) {
+            log.warn("Ignoring malformed token revocation message");
+            return;
+        }
+        if (fields[0].equals("jti")) {
+            revoked.put(fields[2], Long.parseLong(fields[1]));
+        } else if (fields[0].equals("epoch")) {
+            epochs.merge(fields[2], Long.parseLong(fields[1]), Math::max);
+        }
+    }
+
+    /**
+     * The token's {@code jti}, or for tokens issued without one, a SHA-256 of the token.
+     */
+    private static String tokenId(Claims claims, String token) {
+        return claims.getId() != null ? claims.getId() : hash(token);
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.model.UniqueSessionCount;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Distinct sessions per dimension value and time bucket, kept in Redis HyperLogLogs.
+ * <p>
+ * Every stored event adds its session ID to one HyperLogLog per dimension ({@code all},
+ * {@code contentId}, {@code region}, {@code deviceType}) for its event-time bucket. Redis keeps
+ * them sparse while small and at most 12 KB each, all instances add to the same keys, and a
+ * count over several buckets is the union computed by a single {@code PFCOUNT}, so it never
+ * scans {@code session_events}. Keys expire {@code retention-hours} after their last update.
+ * <p>
+ * Updates are sent from the consumer thread without waiting: at most {@code concurrency} keys
+ * are updated at a time, and a batch that would take more than {@code max-in-flight} keys
+ * pending is dropped and counted, so a slow Redis cannot pile up commands behind the consumer.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UniqueSessionCounter implements IngestObserver {
+
+    // Redis HyperLogLogs use 16384 registers: 1.04 / sqrt(16384)
+    public static final double STANDARD_ERROR = 0.0081;
+
+    private static final List<String> DIMENSIONS = List.of("all", "contentId", "region", "deviceType");
+    private static final String KEY_PREFIX = "hll:sessions:";
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.unique-sessions.bucket-ms:3600000}")
+    private long bucketMs;
+
+    @Value("${session.unique-sessions.retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${session.unique-sessions.max-buckets:1000}")
+    private int maxBuckets;
+
+    @Value("${session.unique-sessions.concurrency:16}")
+    private int concurrency;
+
+    @Value("${session.unique-sessions.max-in-flight:10000}")
+    private int maxInFlight;
+
+    private Semaphore inFlight;
+    private Counter dropped;
+    private Counter failed;
+
+    @PostConstruct
+    public void init() {
+        inFlight = new Semaphore(maxInFlight);
+        dropped = Counter.builder("session.unique-sessions.dropped").register(meterRegistry);
+        failed = Counter.builder("session.unique-sessions.failed").register(meterRegistry);
+    }
+
+    @Override
+    public void onEventsStored(List<SessionEvent> events) {
+        // One PFADD per key and batch rather than per event
+        Map<String, Set<String>> sessionsByKey = new HashMap<>();
+        for (SessionEvent event : events) {
+            long bucket = Math.floorDiv(event.getTimestamp().toEpochMilli(), bucketMs) * bucketMs;
+            for (String dimension : DIMENSIONS) {
+                String value = dimensionValue(event, dimension);
+                if (value != null) {
+                    sessionsByKey.computeIfAbsent(key(dimension, value, bucket), k -> new HashSet<>())
+                            .add(event.getSessionId());
+                }
+            }
+        }
+        if (!inFlight.tryAcquire(sessionsByKey.size())) {
+            dropped.increment(sessionsByKey.size());
+            log.warn("Too many unique-session updates pending, dropped {} keys", sessionsByKey.size());
+            return;
+        }
+        Duration ttl = Duration.ofHours(retentionHours);
+        Flux.fromIterable(sessionsByKey.entrySet())
+                .flatMap(entry -> redisTemplate.opsForHyperLogLog()
+                        .add(entry.getKey(), entry.getValue().toArray(new String[0]))
+                        .then(redisTemplate.expire(entry.getKey(), ttl))
+                        .onErrorResume(e -> {
+                            failed.increment();
+                            log.warn("Error updating unique-session count {}: {}", entry.getKey(), e.getMessage());
+                            return Mono.empty();
+                        })
+                        .doFinally(signal -> inFlight.release()), concurrency)
+                .subscribe();
+    }
+
+    /**
+     * Distinct sessions over the buckets overlapping {@code from}..{@code to}; {@code dimension}
+     * {@code all} needs no value. Fails with {@link IllegalArgumentException} for unknown
+     * dimensions, a missing value, an empty range or too many buckets.
+     */
+    public Mono<UniqueSessionCount> count(String dimension, String value, Instant from, Instant to) {
+        if (!DIMENSIONS.contains(dimension)) {
+            return Mono.error(new IllegalArgumentException("Unknown dimension " + dimension));
+        }
+        if (value == null && !"all".equals(dimension)) {
+            return Mono.error(new IllegalArgumentException("A value is required for dimension " + dimension));
+        }
+        if (!from.isBefore(to)) {
+            return Mono.error(new IllegalArgumentException("Invalid time range"));
+        }
+        long first = Math.floorDiv(from.toEpochMilli(), bucketMs) * bucketMs;
+        long end = Math.floorDiv(to.toEpochMilli() - 1, bucketMs) * bucketMs + bucketMs;
+        if ((end - first) / bucketMs > maxBuckets) {
+            return Mono.error(new IllegalArgumentException("Range spans more than " + maxBuckets + " buckets"));
+        }
+        List<String> keys = new ArrayList<>();
+        for (long bucket = first; bucket < end; bucket += bucketMs) {
+            keys.add(key(dimension, value, bucket));
+        }
+
+        return redisTemplate.opsForHyperLogLog().size(keys.toArray(new String[0]))
+                .map(estimate -> {
+                    UniqueSessionCount count = new UniqueSessionCount();
+                    count.setDimension(dimension);
+                    count.setValue(value);
+                    count.setFrom(Instant.ofEpochMilli(first));
+                    count.setTo(Instant.ofEpochMilli(end));
+                    count.setBuckets(keys.size());
+                    count.setEstimate(estimate);
+                    count.setStandardError(STANDARD_ERROR);
+                    count.setLowerBound(Math.max(0, (long) Math.floor(estimate * (1 - 3 * STANDARD_ERROR))));
+                    count.setUpperBound((long) Math.ceil(estimate * (1 + 3 * STANDARD_ERROR)));
+                    return count;
+                });
+    }
+
+    private static String key(String dimension, String value, long bucket) {
+        return "all".equals(dimension)
+                ? KEY_PREFIX + dimension + ':' + bucket
+                : KEY_PREFIX + dimension + ':' + bucket + ':' + value;
+    }
+
+    private static String dimensionValue(SessionEvent event, String dimension) {
+        switch (dimension) {
+            case "all":
+                return "";
+            case "contentId":
+                return event.getContentId();
+            case "region":
+                return event.getRegion();
+            default:
+                return event.getDeviceType();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.miniproject.controller;
+
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.service.EventProcessingService;
+import com.example.miniproject.service.PublishRejectedException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionAnalysisControllerTest {
+
+    private EventProcessingService eventProcessingService;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        eventProcessingService = mock(EventProcessingService.class);
+        SessionAnalysisController controller = new SessionAnalysisController(eventProcessingService, null, null,
+                null, null, null, null, null, null, null, null, null, null);
+        client = WebTestClient.bindToController(controller).build();
+        // Binding injects the @Value defaults into the controller, so override afterwards
+        ReflectionTestUtils.setField(controller, "publishChunkSize", 2);
+    }
+
+    @Test
+    void saturatedProducerAnswers429() {
+        when(eventProcessingService.publishEvent(any())).thenReturn(
+                CompletableFuture.failedFuture(new PublishRejectedException("Too many events in flight")));
+
+        client.post().uri("/api/sessions/events").bodyValue(event("s-1"))
+                .exchange()
+                .expectStatus().isEqualTo(429);
+    }
+
+    @Test
+    void metadataTimeoutAnswers503() {
+        when(eventProcessingService.publishEvent(any())).thenReturn(CompletableFuture.failedFuture(
+                new TimeoutException("Topic session-events not present in metadata after 50 ms.")));
+
+        client.post().uri("/api/sessions/events").bodyValue(event("s-1"))
+                .exchange()
+                .expectStatus().isEqualTo(503);
+    }
+
+    @Test
+    void batchPublishesNdjsonInChunks() {
+        when(eventProcessingService.publishEvents(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+
+        client.post().uri("/api/sessions/events/batch").contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(ndjson(event("s-1"), event("s-2"), event("s-3")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.accepted").isEqualTo(3);
+
+        verify(eventProcessingService).publishEvents(argThat(events -> events.size() == 2
+                && events.get(0).getSessionId().equals("s-1")));
+        verify(eventProcessingService).publishEvents(argThat(events -> events.size() == 1
+                && events.get(0).getSessionId().equals("s-3")));
+    }
+
+    @Test
+    void batchReportsAcceptedEventsBeforeRejection() {
+        when(eventProcessingService.publishEvents(anyList()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new PublishRejectedException("Too many events in flight")));
+
+        client.post().uri("/api/sessions/events/batch").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(event("s-1"), event("s-2"), event("s-3")))
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectBody().jsonPath("$.accepted").isEqualTo(2);
+    }
+
+    @Test
+    void batchProducerFailureAnswers503() {
+        when(eventProcessingService.publishEvents(anyList())).thenThrow(new TimeoutException("Expiring 2 record(s)"));
+
+        client.post().uri("/api/sessions/events/batch").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(event("s-1"), event("s-2")))
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody().jsonPath("$.accepted").isEqualTo(0);
+    }
+
+    private static String ndjson(SessionEvent... events) {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        StringBuilder body = new StringBuilder();
+        for (SessionEvent event : events) {
+            try {
+                body.append(objectMapper.writeValueAsString(event)).append('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return body.toString();
+    }
+
+    private static SessionEvent event(String sessionId) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.parse("2024-03-01T10:00:00Z"));
+        return event;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.miniproject.kafka;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionEventCodecTest {
+
+    @Test
+    void roundTripsAllFields() {
+        SessionEvent event = sampleEvent();
+
+        SessionEvent decoded = SessionEventCodec.decode(SessionEventCodec.encode(event));
+
+        assertEquals(event, decoded);
+    }
+
+    @Test
+    void roundTripsMissingFieldsAndUnknownDictionaryValues() {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId("s-1");
+        event.setEventType("custom_event");
+        event.setTimestamp(Instant.parse("2024-03-01T10:15:30.123456Z"));
+        event.setRegion("mars-north-1");
+
+        SessionEvent decoded = SessionEventCodec.decode(SessionEventCodec.encode(event));
+
+        assertEquals(event, decoded);
+        assertNull(decoded.getMetrics());
+    }
+
+    @Test
+    void serializerWritesCompactBinary() {
+        byte[] binary = new SessionEventSerializer().serialize("session-events", sampleEvent());
+
+        assertTrue(SessionEventCodec.isBinary(binary));
+        // the same event is ~250 bytes as JSON
+        assertTrue(binary.length < 80, "binary record is " + binary.length + " bytes");
+    }
+
+    @Test
+    void deserializerStillReadsJson() {
+        String json = "{\"sessionId\":\"s-1\",\"eventType\":\"start\",\"timestamp\":\"2024-03-01T10:15:30Z\"}";
+
+        SessionEvent decoded = new SessionEventDeserializer()
+                .deserialize("session-events", json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("s-1", decoded.getSessionId());
+        assertEquals(Instant.parse("2024-03-01T10:15:30Z"), decoded.getTimestamp());
+    }
+
+    private static SessionEvent sampleEvent() {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setStartupTimeMs(1200L);
+        metrics.setBufferingDurationMs(350L);
+        metrics.setBitrate(4500);
+        metrics.setBufferingRatio(0.02);
+        metrics.setErrorCount(0);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId("3f2b8c1e-7d4a-4e6b-9a51-0c8d2f6e1b47");
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.parse("2024-03-01T10:15:30.250Z"));
+        event.setDeviceType("android");
+        event.setRegion("eu-west-1");
+        event.setContentId("movie-1042");
+        event.setMetrics(metrics);
+        return event;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.miniproject.repository;
+
+import com.example.miniproject.model.SessionMetadata;
+import com.example.miniproject.support.PostgresTestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class SessionRepositoryTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T10:00:00Z");
+
+    private SessionRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = PostgresTestDatabase.jdbcTemplate();
+        jdbcTemplate.update("DELETE FROM session_summaries WHERE session_id LIKE 'summary-%'");
+        repository = new SessionRepository(jdbcTemplate);
+    }
+
+    @Test
+    void reopenedSessionIsMergedIntoItsRow() {
+        repository.saveSummaries(List.of(segment("summary-merge", 0, 10, 4, 2000.0)));
+        repository.saveSummaries(List.of(segment("summary-merge", 600, 20, 6, 3000.0)));
+
+        SessionMetadata merged = repository.findById("summary-merge").orElseThrow();
+        assertEquals(10, merged.getEventCount());
+        assertEquals(10, merged.getErrorCount());
+        assertEquals(10 * 100, merged.getTotalBufferingMs());
+        assertEquals(2600.0, merged.getAverageBitrateKbps(), 0.001);
+        assertEquals(START, merged.getStartTime());
+        assertEquals(START.plusSeconds(605), merged.getLastEventTime());
+    }
+
+    @Test
+    void replayedSegmentIsSkipped() {
+        SessionMetadata segment = segment("summary-replay", 0, 10, 4, 2000.0);
+        repository.saveSummaries(List.of(segment));
+        repository.saveSummaries(List.of(segment));
+        // Rebuilt from a partial replay, straddling what was merged
+        repository.saveSummaries(List.of(segment("summary-replay", 2, 12, 4, 2000.0)));
+
+        assertEquals(4, repository.findById("summary-replay").orElseThrow().getEventCount());
+    }
+
+    private static SessionMetadata segment(String sessionId, long startSeconds, long firstOffset, long events,
+                                           double bitrate) {
+        SessionMetadata summary = new SessionMetadata();
+        summary.setSessionId(sessionId);
+        summary.setState("ENDED");
+        summary.setStartTime(START.plusSeconds(startSeconds));
+        summary.setLastEventTime(START.plusSeconds(startSeconds + 5));
+        summary.setEndTime(START.plusSeconds(startSeconds + 5));
+        summary.setCloseReason("ended");
+        summary.setRegion("eu");
+        summary.setEventCount(events);
+        summary.setErrorCount(events);
+        summary.setTotalBufferingMs(events * 100);
+        summary.setAverageBitrateKbps(bitrate);
+        summary.setFirstOffsets(Map.of(0, firstOffset));
+        summary.setLastOffsets(Map.of(0, firstOffset + events - 1));
+        return summary;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsAccumulatorTest {
+
+    @Test
+    void skipsNullMetricsAndNullValues() {
+        AnalyticsAccumulator accumulator = new AnalyticsAccumulator();
+        accumulator.add(event(null));
+        accumulator.add(event(metrics(null, null, null, null)));
+        accumulator.add(event(metrics(1000L, 200L, 3000, 1)));
+        accumulator.add(event(metrics(2000L, null, null, null)));
+
+        SessionAnalytics analytics = accumulator.toAnalytics();
+
+        assertEquals(4, accumulator.getEventCount());
+        // Averages only count events that carry the metric
+        assertEquals(1500.0, analytics.getAverageStartupTimeMs());
+        assertEquals(3000.0, analytics.getAverageBitrateKbps());
+        assertEquals(200, analytics.getTotalBufferingMs());
+        assertEquals(1, analytics.getTotalErrors());
+    }
+
+    @Test
+    void emptyInputYieldsZeros() {
+        AnalyticsAccumulator accumulator = new AnalyticsAccumulator().addAll(Collections.emptyList(), 0, 0);
+
+        SessionAnalytics analytics = accumulator.toAnalytics();
+
+        assertEquals(0, accumulator.getEventCount());
+        assertEquals(0.0, analytics.getAverageStartupTimeMs());
+        assertEquals(0.0, analytics.getAverageBitrateKbps());
+        assertEquals(0, analytics.getTotalBufferingMs());
+        assertEquals(0, analytics.getTotalErrors());
+    }
+
+    @Test
+    void combineMatchesSinglePass() {
+        SessionEvent a = event(metrics(1000L, 100L, 2000, 0));
+        SessionEvent b = event(null);
+        SessionEvent c = event(metrics(3000L, null, 4000, 2));
+
+        AnalyticsAccumulator whole = new AnalyticsAccumulator().addAll(Arrays.asList(a, b, c), 0, 3);
+        AnalyticsAccumulator left = new AnalyticsAccumulator().addAll(Arrays.asList(a, b, c), 0, 1);
+        AnalyticsAccumulator right = new AnalyticsAccumulator().addAll(Arrays.asList(a, b, c), 1, 3);
+
+        assertEquals(whole.toAnalytics(), right.combine(left).toAnalytics());
+        assertEquals(whole.getEventCount(), right.getEventCount());
+    }
+
+    static SessionEvent event(QualityMetrics metrics) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId("s1");
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.parse("2024-03-01T12:00:00Z"));
+        event.setMetrics(metrics);
+        return event;
+    }
+
+    static QualityMetrics metrics(Long startupTimeMs, Long bufferingMs, Integer bitrate, Integer errors) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setStartupTimeMs(startupTimeMs);
+        metrics.setBufferingDurationMs(bufferingMs);
+        metrics.setBitrate(bitrate);
+        metrics.setErrorCount(errors);
+        return metrics;
+    }
+}
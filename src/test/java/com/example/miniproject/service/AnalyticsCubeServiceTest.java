@@ -0,0 +1,134 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.AnalyticsCubeRow;
+import com.example.miniproject.model.CubeQuery;
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.support.PostgresTestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class AnalyticsCubeServiceTest {
+
+    private static final String REGION = "cube-test";
+
+    private final Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(3, ChronoUnit.HOURS);
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcScheduler jdbcScheduler;
+    private AnalyticsCubeService cubeService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = PostgresTestDatabase.jdbcTemplate();
+        jdbcTemplate.update("DELETE FROM session_events WHERE region = ?", REGION);
+
+        jdbcScheduler = new JdbcScheduler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jdbcScheduler, "threads", 2);
+        ReflectionTestUtils.setField(jdbcScheduler, "queueCapacity", 10);
+        jdbcScheduler.start();
+
+        cubeService = new AnalyticsCubeService(jdbcTemplate,
+                new DefaultListableBeanFactory().getBeanProvider(HotEventStore.class), jdbcScheduler);
+        ReflectionTestUtils.setField(cubeService, "defaultRangeHours", 24);
+        ReflectionTestUtils.setField(cubeService, "maxBuckets", 1000);
+        ReflectionTestUtils.setField(cubeService, "maxLimit", 1000);
+        ReflectionTestUtils.setField(cubeService, "closedAfterMs", 300000L);
+        ReflectionTestUtils.setField(cubeService, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(cubeService, "cacheTtlMs", 3600000L);
+        ReflectionTestUtils.setField(cubeService, "streamBuckets", 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcScheduler.stop();
+        jdbcTemplate.update("DELETE FROM session_events WHERE region = ?", REGION);
+    }
+
+    @Test
+    void lateEventEvictsItsCachedBucket() {
+        insert("cube-a", hour.plusSeconds(60));
+        insert("cube-b", hour.plusSeconds(120));
+        assertEquals(List.of(2L), events(query()));
+
+        // Stored without notifying: the closed bucket is served from the cache
+        insert("cube-c", hour.plusSeconds(180));
+        assertEquals(List.of(2L), events(query()));
+
+        SessionEvent late = insert("cube-d", hour.plusSeconds(240));
+        cubeService.onEventsStored(List.of(late));
+
+        assertEquals(List.of(4L), events(query()));
+    }
+
+    @Test
+    void streamsBucketsInOrderAcrossChunks() {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j <= i; j++) {
+                insert("cube-" + i + "-" + j, hour.plus(i, ChronoUnit.HOURS).plusSeconds(j));
+            }
+        }
+        CubeQuery query = query();
+        query.setTo(hour.plus(3, ChronoUnit.HOURS));
+
+        List<AnalyticsCubeRow> rows = cubeService.query(query).collectList().block();
+
+        assertEquals(List.of(1L, 2L, 3L), events(rows));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(hour.plus(i, ChronoUnit.HOURS), rows.get(i).getBucketStart());
+        }
+    }
+
+    @Test
+    void rejectsUnknownBucketWhenSubscribed() {
+        CubeQuery query = query();
+        query.setBucket("week");
+
+        assertThrows(IllegalArgumentException.class, () -> cubeService.query(query).blockLast());
+    }
+
+    private CubeQuery query() {
+        CubeQuery query = new CubeQuery();
+        query.setGroupBy(List.of("region"));
+        query.setBucket("hour");
+        query.setRegion(REGION);
+        query.setFrom(hour);
+        query.setTo(hour.plus(1, ChronoUnit.HOURS));
+        return query;
+    }
+
+    private List<Long> events(CubeQuery query) {
+        return events(cubeService.query(query).collectList().block());
+    }
+
+    private static List<Long> events(List<AnalyticsCubeRow> rows) {
+        List<Long> events = new ArrayList<>();
+        rows.forEach(row -> events.add(row.getEvents()));
+        return events;
+    }
+
+    private SessionEvent insert(String sessionId, Instant timestamp) {
+        jdbcTemplate.update("INSERT INTO session_events (session_id, event_type, timestamp, region) VALUES (?, ?, ?, ?)",
+                sessionId, "heartbeat", Timestamp.from(timestamp), REGION);
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(timestamp);
+        event.setRegion(REGION);
+        return event;
+    }
+}
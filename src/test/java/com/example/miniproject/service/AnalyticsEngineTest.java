@@ -0,0 +1,90 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.miniproject.service.AnalyticsAccumulatorTest.event;
+import static com.example.miniproject.service.AnalyticsAccumulatorTest.metrics;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsEngineTest {
+
+    private AnalyticsEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new AnalyticsEngine();
+        ReflectionTestUtils.setField(engine, "parallelThreshold", 1000);
+        ReflectionTestUtils.setField(engine, "leafSize", 128);
+    }
+
+    @Test
+    void parallelMatchesSequentialOnLargeInput() {
+        List<SessionEvent> events = randomEvents(200_000);
+
+        AnalyticsAccumulator parallel = engine.accumulate(events);
+        AnalyticsAccumulator sequential = new AnalyticsAccumulator().addAll(events, 0, events.size());
+
+        assertEquals(events.size(), parallel.getEventCount());
+        assertEquals(sequential.getStartupTimeSum(), parallel.getStartupTimeSum());
+        assertEquals(sequential.getStartupTimeCount(), parallel.getStartupTimeCount());
+        assertEquals(sequential.getBitrateSum(), parallel.getBitrateSum());
+        assertEquals(sequential.getBitrateCount(), parallel.getBitrateCount());
+        assertEquals(sequential.toAnalytics(), parallel.toAnalytics());
+        assertEquals(sequential.toAnalytics(), events.parallelStream().collect(AnalyticsAccumulator.collector()));
+    }
+
+    @Test
+    void acceptsListsWithoutRandomAccess() {
+        List<SessionEvent> events = randomEvents(5_000);
+
+        assertEquals(engine.analyze(events), engine.analyze(new LinkedList<>(events)));
+    }
+
+    @Test
+    void emptyInputYieldsZeros() {
+        SessionAnalytics analytics = engine.analyze(Collections.emptyList());
+
+        assertEquals(new AnalyticsAccumulator().toAnalytics(), analytics);
+    }
+
+    @Test
+    void percentilesComeFromTheEvents() {
+        List<SessionEvent> events = new ArrayList<>();
+        for (long v = 1; v <= 1_000; v++) {
+            events.add(event(metrics(v, v * 10, (int) v, null)));
+        }
+        events.add(event(null));
+
+        SessionAnalytics analytics = engine.analyzeWithPercentiles(events);
+
+        assertEquals(500, analytics.getStartupTimeP50Ms(), 500 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(990, analytics.getStartupTimeP99Ms(), 990 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(9_000, analytics.getBufferingP90Ms(), 9_000 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(500, analytics.getBitrateP50Kbps(), 500 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(engine.analyze(events).getTotalBufferingMs(), analytics.getTotalBufferingMs());
+    }
+
+    private static List<SessionEvent> randomEvents(int count) {
+        Random random = new Random(42);
+        List<SessionEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Every tenth event has no metrics and the others miss values at random
+            events.add(event(i % 10 == 0 ? null : metrics(
+                    random.nextInt(4) == 0 ? null : (long) random.nextInt(10_000),
+                    random.nextInt(4) == 0 ? null : (long) random.nextInt(5_000),
+                    random.nextInt(4) == 0 ? null : 500 + random.nextInt(8_000),
+                    random.nextInt(4) == 0 ? null : random.nextInt(3))));
+        }
+        return events;
+    }
+}
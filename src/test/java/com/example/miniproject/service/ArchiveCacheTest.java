@@ -0,0 +1,119 @@
+package com.example.miniproject.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private ArchiveCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = new ArchiveCache();
+        ReflectionTestUtils.setField(cache, "cacheDir", dir.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L);
+        cache.init();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        int threads = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> cache.get("segment.idx", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return new byte[]{1, 2, 3};
+                })));
+            }
+            // Let the other threads pile up behind the first load
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(new byte[]{1, 2, 3}, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("segment.idx", () -> fail("should be cached")));
+        try (Stream<Path> files = Files.list(dir.resolve("cache"))) {
+            assertEquals(1, files.count(), "no temporary files left behind");
+        }
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        assertThrows(IllegalStateException.class, () -> cache.get("missing", () -> {
+            throw new IllegalStateException("S3 unavailable");
+        }));
+
+        assertArrayEquals(new byte[]{7}, cache.get("missing", () -> new byte[]{7}));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxBytes() {
+        cache.get("a", () -> new byte[600]);
+        cache.get("b", () -> new byte[600]);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("a", () -> {
+            loads.incrementAndGet();
+            return new byte[600];
+        });
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void startupDeletesOnlyCacheEntries() throws IOException {
+        Path cacheDir = dir.resolve("shared");
+        Files.createDirectories(cacheDir.resolve("nested"));
+        Path entry = Files.write(cacheDir.resolve("0123456789abcdef0123456789abcdef"), new byte[]{1});
+        Path temp = Files.write(cacheDir.resolve("0123456789abcdef0123456789abcdef42.tmp"), new byte[]{1});
+        Path foreign = Files.write(cacheDir.resolve("notes.txt"), new byte[]{1});
+
+        ArchiveCache shared = new ArchiveCache();
+        ReflectionTestUtils.setField(shared, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(shared, "maxBytes", 1024L);
+        shared.init();
+
+        assertFalse(Files.exists(entry));
+        assertFalse(Files.exists(temp));
+        assertTrue(Files.exists(foreign));
+        assertTrue(Files.isDirectory(cacheDir.resolve("nested")));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.miniproject.service;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Writes segments with {@link ArchiveWriter} to a LocalStack S3 and reads sessions back through
+ * the index and ranged GETs of {@link ArchiveReader}.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ArchiveReaderTest {
+
+    private static final String BUCKET = "session-bucket";
+    private static final Instant HOUR = Instant.parse("2024-03-01T10:00:00Z");
+
+    @Container
+    static final LocalStackContainer LOCALSTACK = new LocalStackContainer(DockerImageName.parse("localstack/localstack:3.0"))
+            .withServices(LocalStackContainer.Service.S3);
+
+    @TempDir
+    Path cacheDir;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private AmazonS3 amazonS3;
+    private ArchiveWriter writer;
+    private ArchiveReader reader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        amazonS3 = spy(AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
+                        LOCALSTACK.getEndpointOverride(LocalStackContainer.Service.S3).toString(),
+                        LOCALSTACK.getRegion()))
+                .withCredentials(new AWSStaticCredentialsProvider(
+                        new BasicAWSCredentials(LOCALSTACK.getAccessKey(), LOCALSTACK.getSecretKey())))
+                .withPathStyleAccessEnabled(true)
+                .build());
+
+        writer = new ArchiveWriter(amazonS3, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(writer, "createBucket", true);
+        ReflectionTestUtils.setField(writer, "uploadThreads", 1);
+        ReflectionTestUtils.setField(writer, "uploadQueue", 4);
+        writer.start();
+
+        ArchiveCache cache = new ArchiveCache();
+        ReflectionTestUtils.setField(cache, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        cache.init();
+        reader = new ArchiveReader(amazonS3, objectMapper, cache);
+        ReflectionTestUtils.setField(reader, "bucketName", BUCKET);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    void readsOneSessionWithRangedGetsThroughTheIndex() {
+        List<SessionEvent> events = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            events.add(event("session-" + (i % 3), HOUR.plus(i, ChronoUnit.MINUTES)));
+        }
+        writer.writeSegment(ArchiveWriter.segmentKey("eu", HOUR, "reader-test"), events).join();
+        // Other hour, not listed for the range below
+        writer.writeSegment(ArchiveWriter.segmentKey("eu", HOUR.plus(2, ChronoUnit.HOURS), "reader-test"),
+                List.of(event("session-1", HOUR.plus(130, ChronoUnit.MINUTES)))).join();
+
+        List<SessionEvent> read = reader.readSession("session-1", HOUR, HOUR.plus(1, ChronoUnit.HOURS));
+
+        List<SessionEvent> expected = new ArrayList<>();
+        for (SessionEvent event : events) {
+            if (event.getSessionId().equals("session-1")) {
+                expected.add(event);
+            }
+        }
+        assertEquals(expected, read);
+        verify(amazonS3).getObject(argThat((GetObjectRequest request) -> request.getRange() != null
+                && request.getKey().endsWith("reader-test.ndjson.gz")));
+    }
+
+    @Test
+    void filtersByTimeAndServesRepeatReadsFromCache() {
+        List<SessionEvent> events = List.of(
+                event("session-a", HOUR.plus(5, ChronoUnit.MINUTES)),
+                event("session-a", HOUR.plus(50, ChronoUnit.MINUTES)),
+                event("session-b", HOUR.plus(20, ChronoUnit.MINUTES)));
+        writer.writeSegment(ArchiveWriter.segmentKey("us", HOUR, "filter-test"), events).join();
+        Instant from = HOUR.plus(30, ChronoUnit.MINUTES);
+        Instant to = HOUR.plus(1, ChronoUnit.HOURS);
+
+        List<SessionEvent> first = reader.readSession("session-a", from, to);
+        List<SessionEvent> second = reader.readSession("session-a", from, to);
+
+        assertEquals(List.of(events.get(1)), first);
+        assertEquals(first, second);
+        assertTrue(reader.readSession("session-c", HOUR, to).isEmpty());
+        // One index and one member fetched; the repeat read is answered from the cache
+        verify(amazonS3, times(2)).getObject(argThat((GetObjectRequest request) ->
+                request.getKey().contains("filter-test")));
+    }
+
+    private static SessionEvent event(String sessionId, Instant timestamp) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setBitrate(3000);
+        metrics.setBufferingDurationMs(120L);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(timestamp);
+        event.setMetrics(metrics);
+        event.setRegion("eu");
+        return event;
+    }
+}
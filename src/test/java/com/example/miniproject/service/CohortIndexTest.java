@@ -0,0 +1,114 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.CohortQuery;
+import com.example.miniproject.model.CohortResult;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CohortIndexTest {
+
+    private final Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(10, ChronoUnit.HOURS);
+
+    @TempDir
+    Path snapshotDir;
+
+    private CohortIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = newIndex();
+        index.onEventsStored(List.of(
+                event("s-error", "error", hour.plusSeconds(60), 1),
+                event("s-error", "heartbeat", hour.plus(2, ChronoUnit.HOURS), 0),
+                event("s-clean", "heartbeat", hour.plusSeconds(120), 0),
+                event("s-clean", "buffering", hour.plus(2, ChronoUnit.HOURS), 0)));
+    }
+
+    @Test
+    void flagsOnlyCountEventsInTheQueriedRange() {
+        CohortQuery early = query(hour, hour.plus(1, ChronoUnit.HOURS));
+        early.setHadError(true);
+        CohortQuery late = query(hour.plus(2, ChronoUnit.HOURS), hour.plus(3, ChronoUnit.HOURS));
+        late.setHadError(true);
+
+        assertEquals(List.of("s-error"), index.query(early).getSessionIds());
+        assertEquals(List.of(), index.query(late).getSessionIds());
+
+        late.setHadError(false);
+        assertEquals(2, index.query(late).getSessions());
+    }
+
+    @Test
+    void eventTypesOnlyCountEventsInTheQueriedRange() {
+        CohortQuery early = query(hour, hour.plus(1, ChronoUnit.HOURS));
+        early.setEventType(List.of("buffering"));
+        CohortQuery whole = query(hour, hour.plus(3, ChronoUnit.HOURS));
+        whole.setEventType(List.of("buffering"));
+        whole.setRegion(List.of("eu"));
+
+        assertEquals(0, index.query(early).getSessions());
+        assertEquals(List.of("s-clean"), index.query(whole).getSessionIds());
+    }
+
+    @Test
+    void snapshotRestoresTheIndex() {
+        CohortQuery query = query(hour, hour.plus(3, ChronoUnit.HOURS));
+        query.setRebuffered(true);
+        CohortResult before = index.query(query);
+
+        index.snapshot();
+        CohortIndex restored = newIndex();
+
+        assertEquals(before, restored.query(query));
+        assertEquals(List.of("s-clean"), before.getSessionIds());
+    }
+
+    private CohortIndex newIndex() {
+        CohortIndex cohortIndex = new CohortIndex(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cohortIndex, "retentionHours", 48);
+        ReflectionTestUtils.setField(cohortIndex, "bucketMs", 3_600_000L);
+        ReflectionTestUtils.setField(cohortIndex, "snapshotDir", snapshotDir.toString());
+        ReflectionTestUtils.setField(cohortIndex, "catchUpMs", 600_000L);
+        ReflectionTestUtils.setField(cohortIndex, "defaultLimit", 100);
+        ReflectionTestUtils.setField(cohortIndex, "maxLimit", 1000);
+        ReflectionTestUtils.setField(cohortIndex, "fetchSize", 100);
+        cohortIndex.init();
+        return cohortIndex;
+    }
+
+    private static CohortQuery query(Instant from, Instant to) {
+        CohortQuery query = new CohortQuery();
+        query.setFrom(from);
+        query.setTo(to);
+        return query;
+    }
+
+    private static SessionEvent event(String sessionId, String type, Instant timestamp, int errors) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setErrorCount(errors);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType(type);
+        event.setTimestamp(timestamp);
+        event.setMetrics(metrics);
+        event.setRegion("eu");
+        return event;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CopyEventWriterTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2024-03-01T10:15:30.123Z");
+
+    @Test
+    void quotesTextAndDoublesEmbeddedQuotes() {
+        SessionEvent event = event("s-1", "say \"hi\"");
+
+        assertEquals("\"s-1\",\"say \"\"hi\"\"\"," + Timestamp.from(TIMESTAMP) + ",1200,300,2500,0.25,1,"
+                + "\"tv\",\"eu\",\"c-1\",3,42\n", row(event));
+    }
+
+    @Test
+    void keepsCommasAndNewlinesInsideQuotes() {
+        SessionEvent event = event("a,b", "line\nbreak\r\n");
+        event.setContentId("x,\"y\"\nz");
+
+        String row = row(event);
+
+        assertTrue(row.startsWith("\"a,b\",\"line\nbreak\r\n\","));
+        assertTrue(row.endsWith(",\"x,\"\"y\"\"\nz\",3,42\n"));
+    }
+
+    @Test
+    void writesNullsAsUnquotedEmptyFieldsAndEmptyStringsQuoted() {
+        SessionEvent event = event("s-1", "");
+        event.setMetrics(null);
+        event.setDeviceType(null);
+        event.setRegion(null);
+        event.setContentId(null);
+        event.setKafkaPartition(null);
+        event.setKafkaOffset(null);
+
+        assertEquals("\"s-1\",\"\"," + Timestamp.from(TIMESTAMP) + ",,,,,,,,,,\n", row(event));
+    }
+
+    private static String row(SessionEvent event) {
+        StringBuilder csv = new StringBuilder();
+        CopyEventWriter.appendRow(csv, event);
+        return csv.toString();
+    }
+
+    private static SessionEvent event(String sessionId, String eventType) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setStartupTimeMs(1200L);
+        metrics.setBufferingDurationMs(300L);
+        metrics.setBitrate(2500);
+        metrics.setBufferingRatio(0.25);
+        metrics.setErrorCount(1);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType(eventType);
+        event.setTimestamp(TIMESTAMP);
+        event.setMetrics(metrics);
+        event.setDeviceType("tv");
+        event.setRegion("eu");
+        event.setContentId("c-1");
+        event.setKafkaPartition(3);
+        event.setKafkaOffset(42L);
+        return event;
+    }
+}
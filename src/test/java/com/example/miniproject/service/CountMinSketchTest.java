@@ -0,0 +1,67 @@
+package com.example.miniproject.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void neverUnderestimatesAndMerges() {
+        CountMinSketch left = new CountMinSketch(4, 256);
+        CountMinSketch right = new CountMinSketch(4, 256);
+        for (int i = 0; i < 1_000; i++) {
+            left.add("item-" + (i % 100), 1);
+            right.add("item-" + (i % 100), 2);
+        }
+
+        left.merge(CountMinSketch.fromBytes(right.toBytes()));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(left.estimate("item-" + i) >= 30);
+        }
+    }
+
+    @Test
+    void overestimateStaysWithinTheWidthBound() {
+        // With width w and depth d, an estimate exceeds the true count by more than e/w of the
+        // total with probability at most e^-d, under 2% here
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        long total = 0;
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add("item-" + i, 1 + i % 3);
+            total += 1 + i % 3;
+        }
+
+        long bound = (long) Math.ceil(Math.E / 1024 * total);
+        int outliers = 0;
+        for (int i = 0; i < 5_000; i++) {
+            long estimate = sketch.estimate("item-" + i);
+            assertTrue(estimate >= 1 + i % 3);
+            if (estimate - (1 + i % 3) > bound) {
+                outliers++;
+            }
+        }
+        assertTrue(outliers <= 5_000 / 20, outliers + " estimates beyond the bound");
+        assertEquals(0, new CountMinSketch(4, 1024).estimate("missing"));
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        CountMinSketch sketch = new CountMinSketch(3, 64);
+        sketch.add("x", 1L << 40);
+        sketch.add("y", 5);
+
+        CountMinSketch decoded = CountMinSketch.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch.estimate("x"), decoded.estimate("x"));
+        assertEquals(sketch.estimate("y"), decoded.estimate("y"));
+    }
+
+    @Test
+    void rejectsMergingDifferentShapes() {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new CountMinSketch(4, 128)));
+    }
+}
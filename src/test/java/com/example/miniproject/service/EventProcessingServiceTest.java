@@ -0,0 +1,149 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EventProcessingServiceTest {
+
+    private static final String TOPIC = EventProcessingService.TOPIC;
+
+    private StorageService storageService;
+    private SessionRollupService rollupService;
+    private KeyedExecutor keyedExecutor;
+    private EventProcessingService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        storageService = mock(StorageService.class);
+        rollupService = mock(SessionRollupService.class);
+        keyedExecutor = new KeyedExecutor();
+        ReflectionTestUtils.setField(keyedExecutor, "configuredLanes", 2);
+        keyedExecutor.start();
+        service = new EventProcessingService(mock(KafkaTemplate.class), mock(KafkaTemplate.class), storageService,
+                keyedExecutor, rollupService, List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyedExecutor.stop();
+    }
+
+    @Test
+    void partialLaneFailureRetriesFromFailedLaneWithOffsetKeys() {
+        String good = sessionOnLane(0);
+        String bad = sessionOnLane(1);
+        List<ConsumerRecord<String, SessionEvent>> records = List.of(
+                record(good, 100), record(bad, 101), record(good, 102), record(bad, 103));
+        TransientDataAccessResourceException down = new TransientDataAccessResourceException("database down");
+        doThrow(down).when(storageService).storeEvents(argThat(events -> events.get(0).getSessionId().equals(bad)));
+        doThrow(down).when(storageService).storeEvent(argThat(event -> event.getSessionId().equals(bad)));
+
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+                () -> service.processEvents(records));
+
+        // The good lane's record at index 2 is stored although the retry starts at index 1,
+        // so it is redelivered; its offset key lets the writers skip it
+        assertEquals(1, failure.getIndex());
+        verify(storageService).storeEvents(argThat(events -> events.size() == 2
+                && events.get(0).getKafkaOffset() == 100L && events.get(1).getKafkaOffset() == 102L
+                && events.get(0).getKafkaPartition() == 0));
+        verify(rollupService).apply(argThat(stored -> stored.size() == 2
+                && stored.get(0).value().getSessionId().equals(good)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void observersOnlySeeRecordsBeforeTheRetriedOne() {
+        List<List<SessionEvent>> observed = new ArrayList<>();
+        service = new EventProcessingService(mock(KafkaTemplate.class), mock(KafkaTemplate.class), storageService,
+                keyedExecutor, rollupService, List.of(events -> observed.add(List.copyOf(events))));
+        String good = sessionOnLane(0);
+        String bad = sessionOnLane(1);
+        List<ConsumerRecord<String, SessionEvent>> records = List.of(
+                record(good, 100), record(bad, 101), record(good, 102), record(bad, 103));
+        doThrow(new TransientDataAccessResourceException("database down")).when(storageService)
+                .storeEvents(argThat(events -> events.get(0).getSessionId().equals(bad)));
+        doThrow(new TransientDataAccessResourceException("database down")).when(storageService)
+                .storeEvent(argThat(event -> event.getSessionId().equals(bad)));
+
+        assertThrows(BatchListenerFailedException.class, () -> service.processEvents(records));
+        // The retry from index 1 redelivers the stored record at index 2 and notifies it then
+        reset(storageService);
+        service.processEvents(records.subList(1, 4));
+
+        assertEquals(List.of(List.of(records.get(0).value()),
+                List.of(records.get(1).value(), records.get(2).value(), records.get(3).value())), observed);
+    }
+
+    @Test
+    void fullySuccessfulPollDoesNotThrow() {
+        List<ConsumerRecord<String, SessionEvent>> records = List.of(
+                record(sessionOnLane(0), 1), record(sessionOnLane(1), 2));
+
+        service.processEvents(records);
+
+        verify(storageService, times(2)).storeEvents(anyList());
+        verify(storageService, never()).storeEvent(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishSendsOffTheCallingThread() throws Exception {
+        KafkaTemplate<String, SessionEvent> kafkaTemplate = mock(KafkaTemplate.class);
+        List<String> sendThreads = new CopyOnWriteArrayList<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            sendThreads.add(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture(null);
+        });
+        service = new EventProcessingService(kafkaTemplate, mock(KafkaTemplate.class), storageService,
+                keyedExecutor, rollupService, List.of());
+        ReflectionTestUtils.setField(service, "maxInFlight", 10);
+        ReflectionTestUtils.setField(service, "publishThreads", 1);
+        ReflectionTestUtils.setField(service, "publishQueueCapacity", 10);
+        service.init();
+        try {
+            service.publishEvents(List.of(record("s-1", 1).value(), record("s-2", 2).value()))
+                    .get(10, TimeUnit.SECONDS);
+        } finally {
+            service.stop();
+        }
+
+        assertEquals(List.of("publish-0", "publish-0"), sendThreads);
+    }
+
+    private String sessionOnLane(int lane) {
+        for (int i = 0; ; i++) {
+            String sessionId = "session-" + i;
+            if (keyedExecutor.laneFor(sessionId) == lane) {
+                return sessionId;
+            }
+        }
+    }
+
+    private static ConsumerRecord<String, SessionEvent> record(String sessionId, long offset) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.now());
+        return new ConsumerRecord<>(TOPIC, 0, offset, sessionId, event);
+    }
+}
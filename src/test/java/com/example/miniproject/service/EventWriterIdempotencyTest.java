@@ -0,0 +1,93 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.support.PostgresTestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class EventWriterIdempotencyTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = PostgresTestDatabase.jdbcTemplate();
+        jdbcTemplate.update("DELETE FROM session_events WHERE session_id LIKE 'idem-%'");
+    }
+
+    @Test
+    void batchWriterSkipsRedeliveredRecords() {
+        JdbcBatchEventWriter writer = new JdbcBatchEventWriter(jdbcTemplate);
+        ReflectionTestUtils.setField(writer, "batchSize", 500);
+
+        writer.write(List.of(event("idem-batch", 0, 10), event("idem-batch", 0, 11)));
+        // Redelivery of the same poll plus one new record
+        writer.write(List.of(event("idem-batch", 0, 10), event("idem-batch", 0, 11), event("idem-batch", 0, 12)));
+
+        assertEquals(3, countRows("idem-batch"));
+    }
+
+    @Test
+    void copyWriterSkipsRedeliveredRecords() throws InterruptedException {
+        CopyEventWriter writer = new CopyEventWriter(jdbcTemplate, PostgresTestDatabase.transactionManager(),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "bufferCapacity", 1000);
+        ReflectionTestUtils.setField(writer, "flushSize", 100);
+        ReflectionTestUtils.setField(writer, "maxAgeMs", 10L);
+        writer.start();
+        try {
+            writer.write(List.of(event("idem-copy", 1, 20), event("idem-copy", 1, 21)));
+            writer.write(List.of(event("idem-copy", 1, 21), event("idem-copy", 1, 22)));
+            writer.writeNow(List.of(event("idem-copy", 1, 22)));
+        } finally {
+            writer.stop();
+        }
+
+        assertEquals(3, countRows("idem-copy"));
+    }
+
+    @Test
+    void rowsWithoutKafkaRecordAreNotDeduplicated() {
+        JdbcBatchEventWriter writer = new JdbcBatchEventWriter(jdbcTemplate);
+        ReflectionTestUtils.setField(writer, "batchSize", 500);
+        SessionEvent event = event("idem-none", 0, 0);
+        event.setKafkaPartition(null);
+        event.setKafkaOffset(null);
+
+        writer.write(List.of(event, event));
+
+        assertEquals(2, countRows("idem-none"));
+    }
+
+    private int countRows(String sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM session_events WHERE session_id = ?",
+                Integer.class, sessionId);
+    }
+
+    private static SessionEvent event(String sessionId, int partition, long offset) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setBitrate(2500);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        // Same record, same timestamp: part of the unique key on the partitioned table
+        event.setTimestamp(Instant.parse("2024-03-01T10:00:00Z").plus(offset, ChronoUnit.SECONDS));
+        event.setMetrics(metrics);
+        event.setKafkaPartition(partition);
+        event.setKafkaOffset(offset);
+        return event;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.HeavyHitter;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HeavyHitterTrackerTest {
+
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private ReactiveValueOperations<String, String> valueOperations;
+    private HeavyHitterTracker tracker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(ReactiveRedisTemplate.class);
+        valueOperations = mock(ReactiveValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(Flux.empty());
+
+        tracker = new HeavyHitterTracker(redisTemplate);
+        ReflectionTestUtils.setField(tracker, "capacity", 16);
+        ReflectionTestUtils.setField(tracker, "startsWidth", 256);
+        ReflectionTestUtils.setField(tracker, "epochMs", 60_000L);
+        ReflectionTestUtils.setField(tracker, "epochCount", 5);
+        ReflectionTestUtils.setField(tracker, "minStarts", 2L);
+        ReflectionTestUtils.setField(tracker, "maxK", 100);
+        ReflectionTestUtils.setField(tracker, "publishIntervalMs", 5_000L);
+        tracker.init();
+    }
+
+    @Test
+    void clusterRankingMergesOtherInstances() {
+        tracker.onEventsStored(List.of(event("heartbeat", "eu", 5), event("heartbeat", "us", 3)));
+        SpaceSaving remote = new SpaceSaving(16);
+        remote.add("us", 4);
+        remote.add("ap", 6);
+        remoteSummaries("region:errors", remote.toString());
+
+        List<HeavyHitter> local = tracker.top("region", "errors", 3, false).block();
+        List<HeavyHitter> cluster = tracker.top("region", "errors", 3, true).block();
+
+        assertEquals(List.of("eu", "us"), items(local));
+        assertEquals(List.of("us", "ap", "eu"), items(cluster));
+        assertEquals(7, cluster.get(0).getValue());
+        // The local ranking is unchanged by the merge
+        assertEquals(List.of("eu", "us"), items(tracker.top("region", "errors", 3, false).block()));
+    }
+
+    @Test
+    void clusterFailedStartRateUsesMergedStarts() {
+        tracker.onEventsStored(List.of(event("start", "eu", 1), event("start", "eu", 0)));
+        SpaceSaving failed = new SpaceSaving(16);
+        failed.add("eu", 1);
+        CountMinSketch starts = new CountMinSketch(4, 256);
+        starts.add("eu", 2);
+        remoteSummaries("region:failedStartRate", failed.toString());
+        remoteSummaries("region:starts", Base64.getEncoder().encodeToString(starts.toBytes()));
+
+        HeavyHitter eu = tracker.top("region", "failedStartRate", 1, true).block().get(0);
+
+        assertEquals("eu", eu.getItem());
+        assertEquals(4, eu.getStarts());
+        assertEquals(0.5, eu.getValue());
+    }
+
+    @Test
+    void skipsUnreadableRemoteSummaries() {
+        tracker.onEventsStored(List.of(event("start", "eu", 1), event("start", "eu", 1)));
+        CountMinSketch otherShape = new CountMinSketch(4, 128);
+        otherShape.add("eu", 100);
+        remoteSummaries("region:starts", Base64.getEncoder().encodeToString(otherShape.toBytes()));
+
+        HeavyHitter eu = tracker.top("region", "failedStartRate", 1, true).block().get(0);
+
+        assertEquals(2, eu.getStarts());
+        assertEquals(1.0, eu.getValue());
+    }
+
+    private void remoteSummaries(String field, String value) {
+        String key = "heavy-hitters:" + field + ":other-instance";
+        when(redisTemplate.scan(argThat(options -> options != null
+                && ("heavy-hitters:" + field + ":*").equals(options.getPattern()))))
+                .thenReturn(Flux.just(key));
+        when(valueOperations.get(key)).thenReturn(Mono.just(value));
+    }
+
+    private static List<String> items(List<HeavyHitter> hitters) {
+        List<String> items = new ArrayList<>();
+        hitters.forEach(hitter -> items.add(hitter.getItem()));
+        return items;
+    }
+
+    private static SessionEvent event(String type, String region, int errors) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setErrorCount(errors);
+        SessionEvent event = new SessionEvent();
+        event.setSessionId("s-" + region);
+        event.setEventType(type);
+        event.setTimestamp(Instant.now());
+        event.setRegion(region);
+        event.setMetrics(metrics);
+        return event;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.AnalyticsCubeRow;
+import com.example.miniproject.model.CubeQuery;
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks {@link HotEventStore#cube} against what the SQL query of {@link AnalyticsCubeService}
+ * returns for the same rows: averages over non-null values (0 when there are none), distinct
+ * sessions, top-N per bucket and buckets in local wall-clock time.
+ */
+class HotEventStoreTest {
+
+    private final Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(3, ChronoUnit.HOURS);
+    private final TimeZone defaultZone = TimeZone.getDefault();
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // Buckets are local time; UTC keeps the hour above on a bucket boundary
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        jdbcTemplate = mock(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    void averagesSkipNullMetricsLikeSql() {
+        HotEventStore store = newStore(100, 1000);
+        store.onEventsStored(List.of(
+                event("s-1", "eu", hour.plusSeconds(1), 800L, 100L, 3000, 1),
+                event("s-1", "eu", hour.plusSeconds(2), null, null, null, null),
+                event("s-2", "eu", hour.plusSeconds(3), 1200L, null, 2000, 0),
+                event("s-3", "us", hour.plusSeconds(4), null, null, null, null)));
+
+        List<AnalyticsCubeRow> rows = store.cube(List.of("region"), null, hour, hour.plus(1, ChronoUnit.HOURS),
+                new CubeQuery(), "events", 10);
+
+        assertEquals(2, rows.size());
+        AnalyticsCubeRow eu = rows.get(0);
+        assertEquals("eu", eu.getRegion());
+        assertEquals(2, eu.getSessions());
+        assertEquals(3, eu.getEvents());
+        assertEquals(1000.0, eu.getAverageStartupTimeMs());
+        assertEquals(2500.0, eu.getAverageBitrateKbps());
+        assertEquals(100, eu.getTotalBufferingMs());
+        assertEquals(1, eu.getTotalErrors());
+        // avg() over only nulls is NULL, which the SQL row mapper reads as 0
+        AnalyticsCubeRow us = rows.get(1);
+        assertEquals(0.0, us.getAverageStartupTimeMs());
+        assertEquals(0.0, us.getAverageBitrateKbps());
+        assertEquals(0, us.getTotalBufferingMs());
+    }
+
+    @Test
+    void sessionsAreDistinctAcrossChunks() {
+        HotEventStore store = newStore(2, 1000);
+        for (int i = 0; i < 5; i++) {
+            store.onEventsStored(List.of(event("s-1", "eu", hour.plusSeconds(i), null, null, null, null)));
+        }
+        store.onEventsStored(List.of(event("s-2", "eu", hour.plusSeconds(10), null, null, null, null)));
+
+        List<AnalyticsCubeRow> rows = store.cube(List.of(), null, hour, hour.plus(1, ChronoUnit.HOURS),
+                new CubeQuery(), "events", 10);
+
+        assertEquals(1, rows.size());
+        assertEquals(2, rows.get(0).getSessions());
+        assertEquals(6, rows.get(0).getEvents());
+    }
+
+    @Test
+    void bucketedResultsKeepTopNPerBucket() {
+        HotEventStore store = newStore(3, 1000);
+        store.onEventsStored(List.of(
+                event("s-1", "eu", hour.plusSeconds(1), null, null, null, null),
+                event("s-2", "eu", hour.plusSeconds(2), null, null, null, null),
+                event("s-3", "us", hour.plusSeconds(3), null, null, null, null),
+                event("s-4", "us", hour.plus(1, ChronoUnit.HOURS), null, null, null, null),
+                event("s-5", "us", hour.plus(1, ChronoUnit.HOURS).plusSeconds(1), null, null, null, null),
+                event("s-6", "eu", hour.plus(1, ChronoUnit.HOURS).plusSeconds(2), null, null, null, null)));
+        CubeQuery query = new CubeQuery();
+
+        List<AnalyticsCubeRow> rows = store.cube(List.of("region"), ChronoUnit.HOURS, hour,
+                hour.plus(2, ChronoUnit.HOURS), query, "sessions", 1);
+
+        assertEquals(2, rows.size());
+        assertEquals(List.of(hour, hour.plus(1, ChronoUnit.HOURS)),
+                List.of(rows.get(0).getBucketStart(), rows.get(1).getBucketStart()));
+        assertEquals(List.of("eu", "us"), List.of(rows.get(0).getRegion(), rows.get(1).getRegion()));
+
+        query.setRegion("us");
+        List<AnalyticsCubeRow> filtered = store.cube(List.of(), ChronoUnit.HOURS, hour,
+                hour.plus(2, ChronoUnit.HOURS), query, "events", 10);
+        assertEquals(List.of(1L, 2L), List.of(filtered.get(0).getEvents(), filtered.get(1).getEvents()));
+    }
+
+    @Test
+    void hourBucketsFollowLocalTimeAcrossDaylightSavingTime() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        // 02:30 CEST and 02:30 CET fall in the same wall-clock hour, like date_trunc on the
+        // stored local timestamp; it maps back to the earlier offset
+        Instant firstTwoThirty = Instant.parse("2024-10-27T00:30:00Z");
+        Instant secondTwoThirty = Instant.parse("2024-10-27T01:30:00Z");
+        Instant threeTen = Instant.parse("2024-10-27T02:10:00Z");
+        // One chunk spanning the change, and chunks of a single offset each
+        for (int chunkRows : new int[]{100, 1}) {
+            HotEventStore store = newStore(chunkRows, 1000);
+            ReflectionTestUtils.setField(store, "retentionHours", 10 * 365 * 24);
+            store.onEventsStored(List.of(
+                    event("s-1", "eu", firstTwoThirty, null, null, null, null),
+                    event("s-1", "eu", secondTwoThirty, null, null, null, null),
+                    event("s-1", "eu", threeTen, null, null, null, null)));
+
+            List<AnalyticsCubeRow> rows = store.cube(List.of(), ChronoUnit.HOURS,
+                    Instant.parse("2024-10-26T22:00:00Z"), Instant.parse("2024-10-27T04:00:00Z"),
+                    new CubeQuery(), "events", 10);
+
+            assertEquals(List.of(Instant.parse("2024-10-27T00:00:00Z"), Instant.parse("2024-10-27T02:00:00Z")),
+                    List.of(rows.get(0).getBucketStart(), rows.get(1).getBucketStart()), "chunk rows " + chunkRows);
+            assertEquals(List.of(2L, 1L), List.of(rows.get(0).getEvents(), rows.get(1).getEvents()));
+        }
+    }
+
+    @Test
+    void capacityEvictionMovesTheCoveredRange() {
+        HotEventStore store = newStore(2, 4);
+        for (int i = 0; i < 6; i++) {
+            store.onEventsStored(List.of(event("s-" + i, "eu", hour.plusSeconds(i), null, null, null, null)));
+        }
+
+        // The oldest chunk (events 0 and 1) is dropped to stay within max-rows
+        assertFalse(store.covers(hour.plusSeconds(1)));
+        assertTrue(store.covers(hour.plusSeconds(1).plusMillis(1)));
+        assertFalse(store.covers(Instant.now().minus(7, ChronoUnit.HOURS)));
+        assertEquals(4, store.cube(List.of(), null, hour, hour.plus(1, ChronoUnit.HOURS), new CubeQuery(),
+                "events", 10).get(0).getEvents());
+    }
+
+    @Test
+    void expireDropsChunksPastRetention() {
+        HotEventStore store = newStore(1, 1000);
+        store.onEventsStored(List.of(
+                event("s-old", "eu", hour, null, null, null, null),
+                event("s-new", "eu", Instant.now().minus(10, ChronoUnit.MINUTES), null, null, null, null)));
+
+        ReflectionTestUtils.setField(store, "retentionHours", 1);
+        store.expire();
+
+        List<AnalyticsCubeRow> rows = store.cube(List.of(), null, hour, Instant.now(), new CubeQuery(), "events", 10);
+        assertEquals(1, rows.get(0).getEvents());
+        assertEquals(1, rows.get(0).getSessions());
+    }
+
+    @Test
+    void failedLoadOnlyCoversWhatIsIngestedAfterwards() {
+        doThrow(new DataAccessResourceFailureException("database down")).when(jdbcTemplate)
+                .query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        HotEventStore store = newStore(100, 1000);
+
+        assertFalse(store.covers(Instant.now().minus(1, ChronoUnit.MINUTES)));
+        assertTrue(store.covers(Instant.now().plusSeconds(1)));
+    }
+
+    @Test
+    void redeliveredRecordsAreNotAppendedTwice() {
+        List<Map<String, Object>> loaded = List.of(
+                row("s-1", hour.plusSeconds(1), 0, 10L),
+                row("s-1", hour.plusSeconds(2), 0, 11L),
+                row("s-2", hour.plusSeconds(3), null, null));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map<String, Object> values : loaded) {
+                handler.processRow(resultSet(values));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        HotEventStore store = newStore(100, 1000);
+
+        // Stored before the restart but not committed: offsets 10 and 11 come again
+        store.onEventsStored(List.of(keyed("s-1", hour.plusSeconds(1), 0, 10L),
+                keyed("s-1", hour.plusSeconds(2), 0, 11L), keyed("s-1", hour.plusSeconds(4), 0, 12L)));
+        store.onEventsStored(List.of(keyed("s-3", hour.plusSeconds(5), 1, 10L)));
+
+        assertTrue(store.covers(hour));
+        assertEquals(5, store.cube(List.of(), null, hour, hour.plus(1, ChronoUnit.HOURS), new CubeQuery(),
+                "events", 10).get(0).getEvents());
+    }
+
+    private HotEventStore newStore(int chunkRows, long maxRows) {
+        HotEventStore store = new HotEventStore(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "retentionHours", 6);
+        ReflectionTestUtils.setField(store, "chunkRows", chunkRows);
+        ReflectionTestUtils.setField(store, "maxRows", maxRows);
+        ReflectionTestUtils.setField(store, "fetchSize", 100);
+        store.init();
+        return store;
+    }
+
+    private static SessionEvent event(String sessionId, String region, Instant timestamp, Long startupTimeMs,
+                                      Long bufferingMs, Integer bitrate, Integer errors) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setStartupTimeMs(startupTimeMs);
+        metrics.setBufferingDurationMs(bufferingMs);
+        metrics.setBitrate(bitrate);
+        metrics.setErrorCount(errors);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(timestamp);
+        event.setMetrics(metrics);
+        event.setRegion(region);
+        return event;
+    }
+
+    private static SessionEvent keyed(String sessionId, Instant timestamp, int partition, long offset) {
+        SessionEvent event = event(sessionId, "eu", timestamp, null, null, null, null);
+        event.setKafkaPartition(partition);
+        event.setKafkaOffset(offset);
+        return event;
+    }
+
+    private static Map<String, Object> row(String sessionId, Instant timestamp, Integer partition, Long offset) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("session_id", sessionId);
+        values.put("event_type", "heartbeat");
+        values.put("timestamp", Timestamp.from(timestamp));
+        values.put("region", "eu");
+        values.put("kafka_partition", partition);
+        values.put("kafka_offset", offset);
+        return values;
+    }
+
+    /**
+     * A result set positioned on one row; absent columns read as SQL NULL.
+     */
+    private static ResultSet resultSet(Map<String, Object> values) {
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("wasNull")) {
+                        return wasNull[0];
+                    }
+                    if (!method.getName().startsWith("get") || args == null || !(args[0] instanceof String)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    Object value = values.get(args[0]);
+                    wasNull[0] = value == null;
+                    switch (method.getName()) {
+                        case "getLong":
+                            return value != null ? ((Number) value).longValue() : 0L;
+                        case "getInt":
+                            return value != null ? ((Number) value).intValue() : 0;
+                        case "getDouble":
+                            return value != null ? ((Number) value).doubleValue() : 0.0;
+                        default:
+                            return value;
+                    }
+                });
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.miniproject.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesDistinctCountWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 50_000; i++) {
+            sketch.add("session-" + i);
+            // Repeats do not count
+            sketch.add("session-" + (i / 2));
+        }
+
+        assertEquals(50_000, sketch.estimate(), 50_000 * 0.1);
+    }
+
+    @Test
+    void smallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 100; i++) {
+            sketch.add("session-" + i);
+        }
+
+        assertEquals(100, sketch.estimate(), 3);
+    }
+
+    @Test
+    void mergeCountsTheUnion() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        for (int i = 0; i < 20_000; i++) {
+            left.add("session-" + i);
+            right.add("session-" + (i + 10_000));
+        }
+
+        left.merge(right);
+
+        assertEquals(30_000, left.estimate(), 30_000 * 0.05);
+        assertThrows(IllegalArgumentException.class, () -> left.merge(new HyperLogLog(10)));
+    }
+}
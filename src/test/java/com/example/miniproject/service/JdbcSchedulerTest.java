@@ -0,0 +1,64 @@
+package com.example.miniproject.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcSchedulerTest {
+
+    private JdbcScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new JdbcScheduler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "threads", 1);
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", 1);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    void pageReleasesTheSourceAndThreadBeforeTheClientReads() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        Flux<Integer> cursor = Flux.range(1, 100).doFinally(signal -> closed.countDown());
+
+        // A client that reads one row and then stalls
+        scheduler.page(cursor).subscribe(new BaseSubscriber<Integer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+        });
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(42, scheduler.call(() -> 42).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void rejectsOnceTheQueueIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.call(() -> release.await(5, TimeUnit.SECONDS)).subscribe();
+        scheduler.call(() -> true).subscribe();
+        try {
+            assertThrows(RejectedExecutionException.class, () -> scheduler.call(() -> true).block());
+        } finally {
+            release.countDown();
+        }
+    }
+}
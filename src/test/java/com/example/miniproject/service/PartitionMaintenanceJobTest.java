@@ -0,0 +1,95 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.support.PostgresTestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@Testcontainers(disabledWithoutDocker = true)
+class PartitionMaintenanceJobTest {
+
+    private final LocalDate today = LocalDate.now();
+    private final LocalDate archivedDay = today.minusDays(30);
+    private final LocalDate unarchivedDay = today.minusDays(20);
+
+    private JdbcTemplate jdbcTemplate;
+    private PartitionMaintenanceJob job;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = PostgresTestDatabase.jdbcTemplate();
+        job = new PartitionMaintenanceJob(jdbcTemplate);
+        ReflectionTestUtils.setField(job, "retentionDays", 7);
+        ReflectionTestUtils.setField(job, "premakeDays", 1);
+        ReflectionTestUtils.setField(job, "requireArchive", true);
+
+        createPartition(archivedDay);
+        createPartition(unarchivedDay);
+        jdbcTemplate.update("INSERT INTO session_events (session_id, event_type, timestamp) VALUES (?, ?, ?)",
+                "partition-test", "heartbeat", Timestamp.valueOf(archivedDay.atTime(12, 0)));
+        // Tiering has archived past the first partition but not the second
+        jdbcTemplate.update("INSERT INTO archive_checkpoints (job, last_timestamp, last_id, updated_at)" +
+                        " VALUES (?, ?, 0, now()) ON CONFLICT (job) DO UPDATE SET last_timestamp = EXCLUDED.last_timestamp",
+                RetentionTieringJob.JOB_NAME, Timestamp.valueOf(archivedDay.plusDays(2).atStartOfDay()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(archivedDay));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(unarchivedDay));
+        jdbcTemplate.update("DELETE FROM archive_checkpoints WHERE job = ?", RetentionTieringJob.JOB_NAME);
+    }
+
+    @Test
+    void dropsArchivedExpiredPartitionDespiteDefaultPartition() {
+        job.maintain();
+
+        assertFalse(tableExists(partitionName(archivedDay)));
+        assertTrue(tableExists(partitionName(unarchivedDay)));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM session_events WHERE session_id = 'partition-test'", Integer.class));
+    }
+
+    @Test
+    void dropsPartitionsLeftBehindByAQuietTieringRun() {
+        // Nothing is left to archive between the checkpoint and the cutoff
+        RetentionTieringJob tiering = new RetentionTieringJob(jdbcTemplate,
+                new TransactionTemplate(PostgresTestDatabase.transactionManager()), mock(ArchiveWriter.class));
+        ReflectionTestUtils.setField(tiering, "retentionDays", 7);
+        ReflectionTestUtils.setField(tiering, "partitioned", true);
+        ReflectionTestUtils.setField(tiering, "enabled", true);
+        ReflectionTestUtils.setField(tiering, "chunkSize", 100);
+        ReflectionTestUtils.setField(tiering, "maxRowsPerRun", 1000);
+        tiering.run();
+
+        job.maintain();
+
+        assertFalse(tableExists(partitionName(archivedDay)));
+        assertFalse(tableExists(partitionName(unarchivedDay)));
+    }
+
+    private void createPartition(LocalDate day) {
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF session_events FOR VALUES FROM ('%s') TO ('%s')",
+                partitionName(day), day, day.plusDays(1)));
+    }
+
+    private boolean tableExists(String name) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "session_events_p" + DateTimeFormatter.BASIC_ISO_DATE.format(day);
+    }
+}
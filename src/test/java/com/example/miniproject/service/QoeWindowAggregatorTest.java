@@ -0,0 +1,120 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QoeWindow;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QoeWindowAggregatorTest {
+
+    // Minute-aligned, far enough back that the clock-skew cap never applies
+    private static final long BASE = Math.floorDiv(System.currentTimeMillis() - 3_600_000L, 60_000L) * 60_000L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private QoeWindowAggregator aggregator;
+    private final List<QoeWindow> published = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        aggregator = new QoeWindowAggregator(meterRegistry);
+        ReflectionTestUtils.setField(aggregator, "paneMs", 10_000L);
+        ReflectionTestUtils.setField(aggregator, "windowMs", new long[]{10_000L, 60_000L});
+        ReflectionTestUtils.setField(aggregator, "allowedLatenessMs", 5_000L);
+        ReflectionTestUtils.setField(aggregator, "exactSessions", 64);
+        ReflectionTestUtils.setField(aggregator, "sessionsPrecision", 10);
+        aggregator.init();
+        aggregator.stream().subscribe(published::add);
+    }
+
+    @Test
+    void eventsBehindTheWatermarkAreDroppedAsLate() {
+        aggregator.onEventsStored(List.of(event("a", BASE + 65_000)));
+        // Watermark is now BASE + 60s, so the first pane is final
+        aggregator.onEventsStored(List.of(event("b", BASE + 1_000), event("c", BASE + 62_000)));
+
+        assertEquals(1.0, meterRegistry.counter("session.qoe.late.events").count());
+        aggregator.publish();
+        assertEquals(2, sliding(60_000L).getEvents());
+    }
+
+    @Test
+    void tumblingWindowIsPublishedOnceWhenTheWatermarkPassesIt() {
+        aggregator.onEventsStored(List.of(event("a", BASE + 1_000), event("b", BASE + 2_000)));
+        aggregator.publish();
+        assertTrue(tumbling(10_000L, BASE).isEmpty());
+
+        aggregator.onEventsStored(List.of(event("a", BASE + 65_000)));
+        aggregator.publish();
+        aggregator.publish();
+
+        List<QoeWindow> closed = tumbling(10_000L, BASE);
+        assertEquals(1, closed.size());
+        assertEquals(2, closed.get(0).getEvents());
+        assertEquals(2, closed.get(0).getActiveSessions());
+        assertTrue(closed.get(0).isClosed());
+        assertEquals(1, tumbling(60_000L, BASE).size());
+    }
+
+    @Test
+    void slidingWindowCoversThePanesUpToTheNewest() {
+        aggregator.onEventsStored(List.of(
+                event("a", BASE + 1_000), event("a", BASE + 15_000), event("b", BASE + 25_000)));
+
+        aggregator.publish();
+
+        QoeWindow window = sliding(10_000L);
+        assertEquals(Instant.ofEpochMilli(BASE + 20_000), window.getStart());
+        assertEquals(1, window.getEvents());
+        QoeWindow minute = sliding(60_000L);
+        assertEquals(3, minute.getEvents());
+        assertEquals(2, minute.getActiveSessions());
+        assertFalse(minute.isClosed());
+    }
+
+    @Test
+    void activeSessionsAreEstimatedBeyondTheExactLimit() {
+        List<SessionEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            events.add(event("session-" + i, BASE + 1_000 + i % 30_000));
+        }
+        aggregator.onEventsStored(events);
+
+        aggregator.publish();
+
+        assertEquals(5_000, sliding(60_000L).getActiveSessions(), 5_000 * 0.1);
+    }
+
+    private QoeWindow sliding(long size) {
+        List<QoeWindow> windows = published.stream()
+                .filter(w -> w.getType().equals("sliding") && w.getSizeMs() == size)
+                .collect(Collectors.toList());
+        return windows.get(windows.size() - 1);
+    }
+
+    private List<QoeWindow> tumbling(long size, long start) {
+        return published.stream()
+                .filter(w -> w.getType().equals("tumbling") && w.getSizeMs() == size
+                        && w.getStart().toEpochMilli() == start)
+                .collect(Collectors.toList());
+    }
+
+    private static SessionEvent event(String sessionId, long timeMs) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.ofEpochMilli(timeMs));
+        event.setRegion("eu");
+        event.setContentId("content-1");
+        return event;
+    }
+}
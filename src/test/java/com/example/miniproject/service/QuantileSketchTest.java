@@ -0,0 +1,53 @@
+package com.example.miniproject.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (long v = 1; v <= 10_000; v++) {
+            sketch.add(v);
+        }
+
+        assertEquals(5_000, sketch.quantile(0.5), 5_000 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(9_000, sketch.quantile(0.9), 9_000 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(9_900, sketch.quantile(0.99), 9_900 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    void mergeMatchesSingleSketch() {
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch low = new QuantileSketch();
+        QuantileSketch high = new QuantileSketch();
+        for (long v = 0; v < 2_000; v++) {
+            all.add(v);
+            (v < 1_000 ? low : high).add(v);
+        }
+
+        low.merge(high);
+
+        assertEquals(all.getCount(), low.getCount());
+        assertEquals(all.quantile(0.5), low.quantile(0.5));
+        assertEquals(all.quantile(0.99), low.quantile(0.99));
+    }
+
+    @Test
+    void roundTripsCompactly() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (long v = 0; v < 1_000; v++) {
+            sketch.add(800 + (v % 50) * 100);
+        }
+
+        byte[] bytes = sketch.toBytes();
+        QuantileSketch decoded = QuantileSketch.fromBytes(bytes);
+
+        assertTrue(bytes.length < 256, "encoded size " + bytes.length);
+        assertEquals(sketch.getCount(), decoded.getCount());
+        assertEquals(sketch.quantile(0.9), decoded.quantile(0.9));
+        assertEquals(0, QuantileSketch.fromBytes(null).getCount());
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.EventQuery;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionResponseCacheTest {
+
+    private ReactiveHashOperations<String, Object, Object> hashOperations;
+    private Sinks.Many<ReactiveSubscription.Message<String, String>> channel;
+    private SessionResponseCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReactiveRedisTemplate<String, String> redisTemplate = mock(ReactiveRedisTemplate.class);
+        hashOperations = mock(ReactiveHashOperations.class);
+        doReturn(hashOperations).when(redisTemplate).opsForHash();
+        channel = Sinks.many().multicast().directBestEffort();
+        // The first subscription follows the channel sink; resubscriptions after a failure never emit
+        AtomicInteger subscriptions = new AtomicInteger();
+        doReturn(Flux.defer(() -> subscriptions.getAndIncrement() == 0 ? channel.asFlux() : Flux.never()))
+                .when(redisTemplate).listenToChannel(anyString());
+        when(redisTemplate.expire(anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        when(redisTemplate.delete(anyString())).thenReturn(Mono.just(1L));
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+        // Redis never has the entry, so every miss reaches the loader
+        when(hashOperations.get(anyString(), any())).thenReturn(Mono.empty());
+        when(hashOperations.put(anyString(), any(), any())).thenReturn(Mono.just(true));
+
+        cache = new SessionResponseCache(redisTemplate, Jackson2ObjectMapperBuilder.json().build(),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "localMaxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 1 << 16);
+        ReflectionTestUtils.setField(cache, "redisTtlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxEventLimit", 1000);
+        ReflectionTestUtils.setField(cache, "retentionDays", 7);
+        cache.init();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<SessionAnalytics> result = Sinks.one();
+        List<SessionAnalytics> received = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            cache.analytics("s-1", () -> {
+                loads.incrementAndGet();
+                return result.asMono();
+            }).subscribe(received::add);
+        }
+
+        result.tryEmitValue(analytics("s-1"));
+
+        assertEquals(1, loads.get());
+        assertEquals(3, received.size());
+        assertEquals(analytics("s-1"), cache.analytics("s-1", () -> fail("should be cached")).block());
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() {
+        Sinks.One<SessionAnalytics> result = Sinks.one();
+        List<SessionAnalytics> received = new ArrayList<>();
+        cache.analytics("s-1", result::asMono).subscribe(received::add);
+
+        cache.onEventsStored(List.of(event("s-1")));
+        result.tryEmitValue(analytics("s-1"));
+
+        assertEquals(1, received.size());
+        verify(hashOperations, never()).put(anyString(), any(), any());
+        AtomicInteger loads = new AtomicInteger();
+        cache.analytics("s-1", () -> {
+            loads.incrementAndGet();
+            return Mono.just(analytics("s-1"));
+        }).block();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidationDropsCachedResponsesOfTheSessionOnly() {
+        cache.analytics("s-1", () -> Mono.just(analytics("s-1"))).block();
+        cache.analytics("s-2", () -> Mono.just(analytics("s-2"))).block();
+
+        cache.onEventsStored(List.of(event("s-1")));
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.analytics("s-1", () -> {
+            loads.incrementAndGet();
+            return Mono.just(analytics("s-1"));
+        }).block();
+        cache.analytics("s-2", () -> fail("should be cached")).block();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void openEndedEventPageIsKeyedByTheRetentionCutoff() {
+        Instant cutoff = Instant.now().minus(7, ChronoUnit.DAYS);
+
+        cache.events("s-1", new EventQuery(), () -> Flux.just(event("s-1"))).blockLast();
+
+        ArgumentCaptor<Object> key = ArgumentCaptor.forClass(Object.class);
+        verify(hashOperations).get(eq("response-cache:s-1"), key.capture());
+        Instant keyedFrom = Instant.parse(key.getValue().toString().split("\\|")[2]);
+        assertTrue(Duration.between(keyedFrom, cutoff).abs().toSeconds() <= 120, "keyed from " + keyedFrom);
+    }
+
+    @Test
+    void localEntriesExpireAfterTheRedisTtl() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "redisTtlMs", 20L);
+        cache.analytics("s-1", () -> Mono.just(analytics("s-1"))).block();
+
+        Thread.sleep(50);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.analytics("s-1", () -> {
+            loads.incrementAndGet();
+            return Mono.just(analytics("s-1"));
+        }).block();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void channelFailureDropsTheLocalTier() {
+        cache.analytics("s-1", () -> Mono.just(analytics("s-1"))).block();
+        cache.analytics("s-2", () -> Mono.just(analytics("s-2"))).block();
+
+        channel.tryEmitError(new IllegalStateException("connection reset"));
+
+        AtomicInteger loads = new AtomicInteger();
+        for (String sessionId : List.of("s-1", "s-2")) {
+            cache.analytics(sessionId, () -> {
+                loads.incrementAndGet();
+                return Mono.just(analytics(sessionId));
+            }).block();
+        }
+        assertEquals(2, loads.get());
+    }
+
+    private static SessionAnalytics analytics(String sessionId) {
+        SessionAnalytics analytics = new SessionAnalytics();
+        analytics.setTotalErrors(sessionId.hashCode());
+        return analytics;
+    }
+
+    private static SessionEvent event(String sessionId) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.parse("2024-03-01T10:00:00Z"));
+        return event;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionAnalytics;
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.support.PostgresTestDatabase;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class SessionRollupServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SessionRollupService rollupService;
+    private JdbcBatchEventWriter eventWriter;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = PostgresTestDatabase.jdbcTemplate();
+        for (String table : List.of("session_events", "session_rollups", "session_rollup_offsets")) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE session_id LIKE 'rollup-%'");
+        }
+        transactionTemplate = new TransactionTemplate(PostgresTestDatabase.transactionManager());
+        rollupService = new SessionRollupService(jdbcTemplate, PostgresTestDatabase.transactionManager());
+        ReflectionTestUtils.setField(rollupService, "fetchSize", 100);
+        ReflectionTestUtils.setField(rollupService, "retentionDays", 7);
+        eventWriter = new JdbcBatchEventWriter(jdbcTemplate);
+        ReflectionTestUtils.setField(eventWriter, "batchSize", 100);
+    }
+
+    @Test
+    void redeliveredBatchLeavesRollupUnchanged() {
+        List<ConsumerRecord<String, SessionEvent>> records = records("rollup-redeliver", Instant.now(), 5);
+        store(records);
+        SessionAnalytics applied = rollupService.getAnalytics("rollup-redeliver").orElseThrow();
+
+        // Whole poll redelivered, then a retry from the middle of it
+        store(records);
+        store(records.subList(2, 5));
+
+        assertEquals(applied, rollupService.getAnalytics("rollup-redeliver").orElseThrow());
+        assertEquals(5L, eventCount("rollup-redeliver"));
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM session_events WHERE session_id = 'rollup-redeliver'", Integer.class));
+    }
+
+    @Test
+    void rebuildAgreesWithAppliedRollupAfterRedelivery() {
+        List<ConsumerRecord<String, SessionEvent>> records = records("rollup-rebuild", Instant.now(), 4);
+        store(records);
+        store(records);
+        SessionAnalytics applied = rollupService.getAnalytics("rollup-rebuild").orElseThrow();
+
+        assertEquals(1, rollupService.rebuild("rollup-rebuild"));
+        assertEquals(applied, rollupService.getAnalytics("rollup-rebuild").orElseThrow());
+    }
+
+    @Test
+    void rebuildLeavesStoredButUnappliedRowsToTheirApply() {
+        List<ConsumerRecord<String, SessionEvent>> records = records("rollup-pending", Instant.now(), 5);
+        store(records.subList(0, 3));
+        // Raw rows of the next poll are stored, its rollup is not applied yet
+        eventWriter.write(List.of(records.get(3).value(), records.get(4).value()));
+
+        assertEquals(1, rollupService.rebuild("rollup-pending"));
+        assertEquals(3L, eventCount("rollup-pending"));
+
+        rollupService.apply(records.subList(3, 5));
+        assertEquals(5L, eventCount("rollup-pending"));
+    }
+
+    @Test
+    void rebuildDoesNotLoseConcurrentlyAppliedBatches() throws Exception {
+        List<ConsumerRecord<String, SessionEvent>> records = records("rollup-race", Instant.now(), 200);
+        store(records.subList(0, 10));
+        Thread ingest = new Thread(() -> {
+            for (int i = 10; i < records.size(); i += 10) {
+                List<ConsumerRecord<String, SessionEvent>> poll = records.subList(i, i + 10);
+                List<SessionEvent> events = new ArrayList<>();
+                poll.forEach(record -> events.add(record.value()));
+                eventWriter.write(events);
+                transactionTemplate.executeWithoutResult(status -> rollupService.apply(poll));
+            }
+        });
+        ingest.start();
+        while (ingest.isAlive()) {
+            rollupService.rebuild("rollup-race");
+        }
+        ingest.join();
+
+        assertEquals(200L, eventCount("rollup-race"));
+        SessionAnalytics applied = rollupService.getAnalytics("rollup-race").orElseThrow();
+        rollupService.rebuild("rollup-race");
+        assertEquals(applied, rollupService.getAnalytics("rollup-race").orElseThrow());
+    }
+
+    @Test
+    void rebuildSkipsSessionsWithEventsBeyondRetention() {
+        List<ConsumerRecord<String, SessionEvent>> records = new ArrayList<>(
+                records("rollup-old", Instant.now().minus(10, ChronoUnit.DAYS), 1));
+        records.addAll(records("rollup-old", Instant.now(), 2));
+        // The old event was archived, only the recent ones are in Postgres
+        rollupService.apply(records);
+        eventWriter.write(List.of(records.get(1).value(), records.get(2).value()));
+        SessionAnalytics applied = rollupService.getAnalytics("rollup-old").orElseThrow();
+
+        assertEquals(0, rollupService.rebuild("rollup-old"));
+        assertEquals(applied, rollupService.getAnalytics("rollup-old").orElseThrow());
+        assertEquals(3L, eventCount("rollup-old"));
+    }
+
+    private long eventCount(String sessionId) {
+        return jdbcTemplate.queryForObject("SELECT event_count FROM session_rollups WHERE session_id = ?",
+                Long.class, sessionId);
+    }
+
+    // Same order as the listener: raw rows first, then the rollup
+    private void store(List<ConsumerRecord<String, SessionEvent>> records) {
+        List<SessionEvent> events = new ArrayList<>(records.size());
+        records.forEach(record -> events.add(record.value()));
+        eventWriter.write(events);
+        rollupService.apply(records);
+    }
+
+    private static List<ConsumerRecord<String, SessionEvent>> records(String sessionId, Instant start, int count) {
+        List<ConsumerRecord<String, SessionEvent>> records = new ArrayList<>(count);
+        long firstOffset = start.getEpochSecond();
+        for (int i = 0; i < count; i++) {
+            QualityMetrics metrics = new QualityMetrics();
+            metrics.setStartupTimeMs(800L + i * 100);
+            metrics.setBufferingDurationMs(50L * i);
+            metrics.setBitrate(2000 + i * 500);
+            metrics.setErrorCount(i % 2);
+
+            SessionEvent event = new SessionEvent();
+            event.setSessionId(sessionId);
+            event.setEventType(i == 0 ? "start" : "heartbeat");
+            event.setTimestamp(start.truncatedTo(ChronoUnit.MILLIS).plusSeconds(i));
+            event.setMetrics(metrics);
+            event.setRegion("eu");
+            event.setKafkaPartition(0);
+            event.setKafkaOffset(firstOffset + i);
+            records.add(new ConsumerRecord<>(EventProcessingService.TOPIC, 0, firstOffset + i, sessionId, event));
+        }
+        return records;
+    }
+}
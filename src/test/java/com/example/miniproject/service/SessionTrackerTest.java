@@ -0,0 +1,137 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.QualityMetrics;
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.model.SessionMetadata;
+import com.example.miniproject.repository.SessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionTrackerTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T10:00:00Z");
+
+    private SessionRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private SessionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SessionRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new SessionTracker(repository, meterRegistry);
+        ReflectionTestUtils.setField(tracker, "shardCount", 1);
+        ReflectionTestUtils.setField(tracker, "maxSessions", 2);
+        ReflectionTestUtils.setField(tracker, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(tracker, "closedWatermarks", 100);
+        ReflectionTestUtils.setField(tracker, "maxPendingSummaries", 100);
+        ReflectionTestUtils.setField(tracker, "writeAttempts", 2);
+        tracker.init();
+    }
+
+    @Test
+    void endEventClosesTheSession() {
+        tracker.onEventsStored(List.of(event("s-1", "start", 1), event("s-1", "heartbeat", 2),
+                event("s-1", "end", 3)));
+        tracker.sweep();
+
+        SessionMetadata summary = onlySummary();
+        assertEquals("ended", summary.getCloseReason());
+        assertEquals("ENDED", summary.getState());
+        assertEquals(3, summary.getEventCount());
+        assertEquals(Map.of(0, 1L), summary.getFirstOffsets());
+        assertEquals(Map.of(0, 3L), summary.getLastOffsets());
+        assertTrue(tracker.getLive("s-1").isEmpty());
+    }
+
+    @Test
+    void leastRecentlyUpdatedSessionIsClosedAtCapacity() {
+        tracker.onEventsStored(List.of(event("s-1", "start", 1), event("s-2", "start", 2)));
+        tracker.getLive("s-1");
+        tracker.onEventsStored(List.of(event("s-3", "start", 3)));
+        tracker.sweep();
+
+        SessionMetadata summary = onlySummary();
+        assertEquals("s-2", summary.getSessionId());
+        assertEquals("capacity", summary.getCloseReason());
+        assertTrue(tracker.getLive("s-1").isPresent());
+    }
+
+    @Test
+    void idleSessionIsClosedBySweep() throws InterruptedException {
+        ReflectionTestUtils.setField(tracker, "idleTimeoutMs", 1L);
+        tracker.onEventsStored(List.of(event("s-1", "start", 1)));
+        Thread.sleep(5);
+        tracker.sweep();
+
+        assertEquals("idle", onlySummary().getCloseReason());
+        assertTrue(tracker.getLive("s-1").isEmpty());
+    }
+
+    @Test
+    void redeliveredRecordsAreNotCountedAgain() {
+        List<SessionEvent> poll = List.of(event("s-1", "start", 1), event("s-1", "heartbeat", 2));
+        tracker.onEventsStored(poll);
+        tracker.onEventsStored(poll);
+        assertEquals(2, tracker.getLive("s-1").orElseThrow().getEventCount());
+
+        tracker.onEventsStored(List.of(event("s-1", "end", 3)));
+        // Replayed after the close: neither reopens the session nor adds to it
+        tracker.onEventsStored(List.of(event("s-1", "heartbeat", 2), event("s-1", "end", 3)));
+        tracker.sweep();
+
+        assertEquals(3, onlySummary().getEventCount());
+        assertTrue(tracker.getLive("s-1").isEmpty());
+        assertEquals(4.0, meterRegistry.counter("session.sessionization.duplicates").count());
+    }
+
+    @Test
+    void rowTheDatabaseKeepsRejectingIsDropped() {
+        doThrow(new DataIntegrityViolationException("value too long")).when(repository).saveSummaries(anyList());
+        tracker.onEventsStored(List.of(event("s-1", "start", 1), event("s-1", "end", 2)));
+
+        tracker.sweep();
+        tracker.sweep();
+        tracker.sweep();
+
+        // Batch then row on each of the two attempts, nothing after the drop
+        verify(repository, times(4)).saveSummaries(anyList());
+        assertEquals(1.0, meterRegistry.counter("session.sessionization.summaries.dropped").count());
+    }
+
+    @SuppressWarnings("unchecked")
+    private SessionMetadata onlySummary() {
+        ArgumentCaptor<List<SessionMetadata>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveSummaries(captor.capture());
+        List<SessionMetadata> summaries = new ArrayList<>(captor.getValue());
+        assertEquals(1, summaries.size());
+        return summaries.get(0);
+    }
+
+    private static SessionEvent event(String sessionId, String type, long offset) {
+        QualityMetrics metrics = new QualityMetrics();
+        metrics.setBitrate(3000);
+
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType(type);
+        event.setTimestamp(START.plusSeconds(offset));
+        event.setMetrics(metrics);
+        event.setKafkaPartition(0);
+        event.setKafkaOffset(offset);
+        return event;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.miniproject.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    @Test
+    void keepsHeavyItemsAmongNoise() {
+        SpaceSaving summary = new SpaceSaving(16);
+        for (int i = 0; i < 10_000; i++) {
+            summary.add("noise-" + i, 1);
+            if (i % 10 == 0) {
+                summary.add("hot", 5);
+            }
+        }
+
+        SpaceSaving.Item top = summary.top(1).get(0);
+        assertEquals("hot", top.getItem());
+        assertTrue(top.getCount() - top.getError() <= 5_000);
+        assertTrue(top.getCount() >= 5_000);
+    }
+
+    @Test
+    void mergeKeepsItemsHeavyOnEitherSide() {
+        SpaceSaving left = new SpaceSaving(8);
+        SpaceSaving right = new SpaceSaving(8);
+        for (int i = 0; i < 1_000; i++) {
+            left.add("left-" + (i % 50), 1);
+            right.add("right-" + (i % 50), 1);
+        }
+        left.add("a", 500);
+        right.add("a", 300);
+        right.add("b", 400);
+
+        List<SpaceSaving.Item> top = left.merge(right).top(2);
+
+        assertEquals("a", top.get(0).getItem());
+        assertTrue(top.get(0).getCount() >= 800);
+        assertEquals("b", top.get(1).getItem());
+        assertTrue(top.get(1).getCount() >= 400);
+    }
+
+    @Test
+    void roundTripsThroughText() {
+        SpaceSaving summary = new SpaceSaving(4);
+        summary.add("x", 3);
+        summary.add("y", 7);
+
+        SpaceSaving parsed = SpaceSaving.parse(summary.toString());
+
+        assertEquals("y", parsed.top(1).get(0).getItem());
+        assertEquals(7, parsed.top(1).get(0).getCount());
+        assertEquals(2, parsed.top(10).size());
+    }
+
+    @Test
+    void boundsHoldForWeightedStreams() {
+        SpaceSaving summary = new SpaceSaving(32);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            // Skewed: low item numbers are far more frequent
+            String item = "item-" + (int) Math.pow(random.nextInt(1_000), 2) / 1_000;
+            long weight = 1 + random.nextInt(20);
+            summary.add(item, weight);
+            exact.merge(item, weight, Long::sum);
+        }
+
+        List<SpaceSaving.Item> tracked = summary.top(Integer.MAX_VALUE);
+        long min = tracked.get(tracked.size() - 1).getCount();
+        for (SpaceSaving.Item item : tracked) {
+            long count = exact.get(item.getItem());
+            assertTrue(item.getCount() >= count, item.getItem());
+            assertTrue(item.getCount() - item.getError() <= count, item.getItem());
+        }
+        exact.forEach((item, count) -> {
+            if (count > min) {
+                assertTrue(tracked.stream().anyMatch(t -> t.getItem().equals(item)), item + " is heavy");
+            }
+        });
+    }
+
+    @Test
+    void parseIgnoresCountersBeyondCapacity() {
+        SpaceSaving parsed = SpaceSaving.parse("2\na\t5\t0\nb\t3\t0\nc\t9\t0\na\t1\t0\n");
+
+        assertEquals(2, parsed.top(10).size());
+        parsed.add("d", 1);
+        // "b" held the smallest counter, so "d" takes it over
+        assertEquals("d", parsed.top(10).get(1).getItem());
+        assertEquals(4, parsed.top(10).get(1).getCount());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StorageServiceTest {
+
+    private EventWriter eventWriter;
+    private ArchiveWriter archiveWriter;
+    private StorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        eventWriter = mock(EventWriter.class);
+        archiveWriter = mock(ArchiveWriter.class);
+        storageService = new StorageService(mock(JdbcTemplate.class), eventWriter, archiveWriter,
+                mock(ArchiveReader.class));
+        ReflectionTestUtils.setField(storageService, "retentionDays", 7);
+    }
+
+    @Test
+    void lateEventsAreUploadedUnderTheirKafkaRecordsBeforeReturning() {
+        Instant old = Instant.now().minus(10, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plusSeconds(600);
+        SessionEvent late1 = event(old, 5);
+        SessionEvent late2 = event(old.plusSeconds(1), 6);
+        SessionEvent current = event(Instant.now(), 7);
+        when(archiveWriter.writeSegment(anyString(), anyList())).thenReturn(CompletableFuture.completedFuture("key"));
+
+        storageService.storeEvents(List.of(late1, current, late2));
+
+        String name = "late-0-5-6";
+        verify(archiveWriter).writeSegment(eq(ArchiveWriter.segmentKey("eu", late1.getTimestamp()
+                .truncatedTo(ChronoUnit.HOURS), name)), eq(List.of(late1, late2)));
+        verify(eventWriter).write(List.of(current));
+    }
+
+    @Test
+    void failedUploadFailsTheBatchAsTransient() {
+        SessionEvent late = event(Instant.now().minus(10, ChronoUnit.DAYS), 5);
+        when(archiveWriter.writeSegment(anyString(), anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("S3 unavailable")));
+
+        assertThrows(TransientDataAccessException.class,
+                () -> storageService.storeEvents(List.of(late, event(Instant.now(), 6))));
+        verifyNoInteractions(eventWriter);
+    }
+
+    private static SessionEvent event(Instant timestamp, long offset) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId("s-1");
+        event.setEventType("heartbeat");
+        event.setTimestamp(timestamp);
+        event.setRegion("eu");
+        event.setKafkaPartition(0);
+        event.setKafkaOffset(offset);
+        return event;
+    }
+}
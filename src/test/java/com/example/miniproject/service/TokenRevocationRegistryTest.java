@@ -0,0 +1,143 @@
+package com.example.miniproject.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes sharing one Redis, each with its own revocation mirror.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class TokenRevocationRegistryTest {
+
+    private static final long EXPIRATION_MS = 86_400_000L;
+    private static final List<String> ROLES = List.of("ROLE_USER");
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private final KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private TokenRevocationRegistry nodeARevocations;
+    private JwtService nodeA;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+        redisTemplate.getConnectionFactory().getReactiveConnection().serverCommands().flushAll().block();
+
+        nodeARevocations = new TokenRevocationRegistry(redisTemplate, EXPIRATION_MS);
+        nodeARevocations.init();
+        nodeA = jwtService(nodeARevocations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeARevocations.stop();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void tokenIssuedAfterRevokeAllOnAnotherNodeIsValid() {
+        String before = nodeA.generateToken("alice", ROLES).block();
+        nodeA.revokeAllTokens("alice").block();
+        // Never started, so its mirror has not seen the new epoch
+        JwtService nodeB = jwtService(new TokenRevocationRegistry(redisTemplate, EXPIRATION_MS));
+
+        String after = nodeB.generateToken("alice", ROLES).block();
+
+        assertEquals(1L, nodeA.validateToken(after).block().get(TokenRevocationRegistry.EPOCH_CLAIM, Long.class));
+        assertThrows(RuntimeException.class, () -> nodeA.validateToken(before).block());
+    }
+
+    @Test
+    void revokedJtiIsStoredWithTheTokensRemainingLifetime() {
+        String token = nodeA.generateTokenWithCustomExpiration("bob", ROLES, 60_000L).block();
+        String jti = nodeA.validateToken(token).block().getId();
+
+        nodeA.blacklistToken(token);
+
+        String key = "token:revoked:" + jti;
+        await(() -> Boolean.TRUE.equals(redisTemplate.hasKey(key).block()));
+        Duration ttl = redisTemplate.getExpire(key).block();
+        assertTrue(ttl.getSeconds() > 0 && ttl.getSeconds() <= 60, "TTL " + ttl);
+        assertThrows(RuntimeException.class, () -> nodeA.validateToken(token).block());
+
+        // A node started afterwards loads it on its first resync
+        TokenRevocationRegistry nodeBRevocations = new TokenRevocationRegistry(redisTemplate, EXPIRATION_MS);
+        nodeBRevocations.init();
+        try {
+            assertThrows(RuntimeException.class, () -> jwtService(nodeBRevocations).validateToken(token).block());
+        } finally {
+            nodeBRevocations.stop();
+        }
+    }
+
+    @Test
+    void tokenBlacklistedBeforeJtiKeysStaysRevoked() {
+        Date now = new Date();
+        String legacy = Jwts.builder()
+                .setSubject("carol")
+                .claim("roles", ROLES)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + EXPIRATION_MS))
+                .signWith(keyPair.getPrivate())
+                .compact();
+        redisTemplate.opsForValue().set("token:blacklist:" + legacy, "blacklisted", Duration.ofHours(1)).block();
+
+        TokenRevocationRegistry restarted = new TokenRevocationRegistry(redisTemplate, EXPIRATION_MS);
+        restarted.init();
+        try {
+            assertThrows(RuntimeException.class, () -> jwtService(restarted).validateToken(legacy).block());
+        } finally {
+            restarted.stop();
+        }
+        String migrated = "token:revoked:" + TokenRevocationRegistry.hash(legacy);
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey(migrated).block());
+        assertEquals(Boolean.FALSE, redisTemplate.hasKey("token:blacklist:" + legacy).block());
+        assertTrue(redisTemplate.getExpire(migrated).block().getSeconds() <= 3600);
+    }
+
+    private JwtService jwtService(TokenRevocationRegistry revocations) {
+        JwtService service = new JwtService(keyPair, EXPIRATION_MS, revocations);
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", 1000);
+        service.init();
+        return service;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
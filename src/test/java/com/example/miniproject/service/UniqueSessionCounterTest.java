@@ -0,0 +1,94 @@
+package com.example.miniproject.service;
+
+import com.example.miniproject.model.SessionEvent;
+import com.example.miniproject.model.UniqueSessionCount;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.core.ReactiveHyperLogLogOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UniqueSessionCounterTest {
+
+    private ReactiveHyperLogLogOperations<String, String> hyperLogLog;
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private UniqueSessionCounter counter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        hyperLogLog = mock(ReactiveHyperLogLogOperations.class);
+        redisTemplate = mock(ReactiveRedisTemplate.class);
+        when(redisTemplate.opsForHyperLogLog()).thenReturn(hyperLogLog);
+        when(redisTemplate.expire(anyString(), any())).thenReturn(Mono.just(true));
+        meterRegistry = new SimpleMeterRegistry();
+        counter = new UniqueSessionCounter(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(counter, "bucketMs", 3_600_000L);
+        ReflectionTestUtils.setField(counter, "retentionHours", 168L);
+        ReflectionTestUtils.setField(counter, "maxBuckets", 3);
+        ReflectionTestUtils.setField(counter, "concurrency", 2);
+        ReflectionTestUtils.setField(counter, "maxInFlight", 3);
+        counter.init();
+    }
+
+    @Test
+    void countUnionsTheBucketsOverlappingTheRange() {
+        when(hyperLogLog.size(ArgumentMatchers.<String>any())).thenReturn(Mono.just(1000L));
+
+        UniqueSessionCount count = counter.count("region", "eu",
+                Instant.parse("2024-03-01T10:30:00Z"), Instant.parse("2024-03-01T12:00:00Z")).block();
+
+        long ten = Instant.parse("2024-03-01T10:00:00Z").toEpochMilli();
+        verify(hyperLogLog).size("hll:sessions:region:" + ten + ":eu",
+                "hll:sessions:region:" + (ten + 3_600_000L) + ":eu");
+        assertEquals(Instant.parse("2024-03-01T10:00:00Z"), count.getFrom());
+        assertEquals(Instant.parse("2024-03-01T12:00:00Z"), count.getTo());
+        assertEquals(2, count.getBuckets());
+        assertEquals(975, count.getLowerBound());
+        assertEquals(1025, count.getUpperBound());
+    }
+
+    @Test
+    void countRejectsInvalidQueries() {
+        Instant from = Instant.parse("2024-03-01T10:00:00Z");
+
+        assertThrows(IllegalArgumentException.class, () -> counter.count("all", null, from, from).block());
+        assertThrows(IllegalArgumentException.class, () -> counter.count("region", null, from, from.plusSeconds(60)).block());
+        assertThrows(IllegalArgumentException.class,
+                () -> counter.count("all", null, from, from.plusSeconds(4 * 3600)).block());
+        verifyNoInteractions(hyperLogLog);
+    }
+
+    @Test
+    void batchIsDroppedWhileTooManyUpdatesArePending() {
+        // Never completes, like a stalled Redis
+        when(hyperLogLog.add(anyString(), ArgumentMatchers.<String>any())).thenReturn(Mono.never());
+
+        counter.onEventsStored(List.of(event("s-1", "eu")));
+        counter.onEventsStored(List.of(event("s-2", "us")));
+
+        // The all and region keys of the first batch hold two of three permits
+        verify(hyperLogLog, times(2)).add(anyString(), ArgumentMatchers.<String>any());
+        assertEquals(2.0, meterRegistry.counter("session.unique-sessions.dropped").count());
+    }
+
+    private static SessionEvent event(String sessionId, String region) {
+        SessionEvent event = new SessionEvent();
+        event.setSessionId(sessionId);
+        event.setEventType("heartbeat");
+        event.setTimestamp(Instant.parse("2024-03-01T10:15:00Z"));
+        event.setRegion(region);
+        return event;
+    }
+}
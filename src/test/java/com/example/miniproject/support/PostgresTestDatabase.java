@@ -0,0 +1,49 @@
+package com.example.miniproject.support;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One Postgres container per test run with {@code schema.sql} applied. Test classes using it are
+ * annotated {@code @Testcontainers(disabledWithoutDocker = true)} and clean up their own rows.
+ */
+public final class PostgresTestDatabase {
+
+    private static DataSource dataSource;
+
+    private PostgresTestDatabase() {
+    }
+
+    public static synchronized DataSource dataSource() {
+        if (dataSource == null) {
+            PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:15-alpine");
+            container.start();
+            DriverManagerDataSource started = new DriverManagerDataSource(
+                    container.getJdbcUrl(), container.getUsername(), container.getPassword());
+            try (Connection connection = started.getConnection()) {
+                ScriptUtils.executeSqlScript(connection, new FileSystemResource("schema.sql"));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not apply schema.sql", e);
+            }
+            dataSource = started;
+        }
+        return dataSource;
+    }
+
+    public static JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate(dataSource());
+    }
+
+    public static PlatformTransactionManager transactionManager() {
+        return new DataSourceTransactionManager(dataSource());
+    }
+}